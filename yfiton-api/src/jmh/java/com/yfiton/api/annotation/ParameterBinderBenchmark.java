@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.api.annotation;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.yfiton.api.Notifier;
+import com.yfiton.api.exceptions.NotificationException;
+import com.yfiton.api.exceptions.ParameterException;
+import com.yfiton.api.parameter.ParameterValue;
+import com.yfiton.api.parameter.Parameters;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of injecting parameter values with {@link ParameterBinder}
+ * against the reflective injection previously performed for each
+ * notification.
+ *
+ * @author lpellegr
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParameterBinderBenchmark {
+
+    private BenchmarkNotifier notifier;
+
+    private Parameters parameters;
+
+    @Setup
+    public void setUp() {
+        notifier = new BenchmarkNotifier();
+
+        parameters = new Parameters(
+                ImmutableMap.<String, ParameterValue>builder()
+                        .put("from", new ParameterValue("noreply@yfiton.com", false))
+                        .put("to", new ParameterValue(ImmutableList.of("user@company.com"), false))
+                        .put("subject", new ParameterValue("Build failure!", false))
+                        .put("body", new ParameterValue("Build #42 has failed!", false))
+                        .put("host", new ParameterValue("smtp.company.com", false))
+                        .put("port", new ParameterValue(25, false))
+                        .put("auth", new ParameterValue(false, false))
+                        .build());
+    }
+
+    @Benchmark
+    public Notifier binder() throws ParameterException {
+        Notifier target = notifier.copy();
+        ParameterBinder.of(BenchmarkNotifier.class).bind(target, parameters);
+        return target;
+    }
+
+    @Benchmark
+    public Notifier reflection() throws ParameterException, IllegalAccessException {
+        Notifier target = notifier.copy();
+
+        for (Field field : AnnotationProcessor.getAllFields(target.getClass())) {
+            Parameter[] annotations = field.getAnnotationsByType(Parameter.class);
+
+            if (annotations.length == 0) {
+                continue;
+            }
+
+            String parameterName = annotations[0].name();
+            if (parameterName.isEmpty()) {
+                parameterName = field.getName();
+            }
+
+            field.setAccessible(true);
+
+            Object receivedValue = parameters.getValue(parameterName);
+
+            if (receivedValue != null) {
+                field.set(target, receivedValue);
+            } else if (annotations[0].required()) {
+                throw new ParameterException("Missing required parameter '" + parameterName + "'");
+            }
+        }
+
+        return target;
+    }
+
+    public static class BenchmarkNotifier extends Notifier {
+
+        @Parameter(required = true)
+        private String from;
+
+        @Parameter(name = "to", required = true)
+        private List<String> recipients;
+
+        @Parameter
+        private List<String> cc;
+
+        @Parameter(required = true)
+        private String subject;
+
+        @Parameter
+        private String body = "";
+
+        @Parameter
+        private String username;
+
+        @Parameter(hidden = true)
+        private String password;
+
+        @Parameter(required = true)
+        private String host;
+
+        @Parameter
+        private int port = 587;
+
+        @Parameter
+        private boolean auth = true;
+
+        @Override
+        protected Check checkParameters(Parameters parameters) {
+            return Check.succeeded();
+        }
+
+        @Override
+        protected void notify(Parameters parameters) throws NotificationException {
+        }
+
+        @Override
+        public String getKey() {
+            return "benchmark";
+        }
+
+        @Override
+        public String getName() {
+            return "Benchmark";
+        }
+
+        @Override
+        public Optional<String> getDescription() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<String> getUrl() {
+            return Optional.empty();
+        }
+
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.api;
+
+import com.yfiton.api.parameter.Parameters;
+
+import java.util.List;
+
+/**
+ * Optional interface implemented by notifiers able to deliver several
+ * notifications at once more efficiently than with one
+ * {@link Notifier#handle(Parameters)} call per notification, for instance by
+ * reusing a connection or a client for all of them.
+ *
+ * @author lpellegr
+ */
+public interface BatchNotifier {
+
+    /**
+     * Sends the specified notifications. A failure for one notification must
+     * be reported in its outcome and not prevent others from being sent.
+     * <p/>
+     * Parameter values are not bound to the notifier fields. Implementations
+     * usually get a dedicated instance for each notification with
+     * {@link Notifier#prepare(Parameters)}.
+     *
+     * @param batch the parameters of each notification to send.
+     * @return one outcome per notification, in the order of {@code batch}.
+     */
+    List<NotificationOutcome> handleBatch(List<Parameters> batch);
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.api;
+
+import com.google.common.base.Stopwatch;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a single notification among several ones sent together, either
+ * by batch or to several notifiers. Unlike {@link Notifier#handle(com.yfiton.api.parameter.Parameters)},
+ * failures are reported as values rather than thrown so that one failure does
+ * not prevent reporting the others.
+ *
+ * @author lpellegr
+ */
+public final class NotificationOutcome {
+
+    private final String notifierKey;
+
+    private final NotificationResult result;
+
+    private final Throwable failure;
+
+    private final long executionTimeInNanos;
+
+    private NotificationOutcome(String notifierKey, NotificationResult result, Throwable failure, long executionTimeInNanos) {
+        this.notifierKey = notifierKey;
+        this.result = result;
+        this.failure = failure;
+        this.executionTimeInNanos = executionTimeInNanos;
+    }
+
+    public static NotificationOutcome succeeded(NotificationResult result) {
+        return new NotificationOutcome(
+                result.getNotifierKey(), result, null, result.getExecutionTime(TimeUnit.NANOSECONDS));
+    }
+
+    public static NotificationOutcome failed(String notifierKey, Throwable failure, Stopwatch stopwatch) {
+        return new NotificationOutcome(notifierKey, null, failure, stopwatch.elapsed(TimeUnit.NANOSECONDS));
+    }
+
+    public String getNotifierKey() {
+        return notifierKey;
+    }
+
+    public boolean isSuccess() {
+        return failure == null;
+    }
+
+    public Optional<NotificationResult> getResult() {
+        return Optional.ofNullable(result);
+    }
+
+    public Optional<Throwable> getFailure() {
+        return Optional.ofNullable(failure);
+    }
+
+    /**
+     * Returns the time spent on the notification, including when it failed.
+     *
+     * @param timeUnit the unit of the value to return.
+     * @return the time spent on the notification.
+     */
+    public long getExecutionTime(TimeUnit timeUnit) {
+        return timeUnit.convert(executionTimeInNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "NotificationOutcome{" +
+                "notifierKey='" + notifierKey + '\'' +
+                ", success=" + isSuccess() +
+                ", failure=" + failure +
+                ", executionTime=" + getExecutionTime(TimeUnit.MILLISECONDS) + "ms" +
+                '}';
+    }
+
+}
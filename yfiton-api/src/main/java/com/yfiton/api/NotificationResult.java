@@ -34,6 +34,10 @@ public class NotificationResult {
         this.stopwatch = stopwatch;
     }
 
+    public String getNotifierKey() {
+        return notifierKey;
+    }
+
     public long getExecutionTime(TimeUnit timeUnit) {
         return stopwatch.elapsed(timeUnit);
     }
@@ -18,7 +18,10 @@ package com.yfiton.api;
 
 
 import com.google.common.base.Stopwatch;
+import com.yfiton.api.annotation.NotifierInfo;
+import com.yfiton.api.annotation.ParameterBinder;
 import com.yfiton.api.exceptions.NotificationException;
+import com.yfiton.api.exceptions.ParameterException;
 import com.yfiton.api.parameter.Parameters;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.HierarchicalINIConfiguration;
@@ -31,15 +34,18 @@ import java.util.Optional;
 
 /**
  * A notifier provides basic abstractions to send notifications.
+ * <p/>
+ * Parameter values are injected in the fields of a notifier. Since a same
+ * notifier may be used by several threads at once, values are never injected
+ * in the instance that is registered but in a copy obtained with
+ * {@link #copy()} for each notification.
  *
  * @author lpellegr
  */
-public abstract class Notifier {
+public abstract class Notifier implements Cloneable {
 
     protected static final Logger log = LoggerFactory.getLogger(Notifier.class);
 
-    protected final Stopwatch stopwatch = Stopwatch.createUnstarted();
-
     private HierarchicalINIConfiguration configuration;
 
     public Notifier() {
@@ -57,7 +63,7 @@ public abstract class Notifier {
             throw new NotificationException(message.get());
         }
 
-        stopwatch.start();
+        Stopwatch stopwatch = Stopwatch.createStarted();
 
         notify(parameters);
 
@@ -66,6 +72,48 @@ public abstract class Notifier {
         return new NotificationResult(getKey(), stopwatch);
     }
 
+    /**
+     * Returns a shallow copy of this notifier. The copy shares the state
+     * initialized at construction (e.g. configuration, clients) but may
+     * receive its own parameter values without affecting other copies.
+     *
+     * @return a shallow copy of this notifier.
+     */
+    public Notifier copy() {
+        try {
+            return (Notifier) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns a copy of this notifier whose fields are set to the specified
+     * parameter values, once checked. It allows {@link BatchNotifier}
+     * implementations to work on each notification of a batch with the same
+     * fields as {@link #notify(Parameters)}.
+     *
+     * @param parameters the parameter values to bind.
+     * @param <T>        the type of the notifier.
+     * @return a copy of this notifier ready to send the notification.
+     * @throws ParameterException    if a parameter value cannot be bound.
+     * @throws NotificationException if the parameter values are rejected by {@link #checkParameters(Parameters)}.
+     */
+    @SuppressWarnings("unchecked")
+    protected <T extends Notifier> T prepare(Parameters parameters) throws ParameterException, NotificationException {
+        Notifier invocation = copy();
+
+        ParameterBinder.of(getClass()).bind(invocation, parameters);
+
+        Optional<String> message = invocation.checkParameters(parameters).getMessage();
+
+        if (message.isPresent()) {
+            throw new NotificationException(message.get());
+        }
+
+        return (T) invocation;
+    }
+
     protected abstract Check checkParameters(Parameters parameters);
 
     /**
@@ -83,31 +131,61 @@ public abstract class Notifier {
     /**
      * Unique key identifying a notifier among others.
      * It is an alphanumeric word starting with a letter.
+     * <p/>
+     * By default, the value is taken from the {@link NotifierInfo} annotation.
      *
      * @return unique key identifying a notifier among others.
      */
-    public abstract String getKey();
+    public String getKey() {
+        return getInfo().key();
+    }
 
     /**
      * Notifier's name.
      *
      * @return notifier's name.
      */
-    public abstract String getName();
+    public String getName() {
+        return getInfo().name();
+    }
 
     /**
      * Returns a description of the notifier.
      *
      * @return description of the notifier.
      */
-    public abstract Optional<String> getDescription();
+    public Optional<String> getDescription() {
+        return toOptional(getInfo().description());
+    }
 
     /**
      * Returns an URL of the main service used by the notifier.
      *
      * @return an URL of the main service used by the notifier.
      */
-    public abstract Optional<String> getUrl();
+    public Optional<String> getUrl() {
+        return toOptional(getInfo().url());
+    }
+
+    private NotifierInfo getInfo() {
+        NotifierInfo info = getClass().getAnnotation(NotifierInfo.class);
+
+        if (info == null) {
+            throw new IllegalStateException(
+                    getClass().getName() + " must be annotated with @NotifierInfo " +
+                            "or override getKey(), getName(), getDescription() and getUrl()");
+        }
+
+        return info;
+    }
+
+    private static Optional<String> toOptional(String value) {
+        if (value.isEmpty()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(value);
+    }
 
     protected Path getCacheDirPath() throws IOException {
         return Configuration.getNotifierCacheDirPath(this);
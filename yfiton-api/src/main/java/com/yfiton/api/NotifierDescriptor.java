@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.api;
+
+import com.google.common.collect.ImmutableList;
+import com.yfiton.api.parameter.ParameterDescriptor;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Static description of a {@link Notifier} and its parameters.
+ * <p/>
+ * Descriptors are generated at compile time for notifiers annotated with
+ * {@link com.yfiton.api.annotation.NotifierInfo} and referenced from the
+ * {@link #INDEX_RESOURCE} resource. They allow to list and describe notifiers
+ * without loading notifier classes and their dependencies.
+ *
+ * @author lpellegr
+ */
+public class NotifierDescriptor {
+
+    /**
+     * Resource listing, one per line, the key of a notifier, the name of its
+     * class and the name of its descriptor class, separated by spaces.
+     */
+    public static final String INDEX_RESOURCE = "META-INF/yfiton/notifiers";
+
+    private final String key;
+
+    private final String name;
+
+    private final Optional<String> description;
+
+    private final Optional<String> url;
+
+    private final String notifierClassName;
+
+    private final List<ParameterDescriptor> parameters;
+
+    public NotifierDescriptor(String key, String name, String description, String url,
+                              String notifierClassName, ParameterDescriptor... parameters) {
+        this.key = key;
+        this.name = name;
+        this.description = Optional.ofNullable(description);
+        this.url = Optional.ofNullable(url);
+        this.notifierClassName = notifierClassName;
+        this.parameters = ImmutableList.copyOf(parameters);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Optional<String> getDescription() {
+        return description;
+    }
+
+    public Optional<String> getUrl() {
+        return url;
+    }
+
+    public String getNotifierClassName() {
+        return notifierClassName;
+    }
+
+    /**
+     * Returns the parameters accepted by the notifier, in declaration order.
+     *
+     * @return the parameters accepted by the notifier.
+     */
+    public List<ParameterDescriptor> getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public String toString() {
+        return "NotifierDescriptor{" +
+                "key='" + key + '\'' +
+                ", notifierClassName='" + notifierClassName + '\'' +
+                ", parameters=" + parameters +
+                '}';
+    }
+
+}
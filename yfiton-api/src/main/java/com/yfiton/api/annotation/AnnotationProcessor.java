@@ -17,15 +17,19 @@
 package com.yfiton.api.annotation;
 
 
+import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
 import com.yfiton.api.Notifier;
+import com.yfiton.api.NotifierDescriptor;
 import com.yfiton.api.exceptions.ParameterException;
+import com.yfiton.api.parameter.ParameterDescriptor;
 import com.yfiton.api.parameter.PrimitiveParameter;
 import com.yfiton.api.parameter.converters.*;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -129,6 +133,59 @@ public final class AnnotationProcessor {
         return result.build();
     }
 
+    /**
+     * Creates a descriptor for the specified notifier by analyzing its
+     * annotations at runtime. It is used for notifiers whose descriptor has
+     * not been generated at compile time.
+     *
+     * @param notifier the notifier to describe.
+     * @return a descriptor for the specified notifier.
+     */
+    public static NotifierDescriptor describe(Notifier notifier) {
+        Map<String, com.yfiton.api.parameter.Parameter> parameters =
+                analyze(Collections.singleton(notifier)).get(notifier.getKey());
+
+        List<ParameterDescriptor> descriptors = new ArrayList<>(parameters.size());
+
+        for (com.yfiton.api.parameter.Parameter parameter : parameters.values()) {
+            descriptors.add(new ParameterDescriptor(
+                    parameter.getName(),
+                    parameter.getDescription(),
+                    parameter.getType().getSimpleName(),
+                    toString(parameter.getDefaultValue()),
+                    parameter.getConverter().getClass().getName(),
+                    parameter.getValidator().getClass().getName(),
+                    parameter.isHidden(),
+                    parameter.isRequired()));
+        }
+
+        return new NotifierDescriptor(
+                notifier.getKey(), notifier.getName(),
+                notifier.getDescription().orElse(null), notifier.getUrl().orElse(null),
+                notifier.getClass().getName(),
+                descriptors.toArray(new ParameterDescriptor[descriptors.size()]));
+    }
+
+    private static String toString(Object defaultValue) {
+        if (defaultValue == null) {
+            return null;
+        } else if (defaultValue instanceof List) {
+            return "[" + Joiner.on(", ").join((List) defaultValue) + "]";
+        }
+
+        return defaultValue.toString();
+    }
+
+    /**
+     * Returns the converter used by default for parameters of the specified type.
+     *
+     * @param typeName the name of the parameter type as returned by {@link Class#getTypeName()}.
+     * @return the default converter or {@code null} if the type has none.
+     */
+    public static Converter<?> getDefaultConverter(String typeName) {
+        return DEFAULT_CONVERTERS.get(typeName);
+    }
+
     public static List<Field> getAllFields(Class clazz) {
         return getAllFieldsRecursively(clazz, new ArrayList<>());
     }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.api.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Describes a {@link com.yfiton.api.Notifier} implementation. The information
+ * is exposed at runtime by the notifier itself and used at compile time to
+ * generate a {@link com.yfiton.api.NotifierDescriptor} that allows to list and
+ * describe notifiers without loading them.
+ *
+ * @author lpellegr
+ */
+@Documented
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface NotifierInfo {
+
+    /**
+     * Unique key identifying a notifier among others.
+     * It is an alphanumeric word starting with a letter.
+     */
+    String key();
+
+    String name();
+
+    String description() default "";
+
+    /**
+     * URL of the main service used by the notifier.
+     */
+    String url() default "";
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.api.annotation;
+
+import com.yfiton.api.Notifier;
+import com.yfiton.api.exceptions.ParameterException;
+import com.yfiton.api.parameter.Parameters;
+import com.yfiton.api.utils.Console;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Injects parameter values in the fields annotated with {@link Parameter} of
+ * a {@link Notifier}.
+ * <p/>
+ * The class hierarchy is analyzed once per notifier class: each annotated
+ * field is resolved to a {@link MethodHandle} setter along with the flags
+ * needed at binding time. Binders are cached and can be shared between
+ * threads.
+ *
+ * @author lpellegr
+ */
+public final class ParameterBinder {
+
+    private static final MethodType SETTER_TYPE =
+            MethodType.methodType(void.class, Notifier.class, Object.class);
+
+    private static final ClassValue<ParameterBinder> BINDERS = new ClassValue<ParameterBinder>() {
+        @Override
+        protected ParameterBinder computeValue(Class<?> type) {
+            return new ParameterBinder(type);
+        }
+    };
+
+    private final Slot[] slots;
+
+    private ParameterBinder(Class<?> notifierClass) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        List<Slot> result = new ArrayList<>();
+
+        for (Field field : AnnotationProcessor.getAllFields(notifierClass)) {
+            Parameter[] annotations = field.getAnnotationsByType(Parameter.class);
+
+            if (annotations.length == 0) {
+                continue;
+            }
+
+            Parameter annotation = annotations[0];
+
+            String parameterName = annotation.name();
+            if (parameterName.isEmpty()) {
+                parameterName = field.getName();
+            }
+
+            field.setAccessible(true);
+
+            try {
+                MethodHandle setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+                result.add(new Slot(parameterName, setter, annotation.hidden(), annotation.required()));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot access field for parameter '" + parameterName + "'", e);
+            }
+        }
+
+        this.slots = result.toArray(new Slot[result.size()]);
+    }
+
+    /**
+     * Returns the binder associated to the specified notifier class.
+     *
+     * @param notifierClass the notifier class to get a binder for.
+     * @return the binder associated to the specified notifier class.
+     */
+    public static ParameterBinder of(Class<? extends Notifier> notifierClass) {
+        return BINDERS.get(notifierClass);
+    }
+
+    /**
+     * Injects the specified parameter values in the fields of {@code target}.
+     * Fields whose parameter has no value keep their current value.
+     *
+     * @param target     the notifier instance to inject values into.
+     * @param parameters the values to inject.
+     * @throws ParameterException if a required parameter has no value.
+     */
+    public void bind(Notifier target, Parameters parameters) throws ParameterException {
+        for (Slot slot : slots) {
+            Object value = parameters.getValue(slot.name);
+
+            if (value == null) {
+                if (!slot.required) {
+                    continue;
+                }
+
+                if (!slot.hidden) {
+                    throw new ParameterException("Missing required parameter '" + slot.name + "'");
+                }
+
+                value = Console.readParameterValueFromStdin(slot.name);
+
+                // no value can be read, e.g. from a daemon whose input is empty
+                if (value == null) {
+                    throw new ParameterException("Missing required parameter '" + slot.name + "'");
+                }
+            }
+
+            try {
+                slot.setter.invokeExact(target, value);
+            } catch (ClassCastException e) {
+                throw new ParameterException("Invalid value type for parameter '" + slot.name + "'", e);
+            } catch (Throwable t) {
+                throw new IllegalStateException("Cannot inject value for parameter '" + slot.name + "'", t);
+            }
+        }
+    }
+
+    private static final class Slot {
+
+        private final String name;
+
+        private final MethodHandle setter;
+
+        private final boolean hidden;
+
+        private final boolean required;
+
+        private Slot(String name, MethodHandle setter, boolean hidden, boolean required) {
+            this.name = name;
+            this.setter = setter;
+            this.hidden = hidden;
+            this.required = required;
+        }
+
+    }
+
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.api.annotation.processing;
+
+import com.sun.source.tree.*;
+import com.sun.source.util.Trees;
+import com.yfiton.api.NotifierDescriptor;
+import com.yfiton.api.annotation.AnnotationProcessor;
+import com.yfiton.api.annotation.NotifierInfo;
+import com.yfiton.api.annotation.Parameter;
+import com.yfiton.api.parameter.converters.Converter;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Annotation processor generating, for each notifier annotated with
+ * {@link NotifierInfo}, a {@link NotifierDescriptor} subclass that describes
+ * the notifier and its {@link Parameter} fields. An index of all notifiers
+ * processed in a compilation unit is written to
+ * {@link NotifierDescriptor#INDEX_RESOURCE}.
+ * <p/>
+ * Default values are only extracted from literal or constant initializers.
+ *
+ * @author lpellegr
+ */
+@SupportedAnnotationTypes("com.yfiton.api.annotation.NotifierInfo")
+public class NotifierProcessor extends AbstractProcessor {
+
+    private static final String NOTIFIER_CLASS_NAME = "com.yfiton.api.Notifier";
+
+    private static final String DESCRIPTOR_SUFFIX = "Descriptor";
+
+    // index lines sorted by notifier key
+    private final Map<String, String> index = new TreeMap<>();
+
+    private Trees trees;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+
+        try {
+            trees = Trees.instance(processingEnv);
+        } catch (IllegalArgumentException e) {
+            // not running inside javac, default values are not available
+            trees = null;
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(NotifierInfo.class)) {
+            if (element.getKind() != ElementKind.CLASS || !isNotifier((TypeElement) element)) {
+                error(element, "@NotifierInfo is only allowed on subclasses of " + NOTIFIER_CLASS_NAME);
+                continue;
+            }
+
+            try {
+                generateDescriptor((TypeElement) element);
+            } catch (IOException e) {
+                error(element, "Cannot generate descriptor: " + e.getMessage());
+            }
+        }
+
+        if (roundEnv.processingOver() && !index.isEmpty()) {
+            try {
+                writeIndex();
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(
+                        Diagnostic.Kind.ERROR, "Cannot write notifier index: " + e.getMessage());
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isNotifier(TypeElement type) {
+        TypeElement notifierType = processingEnv.getElementUtils().getTypeElement(NOTIFIER_CLASS_NAME);
+
+        return notifierType != null
+                && processingEnv.getTypeUtils().isAssignable(type.asType(), notifierType.asType());
+    }
+
+    private void generateDescriptor(TypeElement type) throws IOException {
+        NotifierInfo info = type.getAnnotation(NotifierInfo.class);
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String notifierClassName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simpleName = packageName.isEmpty() ? notifierClassName : notifierClassName.substring(packageName.length() + 1);
+        String descriptorSimpleName = simpleName.replace('$', '_') + DESCRIPTOR_SUFFIX;
+        String descriptorClassName = packageName.isEmpty() ? descriptorSimpleName : packageName + "." + descriptorSimpleName;
+
+        List<String> parameters = new ArrayList<>();
+
+        for (VariableElement field : getAllFields(type)) {
+            if (field.getAnnotation(Parameter.class) != null) {
+                String parameter = describeParameter(field);
+
+                if (parameter != null) {
+                    parameters.add(parameter);
+                }
+            }
+        }
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(descriptorClassName, type);
+
+        try (Writer writer = file.openWriter()) {
+            if (!packageName.isEmpty()) {
+                writer.write("package " + packageName + ";\n\n");
+            }
+
+            writer.write("/**\n");
+            writer.write(" * Descriptor of {@code " + notifierClassName + "}.\n");
+            writer.write(" * Generated by {@code " + getClass().getName() + "}, do not edit.\n");
+            writer.write(" */\n");
+            writer.write("public final class " + descriptorSimpleName + " extends " + NotifierDescriptor.class.getName() + " {\n\n");
+            writer.write("    public " + descriptorSimpleName + "() {\n");
+            writer.write("        super(" + literal(info.key()) + ", " + literal(info.name()) + ",\n");
+            writer.write("                " + literal(emptyToNull(info.description())) + ",\n");
+            writer.write("                " + literal(emptyToNull(info.url())) + ",\n");
+            writer.write("                " + literal(notifierClassName));
+
+            for (String parameter : parameters) {
+                writer.write(",\n                " + parameter);
+            }
+
+            writer.write(");\n");
+            writer.write("    }\n\n");
+            writer.write("}\n");
+        }
+
+        String previous = index.put(info.key(), info.key() + " " + notifierClassName + " " + descriptorClassName);
+
+        if (previous != null) {
+            error(type, "Notifier key '" + info.key() + "' already used: " + previous);
+        }
+    }
+
+    private String describeParameter(VariableElement field) {
+        Parameter annotation = field.getAnnotation(Parameter.class);
+
+        String name = annotation.name();
+        if (name.isEmpty()) {
+            name = field.getSimpleName().toString();
+        }
+
+        TypeMirror type = processingEnv.getTypeUtils().erasure(field.asType());
+
+        String converterClassName = getClassValue(field, "converter");
+
+        if (converterClassName.equals(Converter.class.getName())) {
+            Converter<?> converter = AnnotationProcessor.getDefaultConverter(getTypeName(type));
+
+            if (converter == null) {
+                error(field, "Unsupported object type. You need to define and use your own converter");
+                return null;
+            }
+
+            converterClassName = converter.getClass().getName();
+        }
+
+        return "new " + com.yfiton.api.parameter.ParameterDescriptor.class.getName() + "("
+                + literal(name) + ", "
+                + literal(annotation.description()) + ", "
+                + literal(getSimpleTypeName(type)) + ", "
+                + literal(getDefaultValue(field)) + ", "
+                + literal(converterClassName) + ", "
+                + literal(getClassValue(field, "validator")) + ", "
+                + annotation.hidden() + ", "
+                + annotation.required() + ")";
+    }
+
+    private List<VariableElement> getAllFields(TypeElement type) {
+        List<VariableElement> result = new ArrayList<>();
+        collectFields(type, result);
+        return result;
+    }
+
+    private void collectFields(TypeElement type, List<VariableElement> fields) {
+        TypeMirror superclass = type.getSuperclass();
+
+        if (superclass.getKind() == TypeKind.DECLARED) {
+            collectFields((TypeElement) ((DeclaredType) superclass).asElement(), fields);
+        }
+
+        fields.addAll(ElementFilter.fieldsIn(type.getEnclosedElements()));
+    }
+
+    // class values cannot be read through the annotation proxy at compile time
+    private String getClassValue(VariableElement field, String attributeName) {
+        for (AnnotationMirror mirror : field.getAnnotationMirrors()) {
+            if (!((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(Parameter.class.getName())) {
+                continue;
+            }
+
+            Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+                    processingEnv.getElementUtils().getElementValuesWithDefaults(mirror);
+
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals(attributeName)) {
+                    TypeMirror value = (TypeMirror) entry.getValue().getValue();
+                    TypeElement element = (TypeElement) processingEnv.getTypeUtils().asElement(value);
+                    return processingEnv.getElementUtils().getBinaryName(element).toString();
+                }
+            }
+        }
+
+        throw new IllegalStateException("No value for attribute '" + attributeName + "'");
+    }
+
+    // name as returned by Class#getTypeName() at runtime
+    private String getTypeName(TypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED) {
+            return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+        }
+
+        return type.toString();
+    }
+
+    // name as returned by Class#getSimpleName() at runtime
+    private String getSimpleTypeName(TypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED) {
+            return ((DeclaredType) type).asElement().getSimpleName().toString();
+        }
+
+        return type.toString();
+    }
+
+    private String getDefaultValue(VariableElement field) {
+        Tree tree = trees == null ? null : trees.getTree(field);
+
+        if (tree instanceof VariableTree) {
+            ExpressionTree initializer = ((VariableTree) tree).getInitializer();
+
+            if (initializer != null && initializer.getKind() == Tree.Kind.NULL_LITERAL) {
+                return null;
+            }
+
+            if (initializer != null) {
+                Optional<String> value = evaluate(initializer, (TypeElement) field.getEnclosingElement());
+
+                if (!value.isPresent()) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                            "Default value cannot be computed at compile time, use a literal or a constant", field);
+                    return null;
+                }
+
+                return value.get();
+            }
+        }
+
+        switch (field.asType().getKind()) {
+            case BOOLEAN:
+                return "false";
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+                return "0";
+            case FLOAT:
+            case DOUBLE:
+                return "0.0";
+            case CHAR:
+                return "\u0000";
+            default:
+                return null;
+        }
+    }
+
+    private Optional<String> evaluate(ExpressionTree expression, TypeElement enclosingType) {
+        switch (expression.getKind()) {
+            case PARENTHESIZED:
+                return evaluate(((ParenthesizedTree) expression).getExpression(), enclosingType);
+            case UNARY_MINUS:
+                return evaluate(((UnaryTree) expression).getExpression(), enclosingType).map(value -> "-" + value);
+            case IDENTIFIER:
+                return getConstantValue(((IdentifierTree) expression).getName(), enclosingType);
+            default:
+                if (expression instanceof LiteralTree) {
+                    return Optional.of(String.valueOf(((LiteralTree) expression).getValue()));
+                }
+
+                return Optional.empty();
+        }
+    }
+
+    private Optional<String> getConstantValue(Name name, TypeElement type) {
+        for (VariableElement field : getAllFields(type)) {
+            if (field.getSimpleName().equals(name) && field.getConstantValue() != null) {
+                return Optional.of(String.valueOf(field.getConstantValue()));
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    private void writeIndex() throws IOException {
+        FileObject file = processingEnv.getFiler().createResource(
+                StandardLocation.CLASS_OUTPUT, "", NotifierDescriptor.INDEX_RESOURCE);
+
+        try (Writer writer = file.openWriter()) {
+            for (String line : index.values()) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String literal(String value) {
+        if (value == null) {
+            return "null";
+        }
+
+        StringBuilder result = new StringBuilder("\"");
+
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        result.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        result.append(c);
+                    }
+            }
+        }
+
+        return result.append('"').toString();
+    }
+
+}
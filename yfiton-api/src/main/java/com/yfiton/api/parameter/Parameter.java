@@ -89,6 +89,14 @@ public class Parameter<T> {
         return required;
     }
 
+    public Converter<T> getConverter() {
+        return converter;
+    }
+
+    public Validator<T> getValidator() {
+        return validator;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.api.parameter;
+
+import java.util.Optional;
+
+/**
+ * Static description of a notifier parameter. Unlike {@link Parameter}, it
+ * only refers to types by name and does not require to load converters,
+ * validators or the notifier itself.
+ *
+ * @author lpellegr
+ */
+public final class ParameterDescriptor {
+
+    private final String name;
+
+    private final String description;
+
+    private final String typeName;
+
+    private final String defaultValue;
+
+    private final String converterClassName;
+
+    private final String validatorClassName;
+
+    private final boolean hidden;
+
+    private final boolean required;
+
+    public ParameterDescriptor(String name, String description, String typeName, String defaultValue,
+                               String converterClassName, String validatorClassName, boolean hidden, boolean required) {
+        this.name = name;
+        this.description = description;
+        this.typeName = typeName;
+        this.defaultValue = defaultValue;
+        this.converterClassName = converterClassName;
+        this.validatorClassName = validatorClassName;
+        this.hidden = hidden;
+        this.required = required;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Returns the simple name of the parameter type.
+     *
+     * @return the simple name of the parameter type.
+     */
+    public String getTypeName() {
+        return typeName;
+    }
+
+    /**
+     * Returns a textual representation of the default value.
+     *
+     * @return a textual representation of the default value if any.
+     */
+    public Optional<String> getDefaultValue() {
+        return Optional.ofNullable(defaultValue);
+    }
+
+    public String getConverterClassName() {
+        return converterClassName;
+    }
+
+    public String getValidatorClassName() {
+        return validatorClassName;
+    }
+
+    public boolean isHidden() {
+        return hidden;
+    }
+
+    public boolean isRequired() {
+        return required;
+    }
+
+    @Override
+    public String toString() {
+        return "ParameterDescriptor{" +
+                "name='" + name + '\'' +
+                ", description='" + description + '\'' +
+                ", typeName='" + typeName + '\'' +
+                ", defaultValue='" + defaultValue + '\'' +
+                ", converterClassName='" + converterClassName + '\'' +
+                ", validatorClassName='" + validatorClassName + '\'' +
+                ", hidden=" + hidden +
+                ", required=" + required +
+                '}';
+    }
+
+}
@@ -34,6 +34,10 @@ public class ParameterValue {
         return parameter.cast(value);
     }
 
+    public Object getValue() {
+        return value;
+    }
+
     public boolean isHidden() {
         return hidden;
     }
@@ -43,6 +43,22 @@ public class Parameters implements Iterable<Map.Entry<String, ParameterValue>> {
         return null;
     }
 
+    /**
+     * Returns the raw value associated to the specified parameter name.
+     *
+     * @param parameterName the name of the parameter to look for.
+     * @return the value associated to the parameter or {@code null} if none.
+     */
+    public Object getValue(String parameterName) {
+        ParameterValue parameterValue = parameters.get(parameterName);
+
+        if (parameterValue != null) {
+            return parameterValue.getValue();
+        }
+
+        return null;
+    }
+
     public <T> boolean contains(String parameterName) {
         return parameters.containsKey(parameterName);
     }
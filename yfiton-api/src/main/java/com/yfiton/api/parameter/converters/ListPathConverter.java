@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.api.parameter.converters;
+
+import com.google.common.collect.ImmutableList;
+import com.yfiton.api.exceptions.ConversionException;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Converts a comma separated list of paths.
+ *
+ * @author lpellegr
+ */
+public final class ListPathConverter implements Converter<List<Path>> {
+
+    private final ListStringConverter listConverter = new ListStringConverter();
+
+    private final PathConverter pathConverter = new PathConverter();
+
+    @Override
+    public List<Path> convert(String parameterName, String parameterValue) throws ConversionException {
+        ImmutableList.Builder<Path> result = ImmutableList.builder();
+
+        for (String path : listConverter.convert(parameterName, parameterValue)) {
+            if (!path.trim().isEmpty()) {
+                result.add(pathConverter.convert(parameterName, path.trim()));
+            }
+        }
+
+        return result.build();
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.api.parameter.validators;
+
+import com.yfiton.api.exceptions.ValidationException;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Checks that all the files of a list exist.
+ *
+ * @author lpellegr
+ */
+public class FilesExistValidator implements Validator<List<Path>> {
+
+    private final FileExistValidator fileValidator = new FileExistValidator();
+
+    @Override
+    public void validate(String parameterName, List<Path> parameterValue) throws ValidationException {
+        for (Path path : parameterValue) {
+            fileValidator.validate(parameterName, path);
+        }
+    }
+
+}
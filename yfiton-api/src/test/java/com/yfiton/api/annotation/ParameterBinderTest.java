@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.api.annotation;
+
+import com.google.common.collect.ImmutableMap;
+import com.yfiton.api.Notifier;
+import com.yfiton.api.exceptions.NotificationException;
+import com.yfiton.api.exceptions.ParameterException;
+import com.yfiton.api.parameter.ParameterValue;
+import com.yfiton.api.parameter.Parameters;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Optional;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests associated to {@link ParameterBinder}.
+ *
+ * @author lpellegr
+ */
+public class ParameterBinderTest {
+
+    @Test
+    public void testBind() throws ParameterException {
+        A notifier = new A();
+
+        ParameterBinder.of(A.class).bind(notifier,
+                new Parameters(ImmutableMap.of(
+                        "message", new ParameterValue("hello", false),
+                        "repeat", new ParameterValue(3, false),
+                        "b", new ParameterValue("inherited", false))));
+
+        assertThat(notifier.message).isEqualTo("hello");
+        assertThat(notifier.count).isEqualTo(3);
+        assertThat(notifier.b).isEqualTo("inherited");
+        assertThat(notifier.unannotated).isEqualTo("unchanged");
+    }
+
+    @Test
+    public void testBindKeepsDefaultValues() throws ParameterException {
+        A notifier = new A();
+
+        ParameterBinder.of(A.class).bind(notifier,
+                new Parameters(ImmutableMap.of("message", new ParameterValue("hello", false))));
+
+        assertThat(notifier.count).isEqualTo(1);
+    }
+
+    @Test(expected = ParameterException.class)
+    public void testBindMissingRequiredParameter() throws ParameterException {
+        ParameterBinder.of(A.class).bind(new A(), new Parameters(ImmutableMap.of()));
+    }
+
+    @Test
+    public void testBindHiddenParameterWithoutInput() {
+        InputStream in = System.in;
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+
+        try {
+            ParameterBinder.of(C.class).bind(new C(), new Parameters(ImmutableMap.of()));
+            fail("Missing hidden parameter accepted");
+        } catch (ParameterException e) {
+            assertThat(e.getMessage()).isEqualTo("Missing required parameter 'password'");
+        } finally {
+            System.setIn(in);
+        }
+    }
+
+    @Test
+    public void testOfIsCached() {
+        assertThat(ParameterBinder.of(A.class)).isSameAs(ParameterBinder.of(A.class));
+    }
+
+    private static class B extends Notifier {
+
+        @Parameter
+        protected String b;
+
+        @Override
+        protected Check checkParameters(Parameters parameters) {
+            return Check.succeeded();
+        }
+
+        @Override
+        protected void notify(Parameters parameters) throws NotificationException {
+        }
+
+        @Override
+        public String getKey() {
+            return "b";
+        }
+
+        @Override
+        public String getName() {
+            return "B";
+        }
+
+        @Override
+        public Optional<String> getDescription() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<String> getUrl() {
+            return Optional.empty();
+        }
+
+    }
+
+    private static final class A extends B {
+
+        @Parameter(required = true)
+        private String message;
+
+        @Parameter(name = "repeat")
+        private int count = 1;
+
+        private String unannotated = "unchanged";
+
+    }
+
+    private static final class C extends B {
+
+        @Parameter(required = true, hidden = true)
+        private String password;
+
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.api.annotation.processing;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.yfiton.api.NotifierDescriptor;
+import com.yfiton.api.parameter.ParameterDescriptor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.*;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Unit tests associated to {@link NotifierProcessor}.
+ *
+ * @author lpellegr
+ */
+public class NotifierProcessorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGenerateDescriptor() throws Exception {
+        Path output = compile("test/SampleNotifier.java",
+                "package test;",
+                "import com.yfiton.api.annotation.NotifierInfo;",
+                "import com.yfiton.api.annotation.Parameter;",
+                "@NotifierInfo(key = \"sample\", name = \"Sample\", description = \"First line\\nSecond \\\"line\\\"\")",
+                "public class SampleNotifier extends com.yfiton.api.Notifier {",
+                "    private static final int DEFAULT_DELAY = 42;",
+                "    @Parameter(description = \"The message\", required = true)",
+                "    private String message;",
+                "    @Parameter(name = \"wait\")",
+                "    private int delay = DEFAULT_DELAY;",
+                "    @Parameter",
+                "    private double ratio = -(0.5);",
+                "    @Parameter",
+                "    private boolean enabled;",
+                "    @Parameter",
+                "    private java.util.List<String> values;",
+                "    protected Check checkParameters(com.yfiton.api.parameter.Parameters parameters) { return Check.succeeded(); }",
+                "    protected void notify(com.yfiton.api.parameter.Parameters parameters) { }",
+                "}");
+
+        List<String> index = Files.readAllLines(output.resolve(NotifierDescriptor.INDEX_RESOURCE));
+        assertThat(index).containsExactly("sample test.SampleNotifier test.SampleNotifierDescriptor");
+
+        try (URLClassLoader classLoader = new URLClassLoader(
+                new URL[]{output.toUri().toURL()}, getClass().getClassLoader())) {
+            NotifierDescriptor descriptor =
+                    (NotifierDescriptor) classLoader.loadClass("test.SampleNotifierDescriptor").newInstance();
+
+            assertThat(descriptor.getKey()).isEqualTo("sample");
+            assertThat(descriptor.getName()).isEqualTo("Sample");
+            assertThat(descriptor.getDescription().get()).isEqualTo("First line\nSecond \"line\"");
+            assertThat(descriptor.getUrl().isPresent()).isFalse();
+            assertThat(descriptor.getNotifierClassName()).isEqualTo("test.SampleNotifier");
+
+            List<ParameterDescriptor> parameters = descriptor.getParameters();
+            assertThat(parameters).hasSize(5);
+
+            ParameterDescriptor message = parameters.get(0);
+            assertThat(message.getName()).isEqualTo("message");
+            assertThat(message.getDescription()).isEqualTo("The message");
+            assertThat(message.getTypeName()).isEqualTo("String");
+            assertThat(message.getDefaultValue().isPresent()).isFalse();
+            assertThat(message.getConverterClassName()).isEqualTo("com.yfiton.api.parameter.converters.StringConverter");
+            assertThat(message.getValidatorClassName()).isEqualTo("com.yfiton.api.parameter.validators.NoValidator");
+            assertThat(message.isRequired()).isTrue();
+
+            assertThat(parameters.get(1).getName()).isEqualTo("wait");
+            assertThat(parameters.get(1).getTypeName()).isEqualTo("int");
+            assertThat(parameters.get(1).getDefaultValue().get()).isEqualTo("42");
+            assertThat(parameters.get(2).getDefaultValue().get()).isEqualTo("-0.5");
+            assertThat(parameters.get(3).getDefaultValue().get()).isEqualTo("false");
+            assertThat(parameters.get(4).getTypeName()).isEqualTo("List");
+            assertThat(parameters.get(4).getConverterClassName()).isEqualTo("com.yfiton.api.parameter.converters.ListStringConverter");
+        }
+    }
+
+    @Test
+    public void testUnsupportedParameterType() throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+        boolean success = compile(diagnostics, "test/InvalidNotifier.java",
+                "package test;",
+                "@com.yfiton.api.annotation.NotifierInfo(key = \"invalid\", name = \"Invalid\")",
+                "public class InvalidNotifier extends com.yfiton.api.Notifier {",
+                "    @com.yfiton.api.annotation.Parameter",
+                "    private java.io.File file;",
+                "    protected Check checkParameters(com.yfiton.api.parameter.Parameters parameters) { return Check.succeeded(); }",
+                "    protected void notify(com.yfiton.api.parameter.Parameters parameters) { }",
+                "}");
+
+        assertThat(success).isFalse();
+        assertThat(diagnostics.getDiagnostics().get(0).getMessage(null)).contains("Unsupported object type");
+    }
+
+    private Path compile(String fileName, String... lines) throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+        if (!compile(diagnostics, fileName, lines)) {
+            throw new AssertionError("Compilation failed: " + diagnostics.getDiagnostics());
+        }
+
+        return folder.getRoot().toPath().resolve("classes");
+    }
+
+    private boolean compile(DiagnosticCollector<JavaFileObject> diagnostics, String fileName, String... lines) throws IOException {
+        Path sources = folder.getRoot().toPath().resolve("sources");
+        Path classes = folder.getRoot().toPath().resolve("classes");
+        Path source = sources.resolve(fileName);
+
+        Files.createDirectories(source.getParent());
+        Files.createDirectories(classes);
+        Files.write(source, Joiner.on('\n').join(lines).getBytes(StandardCharsets.UTF_8));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    ImmutableList.of("-classpath", System.getProperty("java.class.path"), "-d", classes.toString()),
+                    null, fileManager.getJavaFileObjects(source.toFile()));
+            task.setProcessors(ImmutableList.of(new NotifierProcessor()));
+
+            return task.call();
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.api.parameter.converters;
+
+import com.yfiton.api.exceptions.ConversionException;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Unit tests associated to {@link ListPathConverter}.
+ *
+ * @author lpellegr
+ */
+public class ListPathConverterTest extends ConverterTest<List<Path>> {
+
+    public ListPathConverterTest() {
+        super(ListPathConverter.class);
+    }
+
+    @Test
+    public void testConvertEmptyInput() throws ConversionException {
+        assertThat(testConvert("param", "")).isEmpty();
+    }
+
+    @Test
+    public void testConvertMultiplePaths() throws ConversionException {
+        List<Path> result = testConvert("param", "build.log, /tmp/heap.txt,");
+        assertThat(result).containsExactly(Paths.get("build.log"), Paths.get("/tmp/heap.txt")).inOrder();
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.cli;
+
+import com.yfiton.api.Notifier;
+import com.yfiton.core.NotifierRegistry;
+import com.yfiton.core.Yfiton;
+import com.yfiton.core.YfitonBuilder;
+import com.yfiton.api.exceptions.ConversionException;
+import org.apache.commons.configuration.ConfigurationException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures, in a fresh JVM, the time needed to get a ready to use engine for
+ * {@code yfiton -n beep}. Each fork measures a single cold invocation.
+ * <p/>
+ * {@code serviceLoader} reproduces the previous registry that instantiated
+ * every notifier on the classpath before resolving the requested one.
+ *
+ * @author lpellegr
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    @Benchmark
+    public Yfiton lazyRegistry() throws ConversionException, ConfigurationException {
+        return new YfitonBuilder(new NotifierRegistry().find("beep")).build();
+    }
+
+    @Benchmark
+    public Yfiton serviceLoader() throws ConversionException, ConfigurationException {
+        Notifier beep = null;
+
+        for (Notifier notifier : ServiceLoader.load(Notifier.class)) {
+            if (notifier.getKey().equals("beep")) {
+                beep = notifier;
+            }
+        }
+
+        return new YfitonBuilder(beep).build();
+    }
+
+}
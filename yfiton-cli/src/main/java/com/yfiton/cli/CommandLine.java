@@ -18,6 +18,7 @@ package com.yfiton.cli;
 
 import com.beust.jcommander.DynamicParameter;
 import com.beust.jcommander.Parameter;
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 
 import java.util.*;
@@ -29,7 +30,7 @@ import java.util.*;
  */
 public class CommandLine {
 
-    @Parameter(names = {"--notify-with", "--notify-on", "--notify-by", "-n"}, description = "Notifier to use for sending notification")
+    @Parameter(names = {"--notify-with", "--notify-on", "--notify-by", "-n"}, description = "Notifier to use for sending notification. Several comma separated notifiers (e.g. email,slack) are notified concurrently, parameters can then be prefixed by a notifier key (e.g. -Pslack.channel=#random) to apply to a single notifier")
     public String notifier = "beep";
 
     @DynamicParameter(names = {"-P"}, description = "Define a parameter to set for the notifier that is used")
@@ -59,7 +60,23 @@ public class CommandLine {
     @Parameter(names = {"--wipe-cache", "-wc"}, description = "Wipe cache folder (it includes authorizations got to access third party services with available notifiers)")
     public boolean wipeCache;
 
+    @Parameter(names = {"--daemon"}, description = "Run as a long-lived daemon that keeps notifiers warm and serves notifications sent by subsequent yfiton invocations")
+    public boolean daemon;
+
+    @Parameter(names = {"--no-daemon"}, description = "Send the notification from the current process even if a daemon is running")
+    public boolean noDaemon;
+
     @Parameter
     public List<String> main = new ArrayList<>(0);
 
+    /**
+     * Returns the keys of the notifiers to use, as specified with the comma
+     * separated value of the notifier option.
+     *
+     * @return the keys of the notifiers to use.
+     */
+    public List<String> getNotifierKeys() {
+        return Splitter.on(',').trimResults().omitEmptyStrings().splitToList(notifier);
+    }
+
 }
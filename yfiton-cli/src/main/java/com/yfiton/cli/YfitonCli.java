@@ -21,14 +21,22 @@ import com.beust.jcommander.JCommander;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.yfiton.api.logging.Level;
+import com.yfiton.api.NotificationOutcome;
 import com.yfiton.api.Notifier;
+import com.yfiton.api.NotifierDescriptor;
 import com.yfiton.api.annotation.AnnotationProcessor;
 import com.yfiton.api.exceptions.ConversionException;
 import com.yfiton.api.exceptions.ParameterException;
-import com.yfiton.api.parameter.Parameter;
+import com.yfiton.api.parameter.ParameterDescriptor;
+import com.yfiton.cli.daemon.DaemonClient;
+import com.yfiton.cli.daemon.DaemonProtocol;
+import com.yfiton.cli.daemon.YfitonDaemon;
+import com.yfiton.core.AggregateNotificationResult;
+import com.yfiton.core.NotifierIndex;
 import com.yfiton.core.NotifierRegistry;
 import com.yfiton.core.Yfiton;
 import com.yfiton.core.YfitonBuilder;
+import com.yfiton.core.YfitonGroup;
 import com.yfiton.api.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.lang3.text.WordUtils;
@@ -38,6 +46,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * YfitonCli allows to use Yfiton from the command line.
@@ -70,16 +81,35 @@ public class YfitonCli {
 
         cli.adjustLoggingLevel(mainCommand);
 
-        YfitonBuilder builder = new YfitonBuilder(mainCommand.notifier);
-        builder.displayStackTraces(mainCommand.displayStackTraces);
-        builder.setConfigurationFile(Configuration.getNotifierConfigurationFilePath(mainCommand.notifier));
+        if (mainCommand.daemon) {
+            runDaemon();
+            return;
+        }
+
+        if (!mainCommand.noDaemon && cli.forwardToDaemon(mainCommand)) {
+            System.exit(exitCode);
+            return;
+        }
 
         if (cli.handleOptions(mainCommand)) {
             return;
         }
 
+        List<String> notifierKeys = mainCommand.getNotifierKeys();
+
         try {
-            builder.build().notify(mainCommand.parameters);
+            if (notifierKeys.size() > 1) {
+                notifyAll(YfitonGroup.of(notifierKeys, mainCommand.displayStackTraces),
+                        mainCommand.parameters, mainCommand.displayStackTraces);
+            } else {
+                String notifierKey = notifierKeys.isEmpty() ? mainCommand.notifier : notifierKeys.get(0);
+
+                YfitonBuilder builder = new YfitonBuilder(notifierKey);
+                builder.displayStackTraces(mainCommand.displayStackTraces);
+                builder.setConfigurationFile(Configuration.getNotifierConfigurationFilePath(notifierKey));
+
+                builder.build().notify(mainCommand.parameters);
+            }
         } catch (ConfigurationException e) {
             logError(e.getMessage());
         } catch (ConversionException e) {
@@ -91,6 +121,79 @@ public class YfitonCli {
         System.exit(exitCode);
     }
 
+    private static void notifyAll(YfitonGroup group, Map<String, String> parameters, boolean displayStackTraces) {
+        AggregateNotificationResult result = group.send(parameters);
+
+        for (NotificationOutcome outcome : result.getOutcomes()) {
+            if (outcome.isSuccess()) {
+                log.info("Notification sent in {} ms by using {}",
+                        outcome.getExecutionTime(TimeUnit.MILLISECONDS), outcome.getNotifierKey());
+            } else {
+                Throwable failure = outcome.getFailure().get();
+
+                logError("Notification by using " + outcome.getNotifierKey() + " failed after "
+                        + outcome.getExecutionTime(TimeUnit.MILLISECONDS) + " ms: " + failure.getMessage());
+
+                if (displayStackTraces && failure.getCause() != null) {
+                    log.error("Stacktrace:", failure.getCause());
+                }
+            }
+        }
+
+        log.info("Notification sent by {} out of {} notifiers in {} ms",
+                result.getOutcomes().size() - result.getFailures().size(), result.getOutcomes().size(),
+                result.getExecutionTime(TimeUnit.MILLISECONDS));
+    }
+
+    private static void runDaemon() throws IOException {
+        YfitonDaemon daemon = new YfitonDaemon();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                daemon.close();
+            } catch (IOException e) {
+                log.warn(e.getMessage());
+            }
+        }));
+
+        daemon.run();
+    }
+
+    private boolean forwardToDaemon(CommandLine mainCommand) {
+        if (mainCommand.help || mainCommand.displayVersion || mainCommand.describeNotifier != null
+                || mainCommand.listNotifiers || mainCommand.wipeCache || mainCommand.headless
+                || mainCommand.getNotifierKeys().size() > 1) {
+            return false;
+        }
+
+        Optional<DaemonClient> client = DaemonClient.discover();
+
+        if (!client.isPresent()) {
+            return false;
+        }
+
+        try {
+            Optional<DaemonProtocol.Response> response =
+                    client.get().send(mainCommand.notifier, mainCommand.displayStackTraces, mainCommand.parameters);
+
+            if (!response.isPresent()) {
+                log.debug("Request not handled by daemon, sending notification from current process");
+                return false;
+            }
+
+            if (response.get().getExitCode() == 0) {
+                log.info("Notification sent in {} ms by using {} (daemon)",
+                        response.get().getExecutionTime(), mainCommand.notifier);
+            } else {
+                logError(response.get().getErrors().toArray(new String[0]));
+            }
+        } catch (IOException e) {
+            logError("Connection with daemon lost: " + e.getMessage());
+        }
+
+        return true;
+    }
+
     private static void logError(String... messages) {
         exitCode = 1;
 
@@ -162,31 +265,45 @@ public class YfitonCli {
     }
 
     private void printAvailableNotifiers(List<String> selectedNotifiersToDescribe, boolean describeParameters) {
-        Map<String, Notifier> notifiers = NotifierRegistry.getInstance().getAvailable();
-        Map<String, Map<String, Parameter>> parameters = AnnotationProcessor.analyze(notifiers.values());
+        Map<String, NotifierDescriptor> descriptors = getNotifierDescriptors();
 
         List<String> notifierToDescribe = new ArrayList<>(selectedNotifiersToDescribe);
 
         if (selectedNotifiersToDescribe.isEmpty()) {
-            notifiers.values().forEach(n -> notifierToDescribe.add(n.getKey()));
+            notifierToDescribe.addAll(descriptors.keySet());
         }
 
         notifierToDescribe.stream().sorted().forEach(
                 key -> {
-                    Notifier notifier = notifiers.get(key);
+                    NotifierDescriptor descriptor = descriptors.get(key);
 
-                    if (notifier == null) {
+                    if (descriptor == null) {
                         log.warn("No notifier found with key '" + key + "'");
                         return;
                     }
 
-                    System.out.println(
-                            getNotifierHelp(
-                                    notifier, parameters.get(key), describeParameters));
+                    System.out.println(getNotifierHelp(descriptor, describeParameters));
                 });
     }
 
-    private String getNotifierHelp(Notifier notifier, Map<String, Parameter> parameters, boolean describeParameters) {
+    private Map<String, NotifierDescriptor> getNotifierDescriptors() {
+        NotifierIndex index = NotifierIndex.load();
+
+        Map<String, NotifierDescriptor> result = new TreeMap<>();
+
+        for (NotifierDescriptor descriptor : index.getDescriptors()) {
+            result.put(descriptor.getKey(), descriptor);
+        }
+
+        // descriptors not generated at compile time, fall back to loading notifiers
+        for (Notifier notifier : NotifierRegistry.getInstance().getUnindexed().values()) {
+            result.putIfAbsent(notifier.getKey(), AnnotationProcessor.describe(notifier));
+        }
+
+        return result;
+    }
+
+    private String getNotifierHelp(NotifierDescriptor notifier, boolean describeParameters) {
         StringBuilder buf = new StringBuilder();
 
         buf.append(notifier.getKey());
@@ -204,14 +321,16 @@ public class YfitonCli {
             buf.append("\n");
         }
 
+        List<ParameterDescriptor> parameters = notifier.getParameters();
+
         if (describeParameters && parameters.size() > 0) {
             buf.append("\n");
             buf.append("  Accepted parameters:");
             buf.append("\n");
 
-            parameters.forEach((parameterName, parameter) -> {
+            parameters.forEach(parameter -> {
                 buf.append("    ");
-                buf.append(parameterName);
+                buf.append(parameter.getName());
 
                 if (parameter.isRequired()) {
                     buf.append(" (required)");
@@ -226,13 +345,13 @@ public class YfitonCli {
                 }
 
                 buf.append("      ");
-                buf.append("Type: " + parameter.getType().getSimpleName());
+                buf.append("Type: " + parameter.getTypeName());
                 buf.append("\n");
 
                 if (!parameter.isRequired()) {
                     buf.append("      ");
                     buf.append("Default: ");
-                    buf.append(getDefaultValue(parameter));
+                    buf.append(parameter.getDefaultValue().orElse("undefined"));
                     buf.append("\n");
                 }
             });
@@ -241,16 +360,4 @@ public class YfitonCli {
         return buf.toString();
     }
 
-    private String getDefaultValue(Parameter parameter) {
-        Object defaultValue = parameter.getDefaultValue();
-
-        if (defaultValue == null) {
-            return "undefined";
-        } else if (defaultValue instanceof List) {
-            return "[" + Joiner.on(", ").join((List) defaultValue) + "]";
-        }
-
-        return defaultValue.toString();
-    }
-
 }
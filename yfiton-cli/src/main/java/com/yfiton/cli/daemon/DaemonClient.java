@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.cli.daemon;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Thin client forwarding notification requests to a running
+ * {@link YfitonDaemon}.
+ *
+ * @author lpellegr
+ */
+public class DaemonClient {
+
+    private static final int CONNECT_TIMEOUT = 200; // in ms
+
+    private final int port;
+
+    private final String token;
+
+    public DaemonClient(int port, String token) {
+        this.port = port;
+        this.token = token;
+    }
+
+    /**
+     * Returns a client connected to the daemon published in the port file,
+     * if any.
+     *
+     * @return a client for the running daemon or an empty value if no daemon
+     * has been published.
+     */
+    public static Optional<DaemonClient> discover() {
+        Path portFile = DaemonProtocol.getPortFilePath();
+
+        if (!Files.exists(portFile)) {
+            return Optional.empty();
+        }
+
+        try {
+            List<String> lines = Files.readAllLines(portFile, StandardCharsets.UTF_8);
+
+            if (lines.size() < 2) {
+                return Optional.empty();
+            }
+
+            return Optional.of(new DaemonClient(Integer.parseInt(lines.get(0).trim()), lines.get(1).trim()));
+        } catch (IOException | NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Forwards a notification request to the daemon.
+     *
+     * @param notifierKey        the key of the notifier to use.
+     * @param displayStackTraces whether stack traces must be reported on error.
+     * @param parameters         parameter values to pass to the notifier.
+     * @return the response sent back by the daemon or an empty value if the
+     * daemon cannot be reached or the request cannot be sent entirely, in
+     * which case the notification has not been handled by the daemon.
+     * @throws IOException if the connection breaks once the request is submitted.
+     */
+    public Optional<DaemonProtocol.Response> send(String notifierKey, boolean displayStackTraces, Map<String, String> parameters) throws IOException {
+        try (Socket socket = new Socket()) {
+            try {
+                socket.setTcpNoDelay(true);
+                socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT);
+            } catch (IOException e) {
+                // stale port file, the daemon is no longer running
+                return Optional.empty();
+            }
+
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                new DaemonProtocol.Request(
+                        token, notifierKey, Paths.get("").toAbsolutePath().toString(), displayStackTraces, parameters).writeTo(out);
+            } catch (IOException e) {
+                // the daemon cannot process an incomplete request
+                return Optional.empty();
+            }
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            return Optional.of(DaemonProtocol.Response.readFrom(in));
+        }
+    }
+
+}
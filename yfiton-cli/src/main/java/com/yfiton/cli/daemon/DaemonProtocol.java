@@ -0,0 +1,230 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.cli.daemon;
+
+import com.google.common.collect.ImmutableList;
+import com.yfiton.api.Configuration;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary protocol spoken between {@link DaemonClient} and
+ * {@link YfitonDaemon} over a loopback TCP connection.
+ * <p/>
+ * A request is made of the protocol version, the secret token published by
+ * the daemon, the notifier key, the working directory of the client, a flag
+ * for stack traces and the parameter values. A response contains an exit code, the execution time in
+ * milliseconds and error messages to display on the client side. Strings
+ * are written as their length in bytes followed by their UTF-8 encoding, so
+ * that values are not limited in size.
+ *
+ * @author lpellegr
+ */
+public final class DaemonProtocol {
+
+    static final int VERSION = 2;
+
+    // upper bound on the size of a string, guards against corrupted streams
+    static final int MAX_STRING_LENGTH = 64 * 1024 * 1024;
+
+    static final String PORT_FILE_NAME = "daemon.port";
+
+    private DaemonProtocol() {
+
+    }
+
+    /**
+     * Returns the path of the file where a running daemon publishes the port
+     * it listens to along with the token clients must present.
+     *
+     * @return the path of the file used to discover a running daemon.
+     */
+    public static Path getPortFilePath() {
+        return Configuration.CONFIGURATION_FOLDER_PATH.resolve(PORT_FILE_NAME);
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+
+        if (length < 0 || length > MAX_STRING_LENGTH) {
+            throw new IOException("Invalid string length: " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static final class Request {
+
+        private final String token;
+
+        private final String notifierKey;
+
+        // relative paths given as parameter values are resolved against it
+        private final String workingDirectory;
+
+        private final boolean displayStackTraces;
+
+        private final Map<String, String> parameters;
+
+        public Request(String token, String notifierKey, String workingDirectory, boolean displayStackTraces, Map<String, String> parameters) {
+            this.token = token;
+            this.notifierKey = notifierKey;
+            this.workingDirectory = workingDirectory;
+            this.displayStackTraces = displayStackTraces;
+            this.parameters = parameters;
+        }
+
+        public void writeTo(DataOutputStream out) throws IOException {
+            out.writeByte(VERSION);
+            writeString(out, token);
+            writeString(out, notifierKey);
+            writeString(out, workingDirectory);
+            out.writeBoolean(displayStackTraces);
+            out.writeShort(parameters.size());
+
+            for (Map.Entry<String, String> entry : parameters.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+
+            out.flush();
+        }
+
+        public static Request readFrom(DataInputStream in) throws IOException {
+            int version = in.readUnsignedByte();
+
+            if (version != VERSION) {
+                throw new IOException("Unsupported protocol version: " + version);
+            }
+
+            String token = readString(in);
+            String notifierKey = readString(in);
+            String workingDirectory = readString(in);
+            boolean displayStackTraces = in.readBoolean();
+            int nbParameters = in.readUnsignedShort();
+
+            Map<String, String> parameters = new HashMap<>(nbParameters);
+
+            for (int i = 0; i < nbParameters; i++) {
+                parameters.put(readString(in), readString(in));
+            }
+
+            return new Request(token, notifierKey, workingDirectory, displayStackTraces, parameters);
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public String getNotifierKey() {
+            return notifierKey;
+        }
+
+        public String getWorkingDirectory() {
+            return workingDirectory;
+        }
+
+        public boolean isDisplayStackTraces() {
+            return displayStackTraces;
+        }
+
+        public Map<String, String> getParameters() {
+            return parameters;
+        }
+
+    }
+
+    public static final class Response {
+
+        private final int exitCode;
+
+        private final long executionTime;
+
+        private final List<String> errors;
+
+        public Response(int exitCode, long executionTime, List<String> errors) {
+            this.exitCode = exitCode;
+            this.executionTime = executionTime;
+            this.errors = errors;
+        }
+
+        public static Response success(long executionTime) {
+            return new Response(0, executionTime, ImmutableList.of());
+        }
+
+        public static Response failure(List<String> errors) {
+            return new Response(1, -1, errors);
+        }
+
+        public void writeTo(DataOutputStream out) throws IOException {
+            out.writeByte(exitCode);
+            out.writeLong(executionTime);
+            out.writeShort(errors.size());
+
+            for (String error : errors) {
+                writeString(out, error);
+            }
+
+            out.flush();
+        }
+
+        public static Response readFrom(DataInputStream in) throws IOException {
+            int exitCode = in.readUnsignedByte();
+            long executionTime = in.readLong();
+            int nbErrors = in.readUnsignedShort();
+
+            ImmutableList.Builder<String> errors = ImmutableList.builder();
+
+            for (int i = 0; i < nbErrors; i++) {
+                errors.add(readString(in));
+            }
+
+            return new Response(exitCode, executionTime, errors.build());
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public long getExecutionTime() {
+            return executionTime;
+        }
+
+        public List<String> getErrors() {
+            return errors;
+        }
+
+    }
+
+}
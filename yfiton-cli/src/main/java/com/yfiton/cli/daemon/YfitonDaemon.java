@@ -0,0 +1,340 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.cli.daemon;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.yfiton.api.Configuration;
+import com.yfiton.api.NotificationResult;
+import com.yfiton.api.Notifier;
+import com.yfiton.api.exceptions.ConversionException;
+import com.yfiton.api.exceptions.NotificationException;
+import com.yfiton.api.exceptions.ParameterException;
+import com.yfiton.api.parameter.Parameter;
+import com.yfiton.api.parameter.converters.ListPathConverter;
+import com.yfiton.api.parameter.converters.ListStringConverter;
+import com.yfiton.api.parameter.converters.PathConverter;
+import com.yfiton.core.NotifierRegistry;
+import com.yfiton.core.Yfiton;
+import com.yfiton.core.YfitonBuilder;
+import org.apache.commons.configuration.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Long-running process that keeps notifiers warm and serves notification
+ * requests sent by {@link DaemonClient} over a loopback socket. It avoids
+ * paying JVM startup, notifier discovery and configuration parsing costs for
+ * each notification.
+ *
+ * @author lpellegr
+ */
+public class YfitonDaemon implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(YfitonDaemon.class);
+
+    private static final int NB_WORKERS = 4;
+
+    private final ServerSocket serverSocket;
+
+    private final String token;
+
+    private final ExecutorService workers;
+
+    private final Map<String, Engine> engines;
+
+    private volatile boolean running;
+
+    public YfitonDaemon() throws IOException {
+        this(0);
+    }
+
+    public YfitonDaemon(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.token = generateToken();
+        this.workers = Executors.newFixedThreadPool(NB_WORKERS, runnable -> {
+            Thread thread = new Thread(runnable, "yfiton-daemon-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.engines = new ConcurrentHashMap<>();
+    }
+
+    private static String generateToken() {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+
+        StringBuilder result = new StringBuilder();
+        for (byte b : bytes) {
+            result.append(String.format("%02x", b));
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Publishes the daemon's port and token, then accepts connections until
+     * {@link #close()} is invoked.
+     *
+     * @throws IOException if the port file cannot be written.
+     */
+    public void run() throws IOException {
+        publish();
+
+        // requests may not prompt for missing values since no terminal is attached
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+
+        running = true;
+
+        log.info("Yfiton daemon listening on port {}", serverSocket.getLocalPort());
+
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                workers.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Cannot accept connection: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void publish() throws IOException {
+        Path portFile = DaemonProtocol.getPortFilePath();
+
+        Configuration.getConfigurationDir();
+        Files.deleteIfExists(portFile);
+
+        try {
+            Files.createFile(portFile,
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            Files.createFile(portFile);
+        }
+
+        Files.write(portFile,
+                Arrays.asList(Integer.toString(serverSocket.getLocalPort()), token),
+                StandardCharsets.UTF_8);
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+
+            DaemonProtocol.Request request = DaemonProtocol.Request.readFrom(in);
+
+            if (!token.equals(request.getToken())) {
+                log.warn("Rejecting request with invalid token from {}", s.getRemoteSocketAddress());
+                DaemonProtocol.Response.failure(ImmutableList.of("Invalid daemon token")).writeTo(out);
+                return;
+            }
+
+            handle(request).writeTo(out);
+        } catch (IOException e) {
+            log.warn("Cannot serve request: {}", e.getMessage());
+        }
+    }
+
+    DaemonProtocol.Response handle(DaemonProtocol.Request request) {
+        try {
+            Yfiton yfiton = getEngine(request.getNotifierKey(), request.isDisplayStackTraces());
+
+            NotificationResult result =
+                    yfiton.send(resolvePaths(yfiton, request.getParameters(), request.getWorkingDirectory()));
+
+            log.info("Notification sent in {} ms by using {}",
+                    result.getExecutionTime(TimeUnit.MILLISECONDS), request.getNotifierKey());
+
+            return DaemonProtocol.Response.success(result.getExecutionTime(TimeUnit.MILLISECONDS));
+        } catch (ConversionException e) {
+            return DaemonProtocol.Response.failure(ImmutableList.of(e.getMessage(), e.getResolution()));
+        } catch (ParameterException | ConfigurationException | IOException | IllegalArgumentException e) {
+            return DaemonProtocol.Response.failure(ImmutableList.of(String.valueOf(e.getMessage())));
+        } catch (NotificationException e) {
+            ImmutableList.Builder<String> errors = ImmutableList.builder();
+
+            for (String message : e.getMessages()) {
+                if (message != null) {
+                    errors.add(message);
+                }
+            }
+
+            if (request.isDisplayStackTraces() && e.getCause() != null) {
+                StringWriter stackTrace = new StringWriter();
+                e.getCause().printStackTrace(new PrintWriter(stackTrace));
+                errors.add("Stacktrace: " + stackTrace);
+            }
+
+            return DaemonProtocol.Response.failure(errors.build());
+        } catch (RuntimeException e) {
+            // a faulty notifier must not leave the client without a response
+            log.error("Unexpected error while sending notification with " + request.getNotifierKey(), e);
+
+            ImmutableList.Builder<String> errors = ImmutableList.builder();
+            errors.add("Unexpected error: " + e);
+
+            if (request.isDisplayStackTraces()) {
+                StringWriter stackTrace = new StringWriter();
+                e.printStackTrace(new PrintWriter(stackTrace));
+                errors.add("Stacktrace: " + stackTrace);
+            }
+
+            return DaemonProtocol.Response.failure(errors.build());
+        }
+    }
+
+    /**
+     * Resolves relative paths given to path parameters against the working
+     * directory of the client, since the daemon runs from another directory.
+     */
+    static Map<String, String> resolvePaths(Yfiton yfiton, Map<String, String> parameters, String workingDirectory) {
+        Map<String, Parameter> supportedParameters =
+                yfiton.getSupportedParameters().getOrDefault(yfiton.getNotifier().getKey(), ImmutableMap.of());
+
+        Path directory = Paths.get(workingDirectory);
+        Map<String, String> result = new HashMap<>(parameters);
+
+        for (Map.Entry<String, String> entry : parameters.entrySet()) {
+            Parameter parameter = supportedParameters.get(entry.getKey());
+
+            if (parameter == null) {
+                continue;
+            }
+
+            if (parameter.getConverter() instanceof PathConverter) {
+                result.put(entry.getKey(), resolve(directory, entry.getValue()));
+            } else if (parameter.getConverter() instanceof ListPathConverter) {
+                List<String> paths = new ListStringConverter().convert(entry.getKey(), entry.getValue());
+
+                result.put(entry.getKey(),
+                        paths.stream().map(path -> resolve(directory, path)).collect(Collectors.joining(",")));
+            }
+        }
+
+        return result;
+    }
+
+    private static String resolve(Path directory, String path) {
+        String trimmed = path.trim();
+
+        if (trimmed.isEmpty()) {
+            return path;
+        }
+
+        try {
+            return directory.resolve(trimmed).toString();
+        } catch (InvalidPathException e) {
+            // reported by the parameter converter
+            return path;
+        }
+    }
+
+    Yfiton getEngine(String notifierKey, boolean displayStackTraces) throws IOException, ConfigurationException, ConversionException {
+        return getEngine(notifierKey, displayStackTraces, Configuration.getNotifierConfigurationFilePath(notifierKey));
+    }
+
+    Yfiton getEngine(String notifierKey, boolean displayStackTraces, Path configurationFile) throws IOException, ConfigurationException, ConversionException {
+        long lastModified = Files.exists(configurationFile) ? Files.getLastModifiedTime(configurationFile).toMillis() : 0;
+
+        String engineKey = notifierKey + ":" + displayStackTraces;
+        Engine engine = engines.get(engineKey);
+
+        // preferences are loaded once per engine, rebuild it when they change
+        if (engine == null || engine.lastModified != lastModified) {
+            Yfiton yfiton =
+                    new YfitonBuilder(newNotifier(notifierKey))
+                            .displayStackTraces(displayStackTraces)
+                            .setConfigurationFile(configurationFile)
+                            .build();
+
+            engine = new Engine(yfiton, lastModified);
+            engines.put(engineKey, engine);
+        }
+
+        return engine.yfiton;
+    }
+
+    /**
+     * Creates a new instance of the specified notifier. Notifiers read their
+     * configuration file once, when created, so that the instance kept by
+     * the registry would ignore changes made since the daemon has started.
+     */
+    Notifier newNotifier(String notifierKey) throws ConfigurationException {
+        Notifier registered = NotifierRegistry.getInstance().find(notifierKey);
+
+        if (registered == null) {
+            throw new IllegalArgumentException("Unrecognized notifier: " + notifierKey);
+        }
+
+        try {
+            return registered.getClass().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new ConfigurationException("Cannot create notifier " + notifierKey + ": " + e, e);
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+
+        workers.shutdown();
+        serverSocket.close();
+
+        Files.deleteIfExists(DaemonProtocol.getPortFilePath());
+    }
+
+    private static final class Engine {
+
+        private final Yfiton yfiton;
+
+        private final long lastModified;
+
+        private Engine(Yfiton yfiton, long lastModified) {
+            this.yfiton = yfiton;
+            this.lastModified = lastModified;
+        }
+
+    }
+
+}
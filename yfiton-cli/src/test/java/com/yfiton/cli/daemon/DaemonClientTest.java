@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.cli.daemon;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Unit tests associated to {@link DaemonClient}.
+ *
+ * @author lpellegr
+ */
+public class DaemonClientTest {
+
+    @Test
+    public void testIncompleteRequestNotHandled() throws IOException, InterruptedException {
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            // a daemon dying before it has read the request
+            Thread server = new Thread(() -> {
+                try (Socket socket = serverSocket.accept()) {
+                    socket.setSoLinger(true, 0);
+                } catch (IOException e) {
+                    // ignore
+                }
+            });
+            server.start();
+
+            DaemonClient client = new DaemonClient(serverSocket.getLocalPort(), "token");
+
+            String message = Strings.repeat("x", 32 * 1024 * 1024);
+
+            assertThat(client.send("email", false, ImmutableMap.of("message", message)).isPresent()).isFalse();
+
+            server.join(5000);
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.cli.daemon;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.io.*;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Unit tests associated to {@link DaemonProtocol}.
+ *
+ * @author lpellegr
+ */
+public class DaemonProtocolTest {
+
+    @Test
+    public void testRequestRoundTrip() throws IOException {
+        DaemonProtocol.Request request =
+                new DaemonProtocol.Request("token", "slack", "/home/user", true,
+                        ImmutableMap.of("message", "Build #42 has failed!", "channel", "#random"));
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        request.writeTo(new DataOutputStream(buffer));
+
+        DaemonProtocol.Request result =
+                DaemonProtocol.Request.readFrom(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+
+        assertThat(result.getToken()).isEqualTo("token");
+        assertThat(result.getNotifierKey()).isEqualTo("slack");
+        assertThat(result.getWorkingDirectory()).isEqualTo("/home/user");
+        assertThat(result.isDisplayStackTraces()).isTrue();
+        assertThat(result.getParameters()).containsExactly("message", "Build #42 has failed!", "channel", "#random");
+    }
+
+    @Test
+    public void testLongValueRoundTrip() throws IOException {
+        String message = Strings.repeat("Build failed \u00e9\u20ac\ud83d\ude00 ", 20000);
+
+        DaemonProtocol.Request request =
+                new DaemonProtocol.Request("token", "email", "/home/user", false, ImmutableMap.of("message", message));
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        request.writeTo(new DataOutputStream(buffer));
+
+        DaemonProtocol.Request result =
+                DaemonProtocol.Request.readFrom(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+
+        assertThat(result.getParameters()).containsExactly("message", message);
+    }
+
+    @Test
+    public void testResponseRoundTrip() throws IOException {
+        DaemonProtocol.Response response =
+                DaemonProtocol.Response.failure(ImmutableList.of("Missing required parameter 'message'"));
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        response.writeTo(new DataOutputStream(buffer));
+
+        DaemonProtocol.Response result =
+                DaemonProtocol.Response.readFrom(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+
+        assertThat(result.getExitCode()).isEqualTo(1);
+        assertThat(result.getErrors()).containsExactly("Missing required parameter 'message'");
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsupportedVersion() throws IOException {
+        DaemonProtocol.Request.readFrom(new DataInputStream(new ByteArrayInputStream(new byte[]{42})));
+    }
+
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.cli.daemon;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.yfiton.api.Notifier;
+import com.yfiton.api.annotation.Parameter;
+import com.yfiton.api.exceptions.ConversionException;
+import com.yfiton.api.exceptions.NotificationException;
+import com.yfiton.api.parameter.Parameters;
+import com.yfiton.api.parameter.converters.ListPathConverter;
+import com.yfiton.api.parameter.converters.PathConverter;
+import com.yfiton.core.NotifierRegistry;
+import com.yfiton.core.Yfiton;
+import com.yfiton.core.YfitonBuilder;
+import org.apache.commons.configuration.ConfigurationException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Unit tests associated to {@link YfitonDaemon}.
+ *
+ * @author lpellegr
+ */
+public class YfitonDaemonTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final FailingNotifier notifier = new FailingNotifier();
+
+    private YfitonDaemon daemon;
+
+    @Before
+    public void setUp() throws IOException {
+        daemon = new YfitonDaemon() {
+            @Override
+            Yfiton getEngine(String notifierKey, boolean displayStackTraces) throws ConfigurationException, ConversionException {
+                return new YfitonBuilder(notifier).displayStackTraces(displayStackTraces).build();
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        daemon.close();
+    }
+
+    @Test
+    public void testUncheckedExceptionReported() {
+        DaemonProtocol.Response response =
+                daemon.handle(new DaemonProtocol.Request("token", "failing", "/home/user", false, ImmutableMap.of("message", "Hello")));
+
+        assertThat(response.getExitCode()).isEqualTo(1);
+        assertThat(response.getErrors()).containsExactly("Unexpected error: java.lang.IllegalStateException: Not ready");
+    }
+
+    @Test
+    public void testRelativePathsResolvedAgainstClientDirectory() throws ConfigurationException, ConversionException {
+        Yfiton yfiton = new YfitonBuilder(new FilesNotifier()).build();
+
+        Map<String, String> result = YfitonDaemon.resolvePaths(yfiton,
+                ImmutableMap.of("message", "build.log", "file", "build.log", "attachment", "a.txt, /tmp/b.txt"),
+                "/home/user/project");
+
+        assertThat(result).containsExactly(
+                "message", "build.log",
+                "file", "/home/user/project/build.log",
+                "attachment", "/home/user/project/a.txt,/tmp/b.txt");
+    }
+
+    @Test
+    public void testConfigurationChangesReloaded() throws Exception {
+        Path configurationFile = folder.newFile("configured.ini").toPath();
+        ConfiguredNotifier.configurationFile = configurationFile;
+        Files.write(configurationFile, ImmutableList.of("token = first"), StandardCharsets.UTF_8);
+
+        // the registered instance has read the configuration once, when created
+        NotifierRegistry.getInstance().register(new ConfiguredNotifier());
+
+        Yfiton first = daemon.getEngine("configured", false, configurationFile);
+
+        assertThat(((ConfiguredNotifier) first.getNotifier()).getToken()).isEqualTo("first");
+        assertThat(daemon.getEngine("configured", false, configurationFile)).isSameAs(first);
+
+        // as done by another process, e.g. when configuring a new Slack team
+        Files.write(configurationFile, ImmutableList.of("token = second"), StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(configurationFile,
+                FileTime.fromMillis(Files.getLastModifiedTime(configurationFile).toMillis() + 2000));
+
+        Yfiton second = daemon.getEngine("configured", false, configurationFile);
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(((ConfiguredNotifier) second.getNotifier()).getToken()).isEqualTo("second");
+    }
+
+    private static final class FailingNotifier extends Notifier {
+
+        @Parameter(required = true)
+        private String message;
+
+        @Override
+        protected Check checkParameters(Parameters parameters) {
+            return Check.succeeded();
+        }
+
+        @Override
+        protected void notify(Parameters parameters) throws NotificationException {
+            throw new IllegalStateException("Not ready");
+        }
+
+        @Override
+        public String getKey() {
+            return "failing";
+        }
+
+        @Override
+        public String getName() {
+            return "Failing";
+        }
+
+        @Override
+        public Optional<String> getDescription() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<String> getUrl() {
+            return Optional.empty();
+        }
+
+    }
+
+    public static final class ConfiguredNotifier extends Notifier {
+
+        private static volatile Path configurationFile;
+
+        String getToken() {
+            return getConfiguration().getString("token");
+        }
+
+        @Override
+        protected Path getConfigurationFilePath() {
+            return configurationFile;
+        }
+
+        @Override
+        protected Check checkParameters(Parameters parameters) {
+            return Check.succeeded();
+        }
+
+        @Override
+        protected void notify(Parameters parameters) throws NotificationException {
+        }
+
+        @Override
+        public String getKey() {
+            return "configured";
+        }
+
+        @Override
+        public String getName() {
+            return "Configured";
+        }
+
+        @Override
+        public Optional<String> getDescription() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<String> getUrl() {
+            return Optional.empty();
+        }
+
+    }
+
+    private static final class FilesNotifier extends Notifier {
+
+        @Parameter
+        private String message;
+
+        @Parameter(converter = PathConverter.class)
+        private Path file;
+
+        @Parameter(converter = ListPathConverter.class)
+        private List<Path> attachment;
+
+        @Override
+        protected Check checkParameters(Parameters parameters) {
+            return Check.succeeded();
+        }
+
+        @Override
+        protected void notify(Parameters parameters) throws NotificationException {
+        }
+
+        @Override
+        public String getKey() {
+            return "files";
+        }
+
+        @Override
+        public String getName() {
+            return "Files";
+        }
+
+        @Override
+        public Optional<String> getDescription() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<String> getUrl() {
+            return Optional.empty();
+        }
+
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.core;
+
+import com.google.common.collect.ImmutableList;
+import com.yfiton.api.NotificationOutcome;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Result of a notification sent to several notifiers with {@link YfitonGroup}.
+ *
+ * @author lpellegr
+ */
+public final class AggregateNotificationResult {
+
+    private final List<NotificationOutcome> outcomes;
+
+    private final long executionTimeInNanos;
+
+    public AggregateNotificationResult(List<NotificationOutcome> outcomes, long executionTime, TimeUnit timeUnit) {
+        this.outcomes = ImmutableList.copyOf(outcomes);
+        this.executionTimeInNanos = timeUnit.toNanos(executionTime);
+    }
+
+    /**
+     * Returns the outcome of each notifier, in the order notifiers have been
+     * added to the group.
+     *
+     * @return the outcome of each notifier.
+     */
+    public List<NotificationOutcome> getOutcomes() {
+        return outcomes;
+    }
+
+    public Optional<NotificationOutcome> getOutcome(String notifierKey) {
+        return outcomes.stream().filter(outcome -> outcome.getNotifierKey().equals(notifierKey)).findFirst();
+    }
+
+    public List<NotificationOutcome> getFailures() {
+        return outcomes.stream().filter(outcome -> !outcome.isSuccess()).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns whether the notification has been sent successfully by all
+     * notifiers.
+     *
+     * @return {@code true} if no notifier has failed, {@code false} otherwise.
+     */
+    public boolean isSuccess() {
+        return outcomes.stream().allMatch(NotificationOutcome::isSuccess);
+    }
+
+    /**
+     * Returns the time elapsed until all notifiers completed. Since notifiers
+     * run concurrently, it is close to the execution time of the slowest one.
+     *
+     * @param timeUnit the unit of the value to return.
+     * @return the time elapsed until all notifiers completed.
+     */
+    public long getExecutionTime(TimeUnit timeUnit) {
+        return timeUnit.convert(executionTimeInNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "AggregateNotificationResult{" +
+                "outcomes=" + outcomes +
+                ", executionTime=" + getExecutionTime(TimeUnit.MILLISECONDS) + "ms" +
+                '}';
+    }
+
+}
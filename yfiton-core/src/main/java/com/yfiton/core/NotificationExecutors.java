@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.core;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory methods for the executors used to send notifications
+ * asynchronously.
+ *
+ * @author lpellegr
+ */
+public final class NotificationExecutors {
+
+    public static final int DEFAULT_POOL_SIZE = 4;
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    private NotificationExecutors() {
+
+    }
+
+    private static final class LazyHolder {
+
+        private static final ExecutorService INSTANCE =
+                newBoundedExecutor(DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
+
+    }
+
+    /**
+     * Creates an executor running notifications on at most {@code poolSize}
+     * threads. Once {@code queueCapacity} notifications are waiting for a
+     * thread, new submissions are rejected with a
+     * {@link RejectedExecutionException} instead of piling up.
+     *
+     * @param poolSize      the maximum number of notifications sent concurrently.
+     * @param queueCapacity the maximum number of notifications waiting to be sent.
+     * @return a new bounded executor whose threads do not prevent the JVM from exiting.
+     */
+    public static ExecutorService newBoundedExecutor(int poolSize, int queueCapacity) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("Invalid pool size: " + poolSize);
+        }
+
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Invalid queue capacity: " + queueCapacity);
+        }
+
+        ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(
+                        poolSize, poolSize, 60, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(queueCapacity),
+                        new NotifierThreadFactory(),
+                        new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+    /**
+     * Returns the executor shared by all {@link Yfiton} instances that are not
+     * configured with their own executor.
+     *
+     * @return the default executor.
+     */
+    public static ExecutorService getDefault() {
+        return LazyHolder.INSTANCE;
+    }
+
+    private static final class NotifierThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+        private final int poolId = POOL_COUNTER.incrementAndGet();
+
+        private final AtomicInteger threadCounter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "yfiton-notifier-" + poolId + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
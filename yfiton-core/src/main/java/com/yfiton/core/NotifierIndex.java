@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.core;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.yfiton.api.NotifierDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Index of the notifiers whose descriptor has been generated at compile
+ * time. Descriptors are instantiated on demand and allow to describe notifiers
+ * without loading their classes.
+ *
+ * @author lpellegr
+ */
+public final class NotifierIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(NotifierIndex.class);
+
+    private final ClassLoader classLoader;
+
+    // notifier key -> [notifier class name, descriptor class name]
+    private final Map<String, List<String>> entries;
+
+    private final Map<String, NotifierDescriptor> descriptors;
+
+    private NotifierIndex(ClassLoader classLoader, Map<String, List<String>> entries) {
+        this.classLoader = classLoader;
+        this.entries = entries;
+        this.descriptors = new ConcurrentHashMap<>();
+    }
+
+    public static NotifierIndex load() {
+        return load(Thread.currentThread().getContextClassLoader());
+    }
+
+    public static NotifierIndex load(ClassLoader classLoader) {
+        Map<String, List<String>> entries = new TreeMap<>();
+
+        try {
+            Enumeration<URL> resources = classLoader.getResources(NotifierDescriptor.INDEX_RESOURCE);
+
+            while (resources.hasMoreElements()) {
+                URL url = resources.nextElement();
+
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+
+                    while ((line = reader.readLine()) != null) {
+                        List<String> values = Splitter.on(' ').omitEmptyStrings().trimResults().splitToList(line);
+
+                        if (values.isEmpty()) {
+                            continue;
+                        }
+
+                        if (values.size() != 3) {
+                            log.warn("Invalid entry '{}' in {}", line, url);
+                            continue;
+                        }
+
+                        if (entries.putIfAbsent(values.get(0), values.subList(1, 3)) != null) {
+                            log.warn("Notifier with key '{}' already indexed, ignoring entry from {}", values.get(0), url);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Cannot read notifier index: " + e.getMessage());
+        }
+
+        return new NotifierIndex(classLoader, ImmutableMap.copyOf(entries));
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public Set<String> getKeys() {
+        return entries.keySet();
+    }
+
+    public Optional<String> getNotifierClassName(String key) {
+        List<String> entry = entries.get(key);
+
+        if (entry == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(entry.get(0));
+    }
+
+    public Optional<NotifierDescriptor> getDescriptor(String key) {
+        List<String> entry = entries.get(key);
+
+        if (entry == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(descriptors.computeIfAbsent(key, k -> newDescriptor(entry.get(1))));
+    }
+
+    /**
+     * Returns the descriptors of all indexed notifiers sorted by key.
+     *
+     * @return the descriptors of all indexed notifiers sorted by key.
+     */
+    public List<NotifierDescriptor> getDescriptors() {
+        return entries.keySet().stream()
+                .map(key -> getDescriptor(key).get())
+                .collect(Collectors.toList());
+    }
+
+    private NotifierDescriptor newDescriptor(String descriptorClassName) {
+        try {
+            return (NotifierDescriptor) Class.forName(descriptorClassName, true, classLoader).newInstance();
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Cannot instantiate descriptor " + descriptorClassName, e);
+        }
+    }
+
+}
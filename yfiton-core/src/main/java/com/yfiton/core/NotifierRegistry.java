@@ -16,23 +16,49 @@
 
 package com.yfiton.core;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableMap;
 import com.yfiton.api.Notifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 
 /**
+ * Registry of available notifiers. Notifiers are not instantiated when the
+ * registry is loaded but the first time they are requested.
+ * <p/>
+ * Notifiers listed in the compile-time index (see {@link NotifierIndex}) are
+ * registered as lazy providers keyed by notifier key. Notifiers only declared
+ * as services have no known key until they are instantiated: they are all
+ * instantiated, in parallel, when a key cannot be found among providers.
+ *
  * @author lpellegr
  */
 public final class NotifierRegistry {
 
     private static final Logger log = LoggerFactory.getLogger(NotifierRegistry.class);
 
-    private final ServiceLoader<Notifier> notifierLoader;
+    private static final String SERVICE_RESOURCE = "META-INF/services/" + Notifier.class.getName();
+
+    private final ClassLoader classLoader;
+
+    private final ConcurrentMap<String, Supplier<Notifier>> providers;
 
-    private Map<String, Notifier> availableNotifiers;
+    // services that are not indexed and not instantiated yet
+    private List<String> pendingServiceClassNames;
+
+    // keys of the notifiers loaded from services that are not indexed
+    private final Set<String> unindexedKeys = ConcurrentHashMap.newKeySet();
 
     private static final class LazyHolder {
 
@@ -41,40 +67,177 @@ public final class NotifierRegistry {
     }
 
     public NotifierRegistry() {
-        availableNotifiers = new HashMap<>();
-        notifierLoader = ServiceLoader.load(Notifier.class);
+        this(Thread.currentThread().getContextClassLoader());
+    }
+
+    public NotifierRegistry(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+        this.providers = new ConcurrentHashMap<>();
+        this.pendingServiceClassNames = Collections.emptyList();
 
         reload();
     }
 
     public Notifier find(String name) {
-        return availableNotifiers.get(name);
+        Supplier<Notifier> provider = providers.get(name);
+
+        if (provider == null && loadPendingServices()) {
+            provider = providers.get(name);
+        }
+
+        return provider == null ? null : provider.get();
     }
 
+    /**
+     * Returns all available notifiers. Notifiers that have not been
+     * requested so far are instantiated in parallel.
+     *
+     * @return all available notifiers.
+     */
     public ImmutableMap<String, Notifier> getAvailable() {
-        return ImmutableMap.copyOf(availableNotifiers);
+        loadPendingServices();
+
+        Map<String, Notifier> notifiers =
+                providers.entrySet().parallelStream()
+                        .map(entry -> new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().get()))
+                        .filter(entry -> entry.getValue() != null)
+                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+        return ImmutableMap.copyOf(new TreeMap<>(notifiers));
+    }
+
+    /**
+     * Returns the notifiers declared as services but missing from the
+     * compile-time index, e.g. third-party notifiers built without the
+     * annotation processor. They are instantiated if not done yet.
+     *
+     * @return the available notifiers that are not indexed.
+     */
+    public ImmutableMap<String, Notifier> getUnindexed() {
+        loadPendingServices();
+
+        Map<String, Notifier> result = new TreeMap<>();
+
+        for (String key : unindexedKeys) {
+            Notifier notifier = find(key);
+
+            if (notifier != null) {
+                result.put(key, notifier);
+            }
+        }
+
+        return ImmutableMap.copyOf(result);
     }
 
     public void register(Notifier notifier) {
-        if (availableNotifiers.containsKey(notifier.getKey())) {
-            throw new IllegalArgumentException("Notifier with the same key already registered: " + notifier.getKey());
+        register(notifier.getKey(), Suppliers.ofInstance(notifier));
+    }
+
+    /**
+     * Registers a provider that is invoked at most once, the first time the
+     * notifier is requested.
+     *
+     * @param key      the key of the notifier.
+     * @param provider the provider creating the notifier.
+     */
+    public void register(String key, Supplier<Notifier> provider) {
+        if (providers.putIfAbsent(key, Suppliers.memoize(provider)) != null) {
+            throw new IllegalArgumentException("Notifier with the same key already registered: " + key);
+        }
+    }
+
+    public synchronized void reload() {
+        providers.clear();
+        unindexedKeys.clear();
+
+        NotifierIndex index = NotifierIndex.load(classLoader);
+        Set<String> indexedClassNames = new HashSet<>();
+
+        for (String key : index.getKeys()) {
+            String className = index.getNotifierClassName(key).get();
+            indexedClassNames.add(className);
+            register(key, () -> newInstance(className));
+        }
+
+        List<String> pending = new ArrayList<>();
+
+        for (String className : getServiceClassNames()) {
+            if (!indexedClassNames.contains(className)) {
+                pending.add(className);
+            }
         }
 
-        availableNotifiers.put(notifier.getKey(), notifier);
+        pendingServiceClassNames = pending;
     }
 
-    public void reload() {
-        notifierLoader.reload();
+    private synchronized boolean loadPendingServices() {
+        if (pendingServiceClassNames.isEmpty()) {
+            return false;
+        }
+
+        List<Notifier> notifiers =
+                pendingServiceClassNames.parallelStream()
+                        .map(this::newInstance)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList());
 
-        Iterator<Notifier> iterator = notifierLoader.iterator();
+        pendingServiceClassNames = Collections.emptyList();
 
-        while (iterator.hasNext()) {
+        for (Notifier notifier : notifiers) {
             try {
-                register(iterator.next());
-            } catch (ServiceConfigurationError e) {
-                log.warn(e.getMessage() + ". Missing JavaFX dependency?");
+                register(notifier);
+                unindexedKeys.add(notifier.getKey());
+            } catch (IllegalArgumentException e) {
+                log.warn(e.getMessage());
+            }
+        }
+
+        return true;
+    }
+
+    private Notifier newInstance(String className) {
+        try {
+            return Class.forName(className, true, classLoader).asSubclass(Notifier.class).newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            log.warn("Cannot instantiate notifier " + className + ": " + e);
+        } catch (LinkageError e) {
+            log.warn("Cannot instantiate notifier " + className + ": " + e + ". Missing JavaFX dependency?");
+        }
+
+        return null;
+    }
+
+    private Set<String> getServiceClassNames() {
+        Set<String> result = new LinkedHashSet<>();
+
+        try {
+            Enumeration<URL> resources = classLoader.getResources(SERVICE_RESOURCE);
+
+            while (resources.hasMoreElements()) {
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(resources.nextElement().openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+
+                    while ((line = reader.readLine()) != null) {
+                        int commentIndex = line.indexOf('#');
+
+                        if (commentIndex >= 0) {
+                            line = line.substring(0, commentIndex);
+                        }
+
+                        line = line.trim();
+
+                        if (!line.isEmpty()) {
+                            result.add(line);
+                        }
+                    }
+                }
             }
+        } catch (IOException e) {
+            log.warn("Cannot read notifier services: " + e.getMessage());
         }
+
+        return result;
     }
 
     public static NotifierRegistry getInstance() {
@@ -20,27 +20,36 @@ import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.yfiton.api.BatchNotifier;
 import com.yfiton.api.exceptions.NotificationException;
+import com.yfiton.api.NotificationOutcome;
 import com.yfiton.api.NotificationResult;
 import com.yfiton.api.Notifier;
 import com.yfiton.api.annotation.AnnotationProcessor;
+import com.yfiton.api.annotation.ParameterBinder;
 import com.yfiton.api.exceptions.ConversionException;
 import com.yfiton.api.exceptions.ParameterException;
+import com.yfiton.api.exceptions.YfitonException;
 import com.yfiton.api.parameter.Parameter;
 import com.yfiton.api.parameter.ParameterValue;
 import com.yfiton.api.parameter.Parameters;
-import com.yfiton.api.utils.Console;
 import org.apache.commons.configuration.HierarchicalINIConfiguration;
 import org.apache.commons.configuration.tree.ConfigurationNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Field;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -50,6 +59,9 @@ import static java.util.function.Predicate.isEqual;
 /**
  * Yfiton aims to handle users about command completion. It features several
  * notification methods based on the {@link Notifier} abstraction.
+ * <p/>
+ * Instances are thread-safe and meant to be reused: parameter values are
+ * bound to a copy of the notifier for each notification.
  *
  * @author lpellegr
  */
@@ -62,6 +74,9 @@ public class Yfiton {
     // contains parameters defined in notifier implementations
     private final Map<String, Map<String, Parameter>> supportedParameters;
 
+    // injects parameter values in notifier fields
+    private final ParameterBinder binder;
+
     // parameters loaded from preferences (i.e. ~/.yfiton)
     private final Map<String, Map<String, String>> configurationParameters;
 
@@ -69,9 +84,17 @@ public class Yfiton {
 
     private final String configurationFilePath;
 
+    // runs notifications sent asynchronously
+    private final Executor executor;
+
     protected Yfiton(Notifier notifier, HierarchicalINIConfiguration configuration, boolean displayStackTraces) throws ConversionException {
+        this(notifier, configuration, displayStackTraces, NotificationExecutors.getDefault());
+    }
+
+    protected Yfiton(Notifier notifier, HierarchicalINIConfiguration configuration, boolean displayStackTraces, Executor executor) throws ConversionException {
         this.configurationParameters = loadPreferences(configuration, notifier);
         this.displayStackTraces = displayStackTraces;
+        this.executor = executor;
 
         configurationFilePath = configuration.getFile().getAbsolutePath();
 
@@ -85,6 +108,7 @@ public class Yfiton {
 
         this.notifier = notifier;
         this.supportedParameters = AnnotationProcessor.analyze(ImmutableSet.of(notifier));
+        this.binder = ParameterBinder.of(notifier.getClass());
     }
 
     private Map<String, Map<String, String>> loadPreferences(HierarchicalINIConfiguration configuration, Notifier notifier) {
@@ -98,32 +122,167 @@ public class Yfiton {
     }
 
     public NotificationResult notify(Map<String, String> parameters) throws ParameterException, ConversionException {
-        Parameters receivedParameters = createReceivedParameters(notifier, parameters);
+        NotificationResult notificationResult = null;
 
-        injectParameterValues(notifier, receivedParameters);
+        try {
+            notificationResult = send(parameters);
+
+            log.info("Notification sent in {} ms by using {}",
+                    notificationResult.getExecutionTime(TimeUnit.MILLISECONDS), notifier.getKey());
+        } catch (NotificationException e) {
+            logFailure(e);
+        }
+
+        return notificationResult;
+    }
+
+    /**
+     * Sends a notification with the specified parameter values. Unlike
+     * {@link #notify(Map)}, notification errors are not logged but
+     * propagated to the caller.
+     *
+     * @param parameters parameter values to use for the notification.
+     * @return the result of the notification.
+     * @throws ParameterException    if a parameter value is invalid or missing.
+     * @throws ConversionException   if a parameter value cannot be converted.
+     * @throws NotificationException if the notifier fails to send the notification.
+     */
+    public NotificationResult send(Map<String, String> parameters) throws ParameterException, ConversionException, NotificationException {
+        return handle(createReceivedParameters(notifier, parameters));
+    }
+
+    private NotificationResult handle(Parameters receivedParameters) throws ParameterException, NotificationException {
+        // parameter values are injected in the fields of a copy dedicated to this invocation
+        Notifier invocation = notifier.copy();
+
+        binder.bind(invocation, receivedParameters);
 
         if (log.isDebugEnabled()) {
             logReceivedParameters(receivedParameters);
         }
 
-        NotificationResult notificationResult = null;
+        return invocation.handle(receivedParameters);
+    }
 
-        try {
-            notificationResult = notifier.handle(receivedParameters);
+    /**
+     * Sends several notifications with the notifier of this instance. If the
+     * notifier implements {@link BatchNotifier}, all notifications are handed
+     * over in a single batch so that it can share connections or clients
+     * between them. Otherwise, notifications are sent one after the other.
+     * <p/>
+     * Errors do not stop the processing of remaining notifications: they are
+     * logged and reported in the outcome of the notification concerned.
+     *
+     * @param notifications parameter values to use for each notification.
+     * @return one outcome per notification, in the order of {@code notifications}.
+     */
+    public List<NotificationOutcome> notifyAll(List<Map<String, String>> notifications) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+
+        NotificationOutcome[] outcomes = new NotificationOutcome[notifications.size()];
+
+        List<Parameters> batch = new ArrayList<>(notifications.size());
+        List<Integer> batchIndexes = new ArrayList<>(notifications.size());
+
+        for (int i = 0; i < notifications.size(); i++) {
+            Stopwatch itemStopwatch = Stopwatch.createStarted();
+
+            try {
+                batch.add(createReceivedParameters(notifier, notifications.get(i)));
+                batchIndexes.add(i);
+            } catch (ParameterException e) {
+                outcomes[i] = NotificationOutcome.failed(notifier.getKey(), e, itemStopwatch.stop());
+            }
+        }
 
-            log.info("Notification sent in {} ms by using {}",
-                    notificationResult.getExecutionTime(TimeUnit.MILLISECONDS), notifier.getKey());
-        } catch (NotificationException e) {
-            for (String message : e.getMessages()) {
-                log.error(message);
+        List<NotificationOutcome> batchOutcomes;
+
+        if (notifier instanceof BatchNotifier) {
+            batchOutcomes = ((BatchNotifier) notifier).handleBatch(batch);
+
+            if (batchOutcomes.size() != batch.size()) {
+                throw new IllegalStateException(
+                        "Notifier " + notifier.getKey() + " returned " + batchOutcomes.size()
+                                + " outcomes for " + batch.size() + " notifications");
             }
+        } else {
+            batchOutcomes = new ArrayList<>(batch.size());
+
+            for (Parameters parameters : batch) {
+                Stopwatch itemStopwatch = Stopwatch.createStarted();
 
-            if (displayStackTraces && e.getCause() != null) {
-                log.error("Stacktrace:", e.getCause());
+                try {
+                    batchOutcomes.add(NotificationOutcome.succeeded(handle(parameters)));
+                } catch (ParameterException | NotificationException e) {
+                    batchOutcomes.add(NotificationOutcome.failed(notifier.getKey(), e, itemStopwatch.stop()));
+                }
             }
         }
 
-        return notificationResult;
+        for (int i = 0; i < batchOutcomes.size(); i++) {
+            outcomes[batchIndexes.get(i)] = batchOutcomes.get(i);
+        }
+
+        int failures = 0;
+
+        for (NotificationOutcome outcome : outcomes) {
+            if (!outcome.isSuccess()) {
+                failures++;
+                logFailure(outcome.getFailure().get());
+            }
+        }
+
+        log.info("{} notifications sent in {} ms by using {} ({} failed)",
+                outcomes.length - failures, stopwatch.elapsed(TimeUnit.MILLISECONDS), notifier.getKey(), failures);
+
+        return Arrays.asList(outcomes);
+    }
+
+    private void logFailure(Throwable failure) {
+        if (failure instanceof NotificationException) {
+            for (String message : ((NotificationException) failure).getMessages()) {
+                log.error(message);
+            }
+        } else {
+            log.error(failure.getMessage());
+        }
+
+        if (displayStackTraces && failure.getCause() != null) {
+            log.error("Stacktrace:", failure.getCause());
+        }
+    }
+
+    /**
+     * Sends a notification asynchronously on the executor configured for this
+     * instance. The calling thread is never blocked: if the executor queue is
+     * full, the returned future is completed exceptionally with a
+     * {@link RejectedExecutionException}.
+     * <p/>
+     * Errors raised by {@link #send(Map)} complete the returned future with a
+     * {@link CompletionException} whose cause is the original
+     * {@link YfitonException}.
+     *
+     * @param parameters parameter values to use for the notification.
+     * @return a future completed once the notification is sent.
+     */
+    public CompletableFuture<NotificationResult> notifyAsync(Map<String, String> parameters) {
+        Map<String, String> parametersCopy = ImmutableMap.copyOf(parameters);
+
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return send(parametersCopy);
+                } catch (YfitonException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            log.warn("Notification rejected by {}: too many pending notifications", notifier.getKey());
+
+            CompletableFuture<NotificationResult> result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+            return result;
+        }
     }
 
     private void logReceivedParameters(Parameters receivedParameters) {
@@ -199,50 +358,14 @@ public class Yfiton {
         return validParameters.build();
     }
 
-    private void injectParameterValues(Notifier notifiers, Parameters receivedParameters) throws ParameterException {
-        for (Field field : AnnotationProcessor.getAllFields(notifier.getClass())) {
-            // annotations available in the class or in its hierarchy
-            com.yfiton.api.annotation.Parameter[] annotations =
-                    field.getAnnotationsByType(com.yfiton.api.annotation.Parameter.class);
-
-            if (annotations.length == 0) {
-                continue;
-            }
-
-            com.yfiton.api.annotation.Parameter annotation = annotations[0];
-
-            String parameterName = annotation.name();
-            if (parameterName.isEmpty()) {
-                parameterName = field.getName();
-            }
-
-            // retrieve object representation of the parameter from already parsed annotations
-            Parameter parameter = supportedParameters.get(notifier.getKey()).get(parameterName);
-
-            if (parameter != null) {
-                try {
-                    field.setAccessible(true);
-
-                    Object receivedValue = receivedParameters.getValue(parameter);
-
-                    if (receivedValue != null) {
-                        field.set(notifier, receivedValue);
-                    } else if (receivedValue == null && parameter.isHidden() && parameter.isRequired()) {
-                        field.set(notifier, Console.readParameterValueFromStdin(parameterName));
-                    } else if (receivedValue == null && parameter.isRequired()) {
-                        throw new ParameterException("Missing required parameter '" + parameterName + "'");
-                    }
-                } catch (IllegalAccessException e) {
-                    log.warn("Cannot inject parameter value for parameter named '{}'", parameter.getName());
-                }
-            }
-        }
-    }
-
     public Notifier getNotifier() {
         return notifier;
     }
 
+    Executor getExecutor() {
+        return executor;
+    }
+
     public Map<String, Map<String, Parameter>> getSupportedParameters() {
         return supportedParameters;
     }
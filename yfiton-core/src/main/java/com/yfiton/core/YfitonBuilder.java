@@ -24,6 +24,7 @@ import org.apache.commons.configuration.HierarchicalINIConfiguration;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.concurrent.Executor;
 
 /**
  * @author lpellegr
@@ -38,6 +39,8 @@ public class YfitonBuilder {
 
     private boolean displayStackTraces;
 
+    private Executor executor;
+
     public YfitonBuilder(String notifierKey) {
         this.notifierKey = notifierKey;
     }
@@ -60,6 +63,30 @@ public class YfitonBuilder {
         return this;
     }
 
+    /**
+     * Sets the executor used by {@link Yfiton#notifyAsync(java.util.Map)}.
+     * By default, an executor shared by all instances and created with
+     * {@link NotificationExecutors#newBoundedExecutor(int, int)} is used.
+     *
+     * @param executor the executor to use for asynchronous notifications.
+     * @return the builder instance.
+     */
+    public YfitonBuilder setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Configures a dedicated bounded executor for asynchronous notifications.
+     *
+     * @param poolSize      the maximum number of notifications sent concurrently.
+     * @param queueCapacity the maximum number of notifications waiting to be sent.
+     * @return the builder instance.
+     */
+    public YfitonBuilder setExecutor(int poolSize, int queueCapacity) {
+        return setExecutor(NotificationExecutors.newBoundedExecutor(poolSize, queueCapacity));
+    }
+
     private Notifier resolve(String name) {
         Notifier found = NotifierRegistry.getInstance().find(name);
 
@@ -88,7 +115,13 @@ public class YfitonBuilder {
         HierarchicalINIConfiguration hierarchicalConfiguration =
                 new HierarchicalINIConfiguration(configurationFile.toFile());
 
-        return new Yfiton(notifier, hierarchicalConfiguration, displayStackTraces);
+        Executor executor = this.executor;
+
+        if (executor == null) {
+            executor = NotificationExecutors.getDefault();
+        }
+
+        return new Yfiton(notifier, hierarchicalConfiguration, displayStackTraces, executor);
     }
 
 }
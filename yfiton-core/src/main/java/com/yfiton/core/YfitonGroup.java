@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.core;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.yfiton.api.NotificationOutcome;
+import com.yfiton.api.exceptions.ConversionException;
+import com.yfiton.api.exceptions.YfitonException;
+import org.apache.commons.configuration.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends one logical notification to several notifiers concurrently.
+ * <p/>
+ * Parameter names may be prefixed by a notifier key followed by a dot (e.g.
+ * {@code slack.message}) to target a single notifier. Other parameters are
+ * passed to each notifier supporting them.
+ *
+ * @author lpellegr
+ */
+public class YfitonGroup {
+
+    private static final Logger log = LoggerFactory.getLogger(YfitonGroup.class);
+
+    private final List<Yfiton> engines;
+
+    private final Executor executor;
+
+    /**
+     * Creates a group whose notifications are sent on the executor each
+     * engine has been built with, see {@link YfitonBuilder#setExecutor(Executor)}.
+     *
+     * @param engines the engines to notify.
+     */
+    public YfitonGroup(Collection<Yfiton> engines) {
+        this(engines, null);
+    }
+
+    public YfitonGroup(Collection<Yfiton> engines, Executor executor) {
+        if (engines.isEmpty()) {
+            throw new IllegalArgumentException("No notifier specified");
+        }
+
+        this.engines = ImmutableList.copyOf(engines);
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a group made of the notifiers identified by the specified keys,
+     * each one configured from its default configuration file. Notifications
+     * are sent on a dedicated executor so that all notifiers of the group run
+     * concurrently without waiting for other asynchronous notifications.
+     *
+     * @param notifierKeys       the keys of the notifiers to use.
+     * @param displayStackTraces whether stack traces are logged on errors.
+     * @return a group made of the specified notifiers.
+     * @throws ConversionException    if a notifier configuration is invalid.
+     * @throws ConfigurationException if a notifier key is not recognized or
+     *                                if a notifier configuration cannot be loaded.
+     */
+    public static YfitonGroup of(List<String> notifierKeys, boolean displayStackTraces) throws ConversionException, ConfigurationException {
+        Set<String> keys = new LinkedHashSet<>(notifierKeys);
+        List<String> unrecognized = new ArrayList<>();
+
+        for (String notifierKey : keys) {
+            if (NotifierRegistry.getInstance().find(notifierKey) == null) {
+                unrecognized.add(notifierKey);
+            }
+        }
+
+        if (!unrecognized.isEmpty()) {
+            throw new ConfigurationException("Unrecognized notifier(s): " + String.join(", ", unrecognized));
+        }
+
+        if (keys.isEmpty()) {
+            throw new ConfigurationException("No notifier specified");
+        }
+
+        Executor executor = NotificationExecutors.newBoundedExecutor(keys.size(), keys.size());
+        List<Yfiton> engines = new ArrayList<>(keys.size());
+
+        for (String notifierKey : keys) {
+            engines.add(new YfitonBuilder(notifierKey)
+                    .displayStackTraces(displayStackTraces)
+                    .setExecutor(executor)
+                    .build());
+        }
+
+        return new YfitonGroup(engines);
+    }
+
+    /**
+     * Sends a notification to all notifiers of the group concurrently and
+     * waits for all of them to complete. The failure of a notifier does not
+     * affect others and is reported in its outcome.
+     *
+     * @param parameters parameter values to use for the notification.
+     * @return the outcome of each notifier.
+     */
+    public AggregateNotificationResult send(Map<String, String> parameters) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+
+        warnAboutUnsupportedParameters(parameters);
+
+        List<CompletableFuture<NotificationOutcome>> futures = new ArrayList<>(engines.size());
+
+        for (Yfiton engine : engines) {
+            futures.add(sendAsync(engine, selectParameters(engine, parameters)));
+        }
+
+        List<NotificationOutcome> outcomes = new ArrayList<>(futures.size());
+
+        for (CompletableFuture<NotificationOutcome> future : futures) {
+            outcomes.add(future.join());
+        }
+
+        return new AggregateNotificationResult(outcomes, stopwatch.elapsed(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+
+    private CompletableFuture<NotificationOutcome> sendAsync(Yfiton engine, Map<String, String> parameters) {
+        String notifierKey = engine.getNotifier().getKey();
+        Stopwatch stopwatch = Stopwatch.createStarted();
+
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return NotificationOutcome.succeeded(engine.send(parameters));
+                } catch (YfitonException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor == null ? engine.getExecutor() : executor).exceptionally(
+                    t -> NotificationOutcome.failed(notifierKey, unwrap(t), stopwatch.stop()));
+        } catch (RejectedExecutionException e) {
+            log.warn("Notification rejected by {}: too many pending notifications", notifierKey);
+
+            return CompletableFuture.completedFuture(NotificationOutcome.failed(notifierKey, e, stopwatch.stop()));
+        }
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        if (t instanceof CompletionException && t.getCause() != null) {
+            return t.getCause();
+        }
+
+        return t;
+    }
+
+    private Map<String, String> selectParameters(Yfiton engine, Map<String, String> parameters) {
+        String notifierKey = engine.getNotifier().getKey();
+        Set<String> supportedParameters = engine.getSupportedParameters().get(notifierKey).keySet();
+
+        Map<String, String> result = new HashMap<>();
+
+        // parameters applying to all notifiers first so that targeted ones take precedence
+        for (Map.Entry<String, String> entry : parameters.entrySet()) {
+            if (supportedParameters.contains(entry.getKey())) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        String prefix = notifierKey + ".";
+
+        for (Map.Entry<String, String> entry : parameters.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                result.put(entry.getKey().substring(prefix.length()), entry.getValue());
+            }
+        }
+
+        return ImmutableMap.copyOf(result);
+    }
+
+    private void warnAboutUnsupportedParameters(Map<String, String> parameters) {
+        for (String name : parameters.keySet()) {
+            boolean used = false;
+
+            for (Yfiton engine : engines) {
+                String notifierKey = engine.getNotifier().getKey();
+
+                if (name.startsWith(notifierKey + ".")
+                        || engine.getSupportedParameters().get(notifierKey).containsKey(name)) {
+                    used = true;
+                    break;
+                }
+            }
+
+            if (!used) {
+                log.warn("Parameter '" + name + "' is not supported by any notifier");
+            }
+        }
+    }
+
+    public List<Yfiton> getEngines() {
+        return engines;
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Unit tests associated to {@link NotificationExecutors}.
+ *
+ * @author lpellegr
+ */
+public class NotificationExecutorsTest {
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testNewBoundedExecutorRejectsWhenQueueIsFull() throws InterruptedException {
+        ExecutorService executor = NotificationExecutors.newBoundedExecutor(1, 1);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        try {
+            // occupies the single thread
+            executor.execute(() -> awaitQuietly(latch));
+            // fills the queue
+            executor.execute(() -> awaitQuietly(latch));
+
+            executor.execute(() -> awaitQuietly(latch));
+        } finally {
+            latch.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNewBoundedExecutorInvalidQueueCapacity() {
+        NotificationExecutors.newBoundedExecutor(1, 0);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
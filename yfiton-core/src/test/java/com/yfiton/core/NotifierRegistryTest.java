@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.core;
+
+import com.yfiton.api.Notifier;
+import com.yfiton.api.NotifierDescriptor;
+import com.yfiton.api.annotation.NotifierInfo;
+import com.yfiton.api.parameter.Parameters;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Unit tests associated to {@link NotifierRegistry}.
+ *
+ * @author lpellegr
+ */
+public class NotifierRegistryTest {
+
+    private static final AtomicInteger indexedInstances = new AtomicInteger();
+
+    private static final AtomicInteger serviceInstances = new AtomicInteger();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private NotifierRegistry registry;
+
+    @Before
+    public void setUp() throws IOException {
+        Path root = folder.getRoot().toPath();
+
+        write(root.resolve(NotifierDescriptor.INDEX_RESOURCE),
+                "indexed " + IndexedNotifier.class.getName() + " " + NotifierDescriptor.class.getName());
+        write(root.resolve("META-INF/services/" + Notifier.class.getName()),
+                "# services",
+                IndexedNotifier.class.getName(),
+                ServiceNotifier.class.getName());
+
+        // resources are not looked up from the parent to ignore notifiers available to tests
+        registry = new NotifierRegistry(new URLClassLoader(
+                new URL[]{root.toUri().toURL()}, getClass().getClassLoader()) {
+            @Override
+            public Enumeration<URL> getResources(String name) throws IOException {
+                return findResources(name);
+            }
+        });
+
+        indexedInstances.set(0);
+        serviceInstances.set(0);
+    }
+
+    @Test
+    public void testFindInstantiatesRequestedNotifierOnly() {
+        Notifier notifier = registry.find("indexed");
+
+        assertThat(notifier).isInstanceOf(IndexedNotifier.class);
+        assertThat(registry.find("indexed")).isSameAs(notifier);
+        assertThat(indexedInstances.get()).isEqualTo(1);
+        assertThat(serviceInstances.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void testFindNotIndexedNotifier() {
+        assertThat(registry.find("service")).isInstanceOf(ServiceNotifier.class);
+        assertThat(registry.find("unknown")).isNull();
+        assertThat(indexedInstances.get()).isEqualTo(0);
+        assertThat(serviceInstances.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testGetAvailable() {
+        assertThat(registry.getAvailable().keySet()).containsExactly("indexed", "service").inOrder();
+        assertThat(indexedInstances.get()).isEqualTo(1);
+        assertThat(serviceInstances.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testGetUnindexed() {
+        assertThat(registry.getUnindexed().keySet()).containsExactly("service");
+        assertThat(indexedInstances.get()).isEqualTo(0);
+        assertThat(serviceInstances.get()).isEqualTo(1);
+    }
+
+    private static void write(Path file, String... lines) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    @NotifierInfo(key = "indexed", name = "Indexed")
+    public static final class IndexedNotifier extends TestNotifier {
+
+        public IndexedNotifier() {
+            indexedInstances.incrementAndGet();
+        }
+
+    }
+
+    @NotifierInfo(key = "service", name = "Service")
+    public static final class ServiceNotifier extends TestNotifier {
+
+        public ServiceNotifier() {
+            serviceInstances.incrementAndGet();
+        }
+
+    }
+
+    private abstract static class TestNotifier extends Notifier {
+
+        @Override
+        protected Check checkParameters(Parameters parameters) {
+            return Check.succeeded();
+        }
+
+        @Override
+        protected void notify(Parameters parameters) {
+        }
+
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.core;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.yfiton.api.NotificationOutcome;
+import com.yfiton.api.Notifier;
+import com.yfiton.api.annotation.NotifierInfo;
+import com.yfiton.api.annotation.Parameter;
+import com.yfiton.api.exceptions.ConversionException;
+import com.yfiton.api.exceptions.NotificationException;
+import com.yfiton.api.parameter.Parameters;
+import org.apache.commons.configuration.ConfigurationException;
+import org.junit.Test;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests associated to {@link YfitonGroup}.
+ *
+ * @author lpellegr
+ */
+public class YfitonGroupTest {
+
+    private static final long DELAY = 500;
+
+    @Test
+    public void testSendConcurrently() throws Exception {
+        SlowNotifier first = new SlowNotifier();
+        OtherSlowNotifier second = new OtherSlowNotifier();
+
+        YfitonGroup group = new YfitonGroup(ImmutableList.of(
+                new YfitonBuilder(first).build(), new YfitonBuilder(second).build()),
+                NotificationExecutors.newBoundedExecutor(2, 2));
+
+        AggregateNotificationResult result = group.send(ImmutableMap.of(
+                "message", "shared", "other.message", "targeted"));
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getOutcomes()).hasSize(2);
+        assertThat(result.getOutcomes().get(0).getNotifierKey()).isEqualTo("slow");
+        assertThat(result.getOutcomes().get(1).getNotifierKey()).isEqualTo("other");
+        // notifiers run concurrently: total latency is close to the slowest one
+        assertThat(result.getExecutionTime(TimeUnit.MILLISECONDS)).isLessThan(2 * DELAY);
+
+        assertThat(first.received).containsExactly("shared");
+        assertThat(second.received).containsExactly("targeted");
+    }
+
+    @Test
+    public void testFailureDoesNotAffectOtherNotifiers() throws Exception {
+        SlowNotifier first = new SlowNotifier();
+        OtherSlowNotifier second = new OtherSlowNotifier();
+
+        YfitonGroup group = new YfitonGroup(ImmutableList.of(
+                new YfitonBuilder(first).build(), new YfitonBuilder(second).build()));
+
+        AggregateNotificationResult result = group.send(ImmutableMap.of(
+                "message", "shared", "other.message", "fail"));
+
+        assertThat(result.isSuccess()).isFalse();
+        assertThat(result.getOutcome("slow").get().isSuccess()).isTrue();
+
+        NotificationOutcome failure = result.getOutcome("other").get();
+        assertThat(result.getFailures()).containsExactly(failure);
+        assertThat(failure.getFailure().get()).isInstanceOf(NotificationException.class);
+        assertThat(failure.getFailure().get().getMessage()).isEqualTo("failure requested");
+    }
+
+    @Test
+    public void testBuilderExecutorUsed() throws Exception {
+        AtomicInteger tasks = new AtomicInteger();
+        Executor executor = NotificationExecutors.newBoundedExecutor(2, 2);
+        Executor countingExecutor = command -> {
+            tasks.incrementAndGet();
+            executor.execute(command);
+        };
+
+        YfitonGroup group = new YfitonGroup(ImmutableList.of(
+                new YfitonBuilder(new SlowNotifier()).setExecutor(countingExecutor).build(),
+                new YfitonBuilder(new OtherSlowNotifier()).setExecutor(countingExecutor).build()));
+
+        AggregateNotificationResult result = group.send(ImmutableMap.of("message", "shared"));
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(tasks.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testUnrecognizedNotifiersRejected() throws ConversionException {
+        try {
+            YfitonGroup.of(ImmutableList.of("unknown", "missing", "unknown"), false);
+            fail("Unrecognized notifiers accepted");
+        } catch (ConfigurationException e) {
+            assertThat(e.getMessage()).isEqualTo("Unrecognized notifier(s): unknown, missing");
+        }
+    }
+
+    @NotifierInfo(key = "slow", name = "Slow")
+    private static class SlowNotifier extends Notifier {
+
+        @Parameter(required = true)
+        private String message;
+
+        protected final Queue<String> received = new ConcurrentLinkedQueue<>();
+
+        @Override
+        protected Check checkParameters(Parameters parameters) {
+            return Check.succeeded();
+        }
+
+        @Override
+        protected void notify(Parameters parameters) throws NotificationException {
+            try {
+                Thread.sleep(DELAY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (message.equals("fail")) {
+                throw new NotificationException("failure requested");
+            }
+
+            received.add(message);
+        }
+
+    }
+
+    @NotifierInfo(key = "other", name = "Other")
+    private static final class OtherSlowNotifier extends SlowNotifier {
+
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.core;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.yfiton.api.BatchNotifier;
+import com.yfiton.api.NotificationOutcome;
+import com.yfiton.api.NotificationResult;
+import com.yfiton.api.Notifier;
+import com.yfiton.api.annotation.Parameter;
+import com.yfiton.api.exceptions.ConversionException;
+import com.yfiton.api.exceptions.NotificationException;
+import com.yfiton.api.exceptions.YfitonException;
+import com.yfiton.api.parameter.Parameters;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Unit tests associated to {@link Yfiton}.
+ *
+ * @author lpellegr
+ */
+public class YfitonTest {
+
+    @Test
+    public void testConcurrentNotificationsDoNotShareParameterValues() throws Exception {
+        RecordingNotifier notifier = new RecordingNotifier();
+
+        Yfiton yfiton = new YfitonBuilder(notifier).setExecutor(8, 512).build();
+
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+
+        for (int i = 0; i < 200; i++) {
+            String message = "message-" + i;
+            expected.add(message);
+            futures.add(yfiton.notifyAsync(ImmutableMap.of("message", message)));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        assertThat(notifier.received).containsExactlyElementsIn(expected);
+        // the registered instance is left untouched
+        assertThat(notifier.message).isNull();
+    }
+
+    @Test
+    public void testNotifyAllUsesBatchWhenSupported() throws Exception {
+        BatchRecordingNotifier notifier = new BatchRecordingNotifier();
+
+        Yfiton yfiton = new YfitonBuilder(notifier).build();
+
+        List<NotificationOutcome> outcomes = yfiton.notifyAll(ImmutableList.of(
+                ImmutableMap.of("message", "first"),
+                ImmutableMap.of("message", "second", "repeat", "not-a-number"),
+                ImmutableMap.of("message", "third")));
+
+        assertThat(notifier.batches).containsExactly(ImmutableList.of("first", "third"));
+
+        assertThat(outcomes).hasSize(3);
+        assertThat(outcomes.get(0).isSuccess()).isTrue();
+        assertThat(outcomes.get(1).isSuccess()).isFalse();
+        assertThat(outcomes.get(1).getFailure().get()).isInstanceOf(ConversionException.class);
+        assertThat(outcomes.get(2).isSuccess()).isTrue();
+    }
+
+    @Test
+    public void testNotifyAllWithoutBatchSupport() throws Exception {
+        RecordingNotifier notifier = new RecordingNotifier();
+
+        Yfiton yfiton = new YfitonBuilder(notifier).build();
+
+        List<NotificationOutcome> outcomes = yfiton.notifyAll(ImmutableList.of(
+                ImmutableMap.of("message", "first"),
+                ImmutableMap.of("message", "second")));
+
+        assertThat(notifier.received).containsExactly("first", "second").inOrder();
+        assertThat(outcomes.get(0).isSuccess()).isTrue();
+        assertThat(outcomes.get(1).isSuccess()).isTrue();
+        assertThat(outcomes.get(1).getNotifierKey()).isEqualTo("recording");
+    }
+
+    private static final class RecordingNotifier extends Notifier {
+
+        @Parameter(required = true)
+        private String message;
+
+        private final Queue<String> received = new ConcurrentLinkedQueue<>();
+
+        @Override
+        protected Check checkParameters(Parameters parameters) {
+            return Check.succeeded();
+        }
+
+        @Override
+        protected void notify(Parameters parameters) throws NotificationException {
+            String value = message;
+
+            // gives other threads a chance to interleave
+            Thread.yield();
+
+            received.add(value);
+        }
+
+        @Override
+        public String getKey() {
+            return "recording";
+        }
+
+        @Override
+        public String getName() {
+            return "Recording";
+        }
+
+        @Override
+        public Optional<String> getDescription() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<String> getUrl() {
+            return Optional.empty();
+        }
+
+    }
+
+    private static final class BatchRecordingNotifier extends Notifier implements BatchNotifier {
+
+        @Parameter(required = true)
+        private String message;
+
+        @Parameter
+        private int repeat = 1;
+
+        private final List<List<String>> batches = new ArrayList<>();
+
+        @Override
+        protected Check checkParameters(Parameters parameters) {
+            return Check.succeeded();
+        }
+
+        @Override
+        protected void notify(Parameters parameters) throws NotificationException {
+            throw new AssertionError("Batch expected");
+        }
+
+        @Override
+        public List<NotificationOutcome> handleBatch(List<Parameters> batch) {
+            List<String> messages = new ArrayList<>();
+            List<NotificationOutcome> outcomes = new ArrayList<>();
+
+            for (Parameters parameters : batch) {
+                Stopwatch stopwatch = Stopwatch.createStarted();
+
+                try {
+                    BatchRecordingNotifier invocation = prepare(parameters);
+                    messages.add(invocation.message);
+                    outcomes.add(NotificationOutcome.succeeded(new NotificationResult(getKey(), stopwatch.stop())));
+                } catch (YfitonException e) {
+                    outcomes.add(NotificationOutcome.failed(getKey(), e, stopwatch.stop()));
+                }
+            }
+
+            batches.add(messages);
+
+            return outcomes;
+        }
+
+        @Override
+        public String getKey() {
+            return "batch";
+        }
+
+        @Override
+        public String getName() {
+            return "Batch";
+        }
+
+        @Override
+        public Optional<String> getDescription() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<String> getUrl() {
+            return Optional.empty();
+        }
+
+    }
+
+}
@@ -17,6 +17,7 @@
 package com.yfiton.notifiers.beep;
 
 import com.yfiton.api.Notifier;
+import com.yfiton.api.annotation.NotifierInfo;
 import com.yfiton.api.annotation.Parameter;
 import com.yfiton.api.exceptions.NotificationException;
 import com.yfiton.api.exceptions.ValidationException;
@@ -24,11 +25,13 @@ import com.yfiton.api.parameter.Parameters;
 import com.yfiton.api.parameter.validators.IntegerValidator;
 import com.yfiton.api.parameter.validators.Validator;
 
-import java.util.Optional;
-
 /**
  * @author lpellegr
  */
+@NotifierInfo(
+        key = "beep",
+        name = "The well known bell",
+        description = "Trigger beeps on the host using the default speaker.")
 public class BeepNotifier extends Notifier {
 
     private static final int BEEP_PERIOD = 110;
@@ -77,26 +80,6 @@ public class BeepNotifier extends Notifier {
         System.out.flush();
     }
 
-    @Override
-    public String getKey() {
-        return "beep";
-    }
-
-    @Override
-    public String getName() {
-        return "The well known bell";
-    }
-
-    @Override
-    public Optional<String> getDescription() {
-        return Optional.of("Trigger beeps on the host using the default speaker.");
-    }
-
-    @Override
-    public Optional<String> getUrl() {
-        return Optional.empty();
-    }
-
     public static final class PatternValidator implements Validator<String> {
 
         @Override
@@ -17,6 +17,7 @@
 package com.yfiton.notifiers.desktop;
 
 import com.yfiton.api.Notifier;
+import com.yfiton.api.annotation.NotifierInfo;
 import com.yfiton.api.annotation.Parameter;
 import com.yfiton.api.exceptions.NotificationException;
 import com.yfiton.api.parameter.Parameters;
@@ -24,18 +25,19 @@ import com.yfiton.notifiers.desktop.converters.LineBreakConverter;
 import com.yfiton.notifiers.desktop.validators.ParseAsIntegerValidator;
 import com.yfiton.notifiers.desktop.validators.PosValidator;
 import com.yfiton.notifiers.desktop.validators.TypeValidator;
-import javafx.geometry.Pos;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.Optional;
-
 
 /**
  * @author lpellegr
  */
+@NotifierInfo(
+        key = "desktop",
+        name = "Desktop Notifier",
+        description = "Display a rich desktop notification.")
 public class DesktopNotifier extends Notifier {
 
     @Parameter(description = "The duration that the notification should show, after which it will be hidden", validator = ParseAsIntegerValidator.class)
@@ -45,7 +47,7 @@ public class DesktopNotifier extends Notifier {
     private String message;
 
     @Parameter(description = "The position of the notification on screen", validator = PosValidator.class)
-    private String position = Pos.TOP_CENTER.name();
+    private String position = "TOP_CENTER";
 
     @Parameter(description = "Notification type: [info, error, success, warning]", validator = TypeValidator.class)
     private String type = "info";
@@ -86,24 +88,4 @@ public class DesktopNotifier extends Notifier {
         return result.toString();
     }
 
-    @Override
-    public String getKey() {
-        return "desktop";
-    }
-
-    @Override
-    public String getName() {
-        return "Desktop Notifier";
-    }
-
-    @Override
-    public Optional<String> getDescription() {
-        return Optional.of("Display a rich desktop notification.");
-    }
-
-    @Override
-    public Optional<String> getUrl() {
-        return Optional.empty();
-    }
-
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import ch.qos.logback.classic.Level;
+import com.google.common.collect.ImmutableMap;
+import com.yfiton.api.NotificationOutcome;
+import com.yfiton.api.NotificationResult;
+import com.yfiton.api.exceptions.YfitonException;
+import com.yfiton.core.Yfiton;
+import com.yfiton.core.YfitonBuilder;
+import com.yfiton.testing.smtp.SmtpSink;
+import org.apache.commons.configuration.ConfigurationException;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput and latency percentiles of {@link EmailNotifier}
+ * against an embedded SMTP server, optionally slowed down to mimic a remote
+ * relay.
+ * <p/>
+ * {@code unpooled} reproduces the previous behavior that opened, negotiated
+ * and closed a connection per message. {@code sequential} sends one message
+ * at a time through the notifier, {@code pooled} does the same from several
+ * threads and {@code batched} sends batches with {@link Yfiton#notifyAll(List)}.
+ *
+ * @author lpellegr
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmailNotifierBenchmark {
+
+    private static final int BATCH_SIZE = 16;
+
+    private static final String USERNAME = "bench";
+
+    private static final String PASSWORD = "secret";
+
+    // time spent by the server before each reply
+    @Param({"0", "2"})
+    public int latencyInMillis;
+
+    @Param({"false", "true"})
+    public boolean startTls;
+
+    private SmtpSink sink;
+
+    private Yfiton yfiton;
+
+    private Map<String, String> parameters;
+
+    private List<Map<String, String>> batch;
+
+    private Session session;
+
+    @Setup
+    public void setUp() throws IOException, ConfigurationException, YfitonException {
+        // debug logs enable JavaMail traces
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        sink = new SmtpSink.Builder()
+                .setLatency(latencyInMillis, TimeUnit.MILLISECONDS)
+                .setStartTls(startTls)
+                .setCredentials(USERNAME, PASSWORD)
+                .setRecording(false)
+                .start();
+
+        parameters = ImmutableMap.<String, String>builder()
+                .put("host", sink.getHost())
+                .put("port", Integer.toString(sink.getPort()))
+                .put("username", USERNAME)
+                .put("password", PASSWORD)
+                .put("starttls.enable", Boolean.toString(startTls))
+                .put("from", "noreply@yfiton.com")
+                .put("to", "user@company.com")
+                .put("subject", "Build failure!")
+                .put("body", "Build #42 has failed!")
+                .build();
+
+        batch = Collections.nCopies(BATCH_SIZE, parameters);
+
+        yfiton = new YfitonBuilder(new EmailNotifier()).build();
+
+        Properties properties = new Properties();
+        properties.put("mail.smtp.auth", "true");
+        properties.put("mail.smtp.starttls.enable", Boolean.toString(startTls));
+        properties.put("mail.smtp.ssl.trust", "*");
+        properties.put("mail.smtp.ssl.protocols", "TLSv1.2");
+        session = Session.getInstance(properties);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        sink.close();
+    }
+
+    @Benchmark
+    public void unpooled() throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress(parameters.get("from")));
+        message.addRecipient(Message.RecipientType.TO, new InternetAddress(parameters.get("to")));
+        message.setSubject(parameters.get("subject"));
+        message.setText(parameters.get("body"));
+        message.saveChanges();
+
+        Transport transport = session.getTransport("smtp");
+
+        try {
+            transport.connect(sink.getHost(), sink.getPort(), USERNAME, PASSWORD);
+            transport.sendMessage(message, message.getAllRecipients());
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Benchmark
+    public NotificationResult sequential() throws YfitonException {
+        return yfiton.send(parameters);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public NotificationResult pooled() throws YfitonException {
+        return yfiton.send(parameters);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<NotificationOutcome> batched() {
+        return yfiton.notifyAll(batch);
+    }
+
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import javax.mail.util.SharedFileInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Sends a same message to a large number of recipients by splitting them
+ * into envelopes of limited size, or many personalized messages, over
+ * several connections in parallel.
+ * <p/>
+ * Recipients and messages are consumed as they are read and at most a few
+ * envelopes are held in memory at once. Messages are handed to the sender
+ * in encoded form and each envelope only parses the encoded form again, so
+ * that envelopes sent concurrently do not share a message instance. A same
+ * message sent to many recipients is encoded in a temporary file whose
+ * content, attachments included, is never loaded in memory.
+ *
+ * @author lpellegr
+ */
+final class BulkSender {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkSender.class);
+
+    // maximum number of errors kept for reporting
+    private static final int MAX_ERRORS = 10;
+
+    private final Session session;
+
+    private final MessageSender sender;
+
+    private final int envelopeSize;
+
+    private final int connections;
+
+    /**
+     * Creates a bulk sender.
+     *
+     * @param session      the session used to parse encoded messages.
+     * @param sender       the sender of each envelope, invoked by several threads at once.
+     * @param envelopeSize the maximum number of recipients per envelope.
+     * @param connections  the maximum number of envelopes sent in parallel.
+     */
+    BulkSender(Session session, MessageSender sender, int envelopeSize, int connections) {
+        if (envelopeSize < 1) {
+            throw new IllegalArgumentException("Invalid envelope size: " + envelopeSize);
+        }
+
+        if (connections < 1) {
+            throw new IllegalArgumentException("Invalid number of connections: " + connections);
+        }
+
+        this.session = session;
+        this.sender = sender;
+        this.envelopeSize = envelopeSize;
+        this.connections = connections;
+    }
+
+    /**
+     * Sends the specified message to the specified recipients.
+     *
+     * @param message    the message to send, its recipient headers are left untouched.
+     * @param recipients the envelope recipients, one address per element.
+     * @return a summary of the deliveries.
+     * @throws MessagingException   if the message cannot be encoded.
+     * @throws InterruptedException if the calling thread is interrupted while sending.
+     */
+    Result send(MimeMessage message, Iterator<String> recipients) throws MessagingException, InterruptedException {
+        Path spoolFile = spool(message);
+
+        try (SharedFileInputStream encodedMessage = new SharedFileInputStream(spoolFile.toFile())) {
+            return send(() -> encodedMessage.newStream(0, -1), recipients);
+        } catch (IOException e) {
+            throw new MessagingException("Cannot read encoded message", e);
+        } finally {
+            try {
+                Files.deleteIfExists(spoolFile);
+            } catch (IOException e) {
+                log.warn("Cannot delete temporary file {}: {}", spoolFile, e.getMessage());
+            }
+        }
+    }
+
+    private Result send(Supplier<InputStream> encodedMessage, Iterator<String> recipients) throws InterruptedException {
+        Result result = new Result();
+
+        ExecutorService executor = newExecutor();
+
+        // bounds the number of envelopes waiting to be sent
+        Semaphore pendingEnvelopes = new Semaphore(connections * 2);
+
+        try {
+            List<Address> envelope = new ArrayList<>(envelopeSize);
+
+            while (recipients.hasNext()) {
+                String recipient = recipients.next();
+
+                try {
+                    envelope.add(new InternetAddress(recipient, true));
+                } catch (AddressException e) {
+                    log.warn("Ignoring invalid recipient '{}': {}", recipient, e.getMessage());
+                    result.failed(1, e);
+                    continue;
+                }
+
+                if (envelope.size() == envelopeSize) {
+                    submit(executor, pendingEnvelopes, encodedMessage, envelope, result);
+                    envelope = new ArrayList<>(envelopeSize);
+                }
+            }
+
+            if (!envelope.isEmpty()) {
+                submit(executor, pendingEnvelopes, encodedMessage, envelope, result);
+            }
+
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            terminate(executor);
+        }
+
+        return result.stop();
+    }
+
+    /**
+     * Sends one message per element of the specified iterator. Messages are
+     * created on the calling thread while previous ones are being sent.
+     *
+     * @param elements the elements to create messages from.
+     * @param factory  the factory creating an encoded message and its recipients
+     *                 from an element. A failure only discards the message of the
+     *                 element concerned.
+     * @param <T>      the type of the elements.
+     * @return a summary of the deliveries, one envelope per message.
+     * @throws InterruptedException if the calling thread is interrupted while sending.
+     */
+    <T> Result send(Iterator<T> elements, DeliveryFactory<T> factory) throws InterruptedException {
+        Result result = new Result();
+
+        ExecutorService executor = newExecutor();
+
+        Semaphore pendingEnvelopes = new Semaphore(connections * 2);
+
+        try {
+            while (elements.hasNext()) {
+                Delivery delivery;
+
+                try {
+                    delivery = factory.create(elements.next());
+                } catch (MessagingException e) {
+                    log.warn("Ignoring message: {}", e.getMessage());
+                    result.failed(1, e);
+                    continue;
+                }
+
+                byte[] encodedMessage = delivery.encodedMessage;
+
+                submit(executor, pendingEnvelopes, () -> new ByteArrayInputStream(encodedMessage),
+                        Arrays.asList(delivery.recipients), result);
+            }
+
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            terminate(executor);
+        }
+
+        return result.stop();
+    }
+
+    /*
+     * Interrupts the envelopes still being sent, e.g. when the calling thread
+     * has been interrupted, and waits for them to complete so that none reads
+     * an encoded message once it has been released.
+     */
+    private static void terminate(ExecutorService executor) {
+        if (executor.isTerminated()) {
+            return;
+        }
+
+        executor.shutdownNow();
+
+        boolean interrupted = false;
+
+        try {
+            while (true) {
+                try {
+                    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private ExecutorService newExecutor() {
+        return Executors.newFixedThreadPool(connections,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("yfiton-email-bulk-%d").build());
+    }
+
+    private void submit(ExecutorService executor, Semaphore pendingEnvelopes, Supplier<InputStream> encodedMessage,
+                        List<Address> envelope, Result result) throws InterruptedException {
+        Address[] addresses = envelope.toArray(new Address[envelope.size()]);
+
+        pendingEnvelopes.acquire();
+
+        executor.execute(() -> {
+            try {
+                MimeMessage copy = new MimeMessage(session, encodedMessage.get());
+
+                sender.send(copy, addresses);
+
+                result.sent(addresses.length);
+            } catch (SendFailedException e) {
+                // unless mail.smtp.sendpartial is set, a refused recipient aborts the whole envelope
+                Address[] sentAddresses = e.getValidSentAddresses();
+                int sent = sentAddresses == null ? 0 : sentAddresses.length;
+
+                result.sent(sent);
+                result.failed(addresses.length - sent, e);
+            } catch (MessagingException | RuntimeException e) {
+                result.failed(addresses.length, e);
+            } finally {
+                pendingEnvelopes.release();
+            }
+        });
+    }
+
+    private static Path spool(MimeMessage message) throws MessagingException {
+        try {
+            Path result = Files.createTempFile("yfiton-email-", ".eml");
+
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(result))) {
+                message.saveChanges();
+                // like SMTPTransport, never reveal blind carbon copy recipients
+                message.writeTo(out, new String[]{"Bcc", "Content-Length"});
+            } catch (IOException | MessagingException e) {
+                Files.deleteIfExists(result);
+                throw e;
+            }
+
+            return result;
+        } catch (IOException e) {
+            throw new MessagingException("Cannot encode message", e);
+        }
+    }
+
+    /**
+     * An encoded message along with the recipients of its envelope.
+     */
+    static final class Delivery {
+
+        private final byte[] encodedMessage;
+
+        private final Address[] recipients;
+
+        Delivery(byte[] encodedMessage, Address... recipients) {
+            this.encodedMessage = encodedMessage;
+            this.recipients = recipients;
+        }
+
+    }
+
+    @FunctionalInterface
+    interface DeliveryFactory<T> {
+
+        Delivery create(T element) throws MessagingException;
+
+    }
+
+    static final class Result {
+
+        private final Stopwatch stopwatch = Stopwatch.createStarted();
+
+        private final AtomicInteger envelopes = new AtomicInteger();
+
+        private final AtomicInteger sentRecipients = new AtomicInteger();
+
+        private final AtomicInteger failedRecipients = new AtomicInteger();
+
+        private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+        private void sent(int recipients) {
+            envelopes.incrementAndGet();
+            sentRecipients.addAndGet(recipients);
+        }
+
+        private void failed(int recipients, Exception e) {
+            failedRecipients.addAndGet(recipients);
+
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(e.getMessage());
+            }
+        }
+
+        private Result stop() {
+            stopwatch.stop();
+            return this;
+        }
+
+        int getEnvelopes() {
+            return envelopes.get();
+        }
+
+        int getSentRecipients() {
+            return sentRecipients.get();
+        }
+
+        int getFailedRecipients() {
+            return failedRecipients.get();
+        }
+
+        List<String> getErrors() {
+            return errors;
+        }
+
+        Stopwatch getStopwatch() {
+            return stopwatch;
+        }
+
+        /**
+         * Returns the number of envelopes successfully sent per second.
+         *
+         * @return the number of envelopes successfully sent per second.
+         */
+        double getThroughput() {
+            long elapsed = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+
+            if (elapsed == 0) {
+                return 0;
+            }
+
+            return envelopes.get() * 1e9 / elapsed;
+        }
+
+    }
+
+}
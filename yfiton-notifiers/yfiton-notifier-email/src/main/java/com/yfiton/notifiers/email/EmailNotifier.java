@@ -16,34 +16,69 @@
 
 package com.yfiton.notifiers.email;
 
+import com.google.common.base.Joiner;
+import com.google.common.base.Stopwatch;
+import com.google.common.net.HostAndPort;
+import com.yfiton.api.BatchNotifier;
+import com.yfiton.api.NotificationOutcome;
+import com.yfiton.api.NotificationResult;
 import com.yfiton.api.Notifier;
+import com.yfiton.api.annotation.NotifierInfo;
 import com.yfiton.api.annotation.Parameter;
 import com.yfiton.api.exceptions.NotificationException;
+import com.yfiton.api.exceptions.ParameterException;
 import com.yfiton.api.exceptions.ValidationException;
+import com.yfiton.api.exceptions.YfitonException;
+import com.yfiton.api.parameter.ParameterValue;
 import com.yfiton.api.parameter.Parameters;
+import com.yfiton.api.parameter.converters.ListPathConverter;
+import com.yfiton.api.parameter.converters.PathConverter;
+import com.yfiton.api.parameter.validators.FileExistValidator;
+import com.yfiton.api.parameter.validators.FilesExistValidator;
 import com.yfiton.api.parameter.validators.Validator;
 import com.yfiton.api.utils.Console;
 
+import javax.activation.DataHandler;
 import javax.mail.*;
-import javax.mail.internet.AddressException;
 import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
-import java.util.Properties;
+import javax.mail.internet.MimeMultipart;
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 /**
  * This notifier allows to send emails using the desired server.
  *
  * @author lpellegr
  */
-public class EmailNotifier extends Notifier {
+@NotifierInfo(
+        key = "email",
+        name = "Email",
+        description = "Send an email to the specified recipient(s).\nThe notifier is based on the Java Mail API\nhttps://javamail.java.net/nonav/docs/api/")
+public class EmailNotifier extends Notifier implements BatchNotifier {
+
+    private static final String TRANSPORT_SMTP = "smtp";
+
+    private static final String TRANSPORT_SENDMAIL = "sendmail";
+
+    private static final String TRANSPORT_LMTP = "lmtp";
+
+    private static final int DEFAULT_LMTP_PORT = 24;
+
+    private static final String TLS_PROTOCOLS = getDefaultTlsProtocols();
 
     @Parameter(description = "Specify author of the message.", required = true)
     private String from;
 
-    @Parameter(name = "to", description = "Address(es) of the primary recipient(s) of the message.", required = true)
+    @Parameter(name = "to", description = "Address(es) of the primary recipient(s) of the message. Either this parameter or recipientsFile must be set.")
     private List<String> recipients;
 
     @Parameter(description = "The addresses of others who are to receive the message, though the content of the message may not be directed at them.")
@@ -58,15 +93,24 @@ public class EmailNotifier extends Notifier {
     @Parameter(description = "The content of the message.")
     private String body = "";
 
+    @Parameter(name = "attachment", description = "Comma separated list of files to attach to the message. Files are read from disk while the message is sent, whatever their size.", converter = ListPathConverter.class, validator = FilesExistValidator.class)
+    private List<Path> attachments;
+
     @Parameter(description = "The username to use if authentication is required.")
     private String username;
 
     @Parameter(description = "The password to use if authentication is required.", hidden = true)
     private String password;
 
-    @Parameter(description = "Fully qualified domain name (FQDN) of SMTP service. It can be a FQDN or a keyword among [gmail, outlook] for loading predefined configurations.", required = true)
+    @Parameter(description = "Fully qualified domain name (FQDN) of SMTP service. It can be a FQDN or a keyword among [gmail, outlook] for loading predefined configurations. Either this parameter or relays must be set.")
     private String host;
 
+    @Parameter(description = "Comma separated list of SMTP relays to use instead of host, each defined as host[:port][/weight] (e.g. smtp1.company.com/3,smtp2.company.com:25). Messages are routed to the fastest and least loaded relay and sent again with another relay if one fails.")
+    private List<String> relays;
+
+    @Parameter(description = "Number of seconds during which a failing relay is not used anymore, unless no other relay is available.")
+    private int relayCooldown = 30;
+
     @Parameter(description = "The port number of the mail server")
     private int port = 587;
 
@@ -79,11 +123,41 @@ public class EmailNotifier extends Notifier {
     @Parameter(name = "ssl.trust", description = "If set, and a socket factory hasn't been specified, enables use of a MailSSLSocketFactory. If set to \"*\", all hosts are trusted. If set to a whitespace separated list of hosts, those hosts are trusted. Otherwise, trust depends on the certificate the server presents.")
     private String trustSsl = "*";
 
+    @Parameter(description = "File listing one recipient address per line, empty lines and lines starting with # are ignored. Addresses are read as the message is sent and do not appear in message headers.", converter = PathConverter.class, validator = FileExistValidator.class)
+    private Path recipientsFile;
+
+    @Parameter(description = "Maximum number of recipients per envelope. Messages with more recipients, or with a recipients file, are sent in several envelopes.")
+    private int envelopeSize = 100;
+
+    @Parameter(description = "Maximum number of envelopes sent in parallel when a message is sent in several envelopes.")
+    private int connections = 4;
+
+    @Parameter(description = "CSV file with a header row, or newline delimited JSON file, giving one record per message to send. Subject and body may reference record fields with {{field}} placeholders.", converter = PathConverter.class, validator = FileExistValidator.class)
+    private Path mergeFile;
+
+    @Parameter(description = "Record field giving the recipient address of each message sent from mergeFile.")
+    private String mergeRecipientField = "email";
+
+    @Parameter(description = "How messages are sent: smtp to connect to host or relays, sendmail to pipe messages to a local sendmail compatible command, lmtp to hand messages over to a local MTA listening for LMTP. With local transports, queuing and retries are performed by the MTA.")
+    private String transport = TRANSPORT_SMTP;
+
+    @Parameter(description = "Command, with its arguments, used to send messages when transport is sendmail.")
+    private String sendmailCommand = "/usr/sbin/sendmail";
+
+    @Parameter(description = "Host and port of the LMTP server used when transport is lmtp.")
+    private String lmtpAddress = "localhost:24";
+
+    // relays parsed when parameters are checked
+    private List<SmtpRelay> smtpRelays;
+
+    // LMTP server parsed when parameters are checked
+    private HostAndPort lmtpServer;
+
     public EmailNotifier() {
 
     }
 
-    private EmailNotifier(boolean auth, List<String> bcc, String body, List<String> cc, boolean enableStartTls, String from, String host, int port, List<String> recipients, String subject, String trustSsl, String username, String password) {
+    private EmailNotifier(boolean auth, List<String> bcc, String body, List<String> cc, boolean enableStartTls, String from, String host, int port, List<String> recipients, String subject, String trustSsl, String username, String password, Path recipientsFile, int envelopeSize, int connections, Path mergeFile, String mergeRecipientField, List<Path> attachments, List<String> relays, int relayCooldown, String transport, String sendmailCommand, String lmtpAddress) {
         this.auth = auth;
         this.bcc = bcc;
         this.body = body;
@@ -97,19 +171,66 @@ public class EmailNotifier extends Notifier {
         this.subject = subject;
         this.trustSsl = trustSsl;
         this.username = username;
+        this.recipientsFile = recipientsFile;
+        this.envelopeSize = envelopeSize;
+        this.connections = connections;
+        this.mergeFile = mergeFile;
+        this.mergeRecipientField = mergeRecipientField;
+        this.attachments = attachments;
+        this.relays = relays;
+        this.relayCooldown = relayCooldown;
+        this.transport = transport;
+        this.sendmailCommand = sendmailCommand;
+        this.lmtpAddress = lmtpAddress;
     }
 
     @Override
     protected Check checkParameters(Parameters parameters) {
+        if (mergeFile != null) {
+            if (recipients != null || cc != null || bcc != null || recipientsFile != null) {
+                return Check.failed("Recipients are read from 'mergeFile', 'to', 'cc', 'bcc' and 'recipientsFile' cannot be set");
+            }
+
+            if (attachments != null && !attachments.isEmpty()) {
+                return Check.failed("Attachments are not supported with 'mergeFile'");
+            }
+        } else if (recipients == null && recipientsFile == null) {
+            return Check.failed("Missing recipients, 'to', 'recipientsFile' or 'mergeFile' must be set");
+        }
+
+        if (envelopeSize < 1 || connections < 1) {
+            return Check.failed("Parameters 'envelopeSize' and 'connections' must be strictly positive");
+        }
+
+        if (!TRANSPORT_SMTP.equals(transport)) {
+            return checkLocalTransport();
+        }
+
+        if (relays != null && !relays.isEmpty()) {
+            List<SmtpRelay> parsedRelays = new ArrayList<>(relays.size());
+
+            try {
+                for (String relay : relays) {
+                    parsedRelays.add(SmtpRelay.parse(relay, port));
+                }
+            } catch (ParameterException e) {
+                return Check.failed(e.getMessage());
+            }
+
+            smtpRelays = parsedRelays;
+        } else if (host == null) {
+            return Check.failed("Missing SMTP server, 'host' or 'relays' must be set");
+        }
+
         if (auth) {
             if (username == null) {
-                Check.failed("Missing required username");
+                return Check.failed("Missing required username");
             } else {
                 if (password == null) {
                     String value = Console.readParameterValueFromStdin("password");
 
                     if (value == null) {
-                        Check.failed("Missing required password");
+                        return Check.failed("Missing required password");
                     } else {
                         password = value;
                     }
@@ -120,73 +241,305 @@ public class EmailNotifier extends Notifier {
         return Check.succeeded();
     }
 
+    private Check checkLocalTransport() {
+        switch (transport) {
+            case TRANSPORT_SENDMAIL:
+                return Check.succeeded();
+            case TRANSPORT_LMTP:
+                try {
+                    lmtpServer = HostAndPort.fromString(lmtpAddress).withDefaultPort(DEFAULT_LMTP_PORT);
+                } catch (IllegalArgumentException e) {
+                    return Check.failed("Invalid LMTP address: " + lmtpAddress);
+                }
+
+                return Check.succeeded();
+            default:
+                return Check.failed("Unknown transport '" + transport + "', expected one of ["
+                        + Joiner.on(", ").join(TRANSPORT_SMTP, TRANSPORT_SENDMAIL, TRANSPORT_LMTP) + "]");
+        }
+    }
+
     @Override
     protected void notify(Parameters parameters) throws NotificationException {
+        Properties properties = createProperties(parameters);
+        Session session = SessionCache.getDefault().get(properties);
+        MessageSender sender = createSender(session, properties);
+
+        try {
+            if (mergeFile != null) {
+                sendMerged(session, sender);
+                return;
+            }
+
+            MimeMessage message = createMessage(session);
+
+            if (recipientsFile != null || countRecipients() > envelopeSize) {
+                sendInBulk(session, sender, message);
+            } else {
+                log.debug("Sending message to recipients");
+                message.saveChanges();
+                sender.send(message, message.getAllRecipients());
+            }
+        } catch (MessagingException e) {
+            throw new NotificationException(e);
+        }
+    }
+
+    /**
+     * Creates the sender delivering messages with pooled connections to the
+     * configured host, or to the best of the configured relays, unless a
+     * local transport is used.
+     */
+    private MessageSender createSender(Session session, Properties properties) {
+        if (TRANSPORT_SENDMAIL.equals(transport)) {
+            return new SendmailSender(sendmailCommand);
+        }
+
+        if (TRANSPORT_LMTP.equals(transport)) {
+            return new LmtpSender(lmtpServer.getHost(), lmtpServer.getPort());
+        }
+
+        SmtpTransportPool pool = SmtpTransportPool.getDefault();
+
+        if (smtpRelays == null) {
+            return (message, recipients) -> pool.send(session, username, password, message, recipients);
+        }
+
+        List<SmtpRelay> relays = smtpRelays;
+
+        return (message, recipients) -> RelayPool.getDefault().send(relays, relayCooldown, TimeUnit.SECONDS, (relay, wait) -> {
+            Properties relayProperties = new Properties();
+            relayProperties.putAll(properties);
+            relayProperties.put("mail.smtp.host", relay.getHost());
+            relayProperties.put("mail.smtp.port", Integer.toString(relay.getPort()));
+
+            Session relaySession = SessionCache.getDefault().get(relayProperties);
+
+            if (wait) {
+                return (m, r) -> pool.send(relaySession, username, password, m, r);
+            }
+
+            // a busy relay is skipped at once rather than after the borrow timeout
+            return (m, r) -> pool.send(relaySession, username, password, m, r, 0, TimeUnit.MILLISECONDS);
+        }, message, recipients);
+    }
+
+    /**
+     * Sends the specified message in envelopes of at most {@code envelopeSize}
+     * recipients. Recipients read from {@code recipientsFile} are streamed.
+     */
+    private void sendInBulk(Session session, MessageSender sender, MimeMessage message) throws MessagingException, NotificationException {
+        BulkSender bulkSender = new BulkSender(session, sender, envelopeSize, connections);
+
+        BulkSender.Result result;
+
+        try (Stream<String> addresses = streamRecipients()) {
+            result = bulkSender.send(message, addresses.iterator());
+        } catch (IOException | UncheckedIOException e) {
+            throw new NotificationException("Cannot read recipients file: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NotificationException("Interrupted while sending message", e);
+        }
+
+        log.info("Message sent to {} recipient(s) using {} envelope(s)", result.getSentRecipients(), result.getEnvelopes());
+
+        checkResult(result);
+    }
+
+    /**
+     * Sends one personalized message per record of {@code mergeFile}. The
+     * template made of the subject and body is parsed and encoded once.
+     */
+    private void sendMerged(Session session, MessageSender sender) throws MessagingException, NotificationException {
+        MergeTemplate template = MergeTemplate.compile(new InternetAddress(from), subject, body);
+
+        BulkSender bulkSender = new BulkSender(session, sender, envelopeSize, connections);
+
+        BulkSender.Result result;
+
+        try (MergeRecords records = MergeRecords.open(mergeFile)) {
+            result = bulkSender.send(records, record -> {
+                String recipient = record.get(mergeRecipientField);
+
+                if (recipient == null) {
+                    throw new MessagingException("Missing field '" + mergeRecipientField + "' in record " + record);
+                }
+
+                InternetAddress address = new InternetAddress(recipient, true);
+
+                return new BulkSender.Delivery(template.render(record, address), address);
+            });
+        } catch (IOException | UncheckedIOException e) {
+            throw new NotificationException("Cannot read merge file: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NotificationException("Interrupted while sending messages", e);
+        }
+
+        log.info("{} message(s) sent in {} ({} msg/s)",
+                result.getEnvelopes(), result.getStopwatch(), String.format("%.1f", result.getThroughput()));
+
+        checkResult(result);
+    }
+
+    private void checkResult(BulkSender.Result result) throws NotificationException {
+        if (result.getFailedRecipients() > 0) {
+            throw new NotificationException(
+                    result.getFailedRecipients() + " recipient(s) could not be reached: "
+                            + Joiner.on("; ").join(result.getErrors()));
+        }
+    }
+
+    private Stream<String> streamRecipients() throws IOException {
+        Stream<String> result =
+                Stream.of(recipients, cc, bcc).filter(Objects::nonNull).flatMap(List::stream);
+
+        if (recipientsFile != null) {
+            Stream<String> lines = Files.lines(recipientsFile)
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"));
+
+            result = Stream.concat(result, lines);
+        }
+
+        return result;
+    }
+
+    private int countRecipients() {
+        return Stream.of(recipients, cc, bcc).filter(Objects::nonNull).mapToInt(List::size).sum();
+    }
+
+    /**
+     * Sends the specified messages one after the other. Pooled connections
+     * allow messages sent to a same server to reuse a single connection.
+     */
+    @Override
+    public List<NotificationOutcome> handleBatch(List<Parameters> batch) {
+        List<NotificationOutcome> outcomes = new ArrayList<>(batch.size());
+
+        for (Parameters parameters : batch) {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+
+            try {
+                EmailNotifier invocation = prepare(parameters);
+                invocation.notify(parameters);
+
+                outcomes.add(NotificationOutcome.succeeded(new NotificationResult(getKey(), stopwatch.stop())));
+            } catch (YfitonException e) {
+                outcomes.add(NotificationOutcome.failed(getKey(), e, stopwatch.stop()));
+            }
+        }
+
+        return outcomes;
+    }
+
+    private Properties createProperties(Parameters parameters) {
         Properties props = new Properties();
 
         if (log.isDebugEnabled()) {
             props.put("mail.debug", "true");
         }
 
-        props.put("mail.smtp.host", host);
+        if (host != null) {
+            props.put("mail.smtp.host", host);
+        }
+
         props.put("mail.smtp.port", port);
         props.put("mail.smtp.auth", auth);
         props.put("mail.smtp.starttls.enable", Boolean.toString(enableStartTls));
         props.put("mail.smtp.ssl.trust", trustSsl);
-
-        loadConfigurationForWellKnownServices(props);
+        // JavaMail 1.4 only enables TLSv1 for STARTTLS, which recent JREs and servers refuse
+        props.put("mail.smtp.ssl.protocols", TLS_PROTOCOLS);
+
+        if (smtpRelays != null) {
+            // fail over to another relay rather than waiting forever for a stalled one
+            props.put("mail.smtp.connectiontimeout", "10000");
+            props.put("mail.smtp.timeout", "30000");
+        } else if (host != null) {
+            loadConfigurationForWellKnownServices(props);
+        }
 
         // accept to override all mail.xxx properties
-        props.putAll(parameters.nameStartingWith("mail."));
+        for (Map.Entry<String, ParameterValue> entry : parameters.nameStartingWith("mail.").entrySet()) {
+            props.put(entry.getKey(), String.valueOf(entry.getValue().getValue()));
+        }
 
-        Session session = Session.getInstance(props);
-        MimeMessage message = new MimeMessage(session);
-        Transport transport = null;
+        return props;
+    }
 
+    /**
+     * Returns the TLS protocols enabled by default by the running JRE, in
+     * the format expected by the mail.smtp.ssl.protocols property.
+     */
+    private static String getDefaultTlsProtocols() {
         try {
-            if (bcc != null) {
-                for (String email : bcc) {
-                    message.addRecipients(Message.RecipientType.BCC, email);
-                }
-            }
+            return Joiner.on(' ').join(SSLContext.getDefault().getDefaultSSLParameters().getProtocols());
+        } catch (NoSuchAlgorithmException e) {
+            return "TLSv1.2";
+        }
+    }
 
-            if (cc != null) {
-                for (String email : cc) {
-                    message.addRecipients(Message.RecipientType.CC, email);
-                }
+    private MimeMessage createMessage(Session session) throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+
+        if (bcc != null) {
+            for (String email : bcc) {
+                message.addRecipients(Message.RecipientType.BCC, email);
             }
+        }
 
-            if (from != null) {
-                message.addFrom(new Address[]{new InternetAddress(from)});
+        if (cc != null) {
+            for (String email : cc) {
+                message.addRecipients(Message.RecipientType.CC, email);
             }
+        }
 
+        if (from != null) {
+            message.addFrom(new Address[]{new InternetAddress(from)});
+        }
+
+        if (recipients == null) {
+            message.setHeader("To", "undisclosed-recipients:;");
+        } else {
             for (String recipient : recipients) {
                 message.addRecipient(Message.RecipientType.TO, new InternetAddress(recipient));
             }
+        }
 
-            message.setSubject(subject);
-            message.setContent(body, "text/plain");
+        message.setSubject(subject);
 
-            transport = session.getTransport("smtp");
+        if (attachments == null || attachments.isEmpty()) {
+            message.setContent(body, "text/plain");
+        } else {
+            MimeMultipart multipart = new MimeMultipart();
 
-            log.debug("Connecting to " + host + " using SMTP protocol");
-            transport.connect(username, password);
+            MimeBodyPart text = new MimeBodyPart();
+            text.setText(body);
+            multipart.addBodyPart(text);
 
-            log.debug("Sending message to recipients");
-            transport.sendMessage(message, message.getAllRecipients());
-        } catch (AddressException e) {
-            throw new NotificationException(e);
-        } catch (MessagingException e) {
-            throw new NotificationException(e);
-        } finally {
-            if (transport != null) {
-                try {
-                    transport.close();
-                } catch (MessagingException e) {
-                    throw new NotificationException(e);
-                }
+            for (Path attachment : attachments) {
+                multipart.addBodyPart(createAttachmentPart(attachment));
             }
+
+            message.setContent(multipart);
         }
+
+        return message;
+    }
+
+    /**
+     * Creates a body part whose content is streamed from the specified file
+     * and base64 encoded as it is written.
+     */
+    static MimeBodyPart createAttachmentPart(Path file) throws MessagingException {
+        MimeBodyPart result = new MimeBodyPart();
+        result.setDataHandler(new DataHandler(new FileChannelDataSource(file)));
+        result.setFileName(file.getFileName().toString());
+        result.setDisposition(Part.ATTACHMENT);
+        // set explicitly, otherwise JavaMail reads the whole file to select an encoding
+        result.setHeader("Content-Transfer-Encoding", "base64");
+        return result;
     }
 
     private void loadConfigurationForWellKnownServices(Properties props) {
@@ -207,26 +560,6 @@ public class EmailNotifier extends Notifier {
         }
     }
 
-    @Override
-    public String getKey() {
-        return "email";
-    }
-
-    @Override
-    public String getName() {
-        return "Email";
-    }
-
-    @Override
-    public Optional<String> getDescription() {
-        return Optional.of("Send an email to the specified recipient(s).\nThe notifier is based on the Java Mail API\nhttps://javamail.java.net/nonav/docs/api/");
-    }
-
-    @Override
-    public Optional<String> getUrl() {
-        return Optional.empty();
-    }
-
     public static final class SubjectValidator implements Validator<String> {
 
         @Override
@@ -254,6 +587,17 @@ public class EmailNotifier extends Notifier {
         private int port = 587;
         private boolean enableStartTls = false;
         private String trustSsl = "*";
+        private Path recipientsFile;
+        private int envelopeSize = 100;
+        private int connections = 4;
+        private Path mergeFile;
+        private String mergeRecipientField = "email";
+        private List<Path> attachments;
+        private List<String> relays;
+        private int relayCooldown = 30;
+        private String transport = TRANSPORT_SMTP;
+        private String sendmailCommand = "/usr/sbin/sendmail";
+        private String lmtpAddress = "localhost:24";
 
         public Builder() {
         }
@@ -350,8 +694,81 @@ public class EmailNotifier extends Notifier {
             return this;
         }
 
+        public Builder setRecipientsFile(Path recipientsFile) {
+            this.recipientsFile = recipientsFile;
+            return this;
+        }
+
+        public Builder setEnvelopeSize(int envelopeSize) {
+            this.envelopeSize = envelopeSize;
+            return this;
+        }
+
+        public Builder setConnections(int connections) {
+            this.connections = connections;
+            return this;
+        }
+
+        public Builder setMergeFile(Path mergeFile) {
+            this.mergeFile = mergeFile;
+            return this;
+        }
+
+        public Builder setMergeRecipientField(String mergeRecipientField) {
+            this.mergeRecipientField = mergeRecipientField;
+            return this;
+        }
+
+        public Builder addAttachment(Path attachment) {
+            if (this.attachments == null) {
+                this.attachments = new ArrayList<>();
+            }
+
+            this.attachments.add(attachment);
+            return this;
+        }
+
+        public Builder setAttachments(List<Path> attachments) {
+            this.attachments = attachments;
+            return this;
+        }
+
+        public Builder addRelay(String relay) {
+            if (this.relays == null) {
+                this.relays = new ArrayList<>();
+            }
+
+            this.relays.add(relay);
+            return this;
+        }
+
+        public Builder setRelays(List<String> relays) {
+            this.relays = relays;
+            return this;
+        }
+
+        public Builder setRelayCooldown(int relayCooldown) {
+            this.relayCooldown = relayCooldown;
+            return this;
+        }
+
+        public Builder setTransport(String transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        public Builder setSendmailCommand(String sendmailCommand) {
+            this.sendmailCommand = sendmailCommand;
+            return this;
+        }
+
+        public Builder setLmtpAddress(String lmtpAddress) {
+            this.lmtpAddress = lmtpAddress;
+            return this;
+        }
+
         public EmailNotifier build() {
-            EmailNotifier emailNotifier = new EmailNotifier(auth, bcc, body, cc, enableStartTls, from, host, port, recipients, subject, trustSsl, username, password);
+            EmailNotifier emailNotifier = new EmailNotifier(auth, bcc, body, cc, enableStartTls, from, host, port, recipients, subject, trustSsl, username, password, recipientsFile, envelopeSize, connections, mergeFile, mergeRecipientField, attachments, relays, relayCooldown, transport, sendmailCommand, lmtpAddress);
             return emailNotifier;
         }
 
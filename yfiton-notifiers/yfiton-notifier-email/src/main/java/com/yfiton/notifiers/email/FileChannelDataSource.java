@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import javax.activation.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Data source reading a file through a {@link FileChannel}. Each call to
+ * {@link #getInputStream()} opens a new channel so that the content is read
+ * from disk as it is written and never held in memory, even when a message
+ * has to be written several times.
+ *
+ * @author lpellegr
+ */
+final class FileChannelDataSource implements DataSource {
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private final Path path;
+
+    private final String contentType;
+
+    FileChannelDataSource(Path path) {
+        this.path = path;
+        this.contentType = probeContentType(path);
+    }
+
+    private static String probeContentType(Path path) {
+        try {
+            String result = Files.probeContentType(path);
+
+            if (result != null) {
+                return result;
+            }
+        } catch (IOException e) {
+            // use default content type
+        }
+
+        return DEFAULT_CONTENT_TYPE;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Channels.newInputStream(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        throw new IOException("Read-only data source: " + path);
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public String getName() {
+        return path.getFileName().toString();
+    }
+
+}
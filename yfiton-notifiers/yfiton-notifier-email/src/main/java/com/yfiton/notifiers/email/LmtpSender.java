@@ -0,0 +1,172 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import com.sun.mail.smtp.SMTPOutputStream;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands messages over to a local mail transfer agent with LMTP (RFC 2033)
+ * over TCP. Once the agent has accepted a message, queuing and delivery are
+ * its responsibility.
+ *
+ * @author lpellegr
+ */
+final class LmtpSender implements MessageSender {
+
+    private static final int TIMEOUT = 30_000;
+
+    private final String host;
+
+    private final int port;
+
+    LmtpSender(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public void send(MimeMessage message, Address[] recipients) throws MessagingException {
+        String sender = MessageSender.getEnvelopeSender(message);
+
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), TIMEOUT);
+            socket.setSoTimeout(TIMEOUT);
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+
+            expect(in, 220);
+            command(in, out, "LHLO " + socket.getLocalAddress().getHostName(), 250);
+            command(in, out, "MAIL FROM:<" + sender + ">", 250);
+
+            List<Address> accepted = new ArrayList<>(recipients.length);
+            List<Address> rejected = new ArrayList<>();
+
+            for (Address recipient : recipients) {
+                write(out, "RCPT TO:<" + ((InternetAddress) recipient).getAddress() + ">");
+
+                if (readReply(in).code / 100 == 2) {
+                    accepted.add(recipient);
+                } else {
+                    rejected.add(recipient);
+                }
+            }
+
+            List<Address> delivered = new ArrayList<>(accepted.size());
+
+            if (!accepted.isEmpty()) {
+                command(in, out, "DATA", 354);
+
+                SMTPOutputStream data = new SMTPOutputStream(out);
+                message.writeTo(data, new String[]{"Bcc", "Content-Length"});
+                data.ensureAtBOL();
+                write(out, ".");
+
+                // LMTP gives one reply per accepted recipient
+                for (Address recipient : accepted) {
+                    if (readReply(in).code / 100 == 2) {
+                        delivered.add(recipient);
+                    } else {
+                        rejected.add(recipient);
+                    }
+                }
+            }
+
+            write(out, "QUIT");
+
+            if (!rejected.isEmpty()) {
+                throw new SendFailedException(
+                        "Recipients rejected by local MTA at " + host + ":" + port,
+                        null,
+                        delivered.toArray(new Address[delivered.size()]),
+                        new Address[0],
+                        rejected.toArray(new Address[rejected.size()]));
+            }
+        } catch (IOException e) {
+            throw new MessagingException("Cannot hand message over to LMTP server at " + host + ":" + port, e);
+        }
+    }
+
+    private static void command(BufferedReader in, OutputStream out, String command, int expectedCode) throws IOException, MessagingException {
+        write(out, command);
+        expect(in, expectedCode);
+    }
+
+    private static void expect(BufferedReader in, int expectedCode) throws IOException, MessagingException {
+        Reply reply = readReply(in);
+
+        if (reply.code != expectedCode) {
+            throw new MessagingException("Unexpected LMTP reply: " + reply.text);
+        }
+    }
+
+    private static void write(OutputStream out, String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.US_ASCII));
+        out.write('\r');
+        out.write('\n');
+        out.flush();
+    }
+
+    private static Reply readReply(BufferedReader in) throws IOException, MessagingException {
+        String line;
+
+        // multiline replies have a dash after the code except on their last line
+        do {
+            line = in.readLine();
+
+            if (line == null) {
+                throw new MessagingException("Connection closed by LMTP server");
+            }
+        } while (line.length() > 3 && line.charAt(3) == '-');
+
+        try {
+            return new Reply(Integer.parseInt(line.substring(0, 3)), line);
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new MessagingException("Invalid LMTP reply: " + line);
+        }
+    }
+
+    private static final class Reply {
+
+        private final int code;
+
+        private final String text;
+
+        private Reply(int code, String text) {
+            this.code = code;
+            this.text = text;
+        }
+
+    }
+
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams the records used to personalize messages in mail-merge mode. A
+ * record maps field names to values and is read only when requested.
+ * <p/>
+ * Two formats are supported: CSV (RFC 4180) whose first row gives field names,
+ * and newline delimited JSON where each line is an object. The format is
+ * deduced from the file extension ({@code .json}, {@code .jsonl} and
+ * {@code .ndjson} for JSON) or from the first character of the file.
+ *
+ * @author lpellegr
+ */
+abstract class MergeRecords extends AbstractIterator<Map<String, String>> implements Closeable {
+
+    protected final Reader reader;
+
+    private MergeRecords(Reader reader) {
+        this.reader = reader;
+    }
+
+    static MergeRecords open(Path path) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+
+        try {
+            skipByteOrderMark(reader);
+
+            if (isJson(path, reader)) {
+                return new JsonRecords(reader);
+            }
+
+            return new CsvRecords(reader);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    private static void skipByteOrderMark(BufferedReader reader) throws IOException {
+        reader.mark(1);
+
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+    }
+
+    private static boolean isJson(Path path, BufferedReader reader) throws IOException {
+        String fileName = path.getFileName().toString().toLowerCase();
+
+        if (fileName.endsWith(".csv")) {
+            return false;
+        }
+
+        if (fileName.endsWith(".json") || fileName.endsWith(".jsonl") || fileName.endsWith(".ndjson")) {
+            return true;
+        }
+
+        reader.mark(1024);
+
+        try {
+            int c;
+
+            do {
+                c = reader.read();
+            } while (c != -1 && Character.isWhitespace(c));
+
+            return c == '{';
+        } finally {
+            reader.reset();
+        }
+    }
+
+    @Override
+    protected final Map<String, String> computeNext() {
+        try {
+            Map<String, String> record = readRecord();
+
+            if (record == null) {
+                return endOfData();
+            }
+
+            return record;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return the next record or {@code null} if there is no more record.
+     * @throws IOException if the records cannot be read.
+     */
+    protected abstract Map<String, String> readRecord() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static final class CsvRecords extends MergeRecords {
+
+        private final List<String> header;
+
+        private int line = 1;
+
+        private CsvRecords(Reader reader) throws IOException {
+            super(reader);
+
+            header = readRow();
+
+            if (header == null) {
+                throw new IOException("Missing CSV header");
+            }
+
+            Set<String> names = new HashSet<>();
+
+            for (String name : header) {
+                if (!names.add(name)) {
+                    throw new IOException("Line 1: duplicate field '" + name + "'");
+                }
+            }
+        }
+
+        @Override
+        protected Map<String, String> readRecord() throws IOException {
+            List<String> row;
+            int start;
+
+            // skip blank lines
+            do {
+                start = line;
+                row = readRow();
+            } while (row != null && row.size() == 1 && row.get(0).isEmpty());
+
+            if (row == null) {
+                return null;
+            }
+
+            if (row.size() != header.size()) {
+                throw new IOException(
+                        "Line " + start + ": " + row.size() + " fields found but " + header.size() + " expected");
+            }
+
+            ImmutableMap.Builder<String, String> result = ImmutableMap.builder();
+
+            for (int i = 0; i < header.size(); i++) {
+                result.put(header.get(i), row.get(i));
+            }
+
+            return result.build();
+        }
+
+        private List<String> readRow() throws IOException {
+            int start = line;
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+
+            int c = reader.read();
+
+            if (c == -1) {
+                return null;
+            }
+
+            while (c != -1) {
+                if (quoted) {
+                    if (c == '"') {
+                        c = reader.read();
+
+                        if (c != '"') {
+                            quoted = false;
+                            continue;
+                        }
+                    }
+
+                    if (c == '\n') {
+                        line++;
+                    }
+
+                    field.append((char) c);
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    line++;
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+
+                c = reader.read();
+            }
+
+            if (quoted) {
+                throw new IOException("Line " + start + ": unterminated quoted field");
+            }
+
+            fields.add(field.toString());
+
+            return fields;
+        }
+
+    }
+
+    private static final class JsonRecords extends MergeRecords {
+
+        private final JsonReader jsonReader;
+
+        private final JsonParser parser = new JsonParser();
+
+        private JsonRecords(Reader reader) {
+            super(reader);
+
+            jsonReader = new JsonReader(reader);
+            // accepts several top-level values
+            jsonReader.setLenient(true);
+        }
+
+        @Override
+        protected Map<String, String> readRecord() throws IOException {
+            if (jsonReader.peek() == JsonToken.END_DOCUMENT) {
+                return null;
+            }
+
+            JsonElement element = parser.parse(jsonReader);
+
+            if (!element.isJsonObject()) {
+                throw new IOException("JSON object expected but found: " + element);
+            }
+
+            ImmutableMap.Builder<String, String> result = ImmutableMap.builder();
+
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                JsonElement value = entry.getValue();
+
+                if (value.isJsonPrimitive()) {
+                    result.put(entry.getKey(), value.getAsString());
+                } else if (!value.isJsonNull()) {
+                    result.put(entry.getKey(), value.toString());
+                }
+            }
+
+            return result.build();
+        }
+
+    }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MailDateFormat;
+import javax.mail.internet.MimeUtility;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Message template used in mail-merge mode. Subject and body may reference
+ * record fields with {@code {{field}}} placeholders.
+ * <p/>
+ * The template is parsed once and the parts of the message that do not depend
+ * on a record (headers, constant subject or body) are encoded once. Rendering
+ * a message then only encodes the substituted parts. Instances are not thread
+ * safe.
+ *
+ * @author lpellegr
+ */
+final class MergeTemplate {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{\\s*([^{}\\s]+)\\s*}}");
+
+    // line breaks in a header value would start new headers
+    private static final Pattern LINE_BREAKS = Pattern.compile("[\\r\\n]+");
+
+    private static final String CHARSET = "UTF-8";
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final Text subject;
+
+    private final Text body;
+
+    // headers that are the same for all messages
+    private final byte[] headers;
+
+    // encoded body if it references no field
+    private final byte[] encodedBody;
+
+    private final String messageIdDomain;
+
+    private final MailDateFormat dateFormat = new MailDateFormat();
+
+    private MergeTemplate(InternetAddress from, Text subject, Text body) throws MessagingException {
+        this.subject = subject;
+        this.body = body;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeHeader(out, "From", from.toString());
+
+        if (subject.isConstant()) {
+            writeHeader(out, "Subject", encodeSubject(subject.render(null)));
+        }
+
+        writeHeader(out, "MIME-Version", "1.0");
+        writeHeader(out, "Content-Type", "text/plain; charset=" + CHARSET);
+        writeHeader(out, "Content-Transfer-Encoding", "quoted-printable");
+        this.headers = out.toByteArray();
+
+        this.encodedBody = body.isConstant() ? encodeBody(body.render(null)) : null;
+
+        String address = from.getAddress();
+        int at = address.lastIndexOf('@');
+        this.messageIdDomain = at == -1 ? "localhost" : address.substring(at + 1);
+    }
+
+    static MergeTemplate compile(InternetAddress from, String subject, String body) throws MessagingException {
+        return new MergeTemplate(from, Text.parse(subject), Text.parse(body));
+    }
+
+    /**
+     * Returns the names of the fields referenced by the template.
+     *
+     * @return the names of the fields referenced by the template.
+     */
+    Set<String> getFields() {
+        return ImmutableSet.<String>builder().addAll(subject.getFields()).addAll(body.getFields()).build();
+    }
+
+    /**
+     * Renders the message to send to the specified recipient.
+     *
+     * @param fields    the field values to substitute.
+     * @param recipient the recipient of the message.
+     * @return the message encoded in RFC 822 format.
+     * @throws MessagingException if a field referenced by the template is missing.
+     */
+    byte[] render(Map<String, String> fields, InternetAddress recipient) throws MessagingException {
+        byte[] renderedBody = encodedBody == null ? encodeBody(body.render(fields)) : encodedBody;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(headers.length + renderedBody.length + 256);
+
+        writeHeader(out, "Date", dateFormat.format(new Date()));
+        writeHeader(out, "Message-ID", "<" + UUID.randomUUID() + "@" + messageIdDomain + ">");
+        writeHeader(out, "To", recipient.toString());
+
+        if (!subject.isConstant()) {
+            writeHeader(out, "Subject", encodeSubject(subject.render(fields)));
+        }
+
+        out.write(headers, 0, headers.length);
+        out.write(CRLF, 0, CRLF.length);
+        out.write(renderedBody, 0, renderedBody.length);
+
+        return out.toByteArray();
+    }
+
+    private static String encodeSubject(String subject) throws MessagingException {
+        try {
+            String singleLine = LINE_BREAKS.matcher(subject).replaceAll(" ");
+
+            return MimeUtility.fold(9, MimeUtility.encodeText(singleLine, CHARSET, null));
+        } catch (UnsupportedEncodingException e) {
+            throw new MessagingException("Cannot encode subject", e);
+        }
+    }
+
+    private static byte[] encodeBody(String body) throws MessagingException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length() + body.length() / 8);
+
+        try (OutputStream encoder = MimeUtility.encode(out, "quoted-printable")) {
+            encoder.write(body.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new MessagingException("Cannot encode body", e);
+        }
+
+        return out.toByteArray();
+    }
+
+    private static void writeHeader(ByteArrayOutputStream out, String name, String value) {
+        byte[] header = (name + ": " + value).getBytes(StandardCharsets.US_ASCII);
+        out.write(header, 0, header.length);
+        out.write(CRLF, 0, CRLF.length);
+    }
+
+    /**
+     * Text split into literal segments and field references.
+     */
+    private static final class Text {
+
+        // literals are at even indexes, field names at odd indexes
+        private final List<String> segments;
+
+        private Text(List<String> segments) {
+            this.segments = segments;
+        }
+
+        static Text parse(String text) {
+            ImmutableList.Builder<String> segments = ImmutableList.builder();
+
+            Matcher matcher = PLACEHOLDER.matcher(text);
+            int start = 0;
+
+            while (matcher.find()) {
+                segments.add(text.substring(start, matcher.start()));
+                segments.add(matcher.group(1));
+                start = matcher.end();
+            }
+
+            segments.add(text.substring(start));
+
+            return new Text(segments.build());
+        }
+
+        boolean isConstant() {
+            return segments.size() == 1;
+        }
+
+        List<String> getFields() {
+            ImmutableList.Builder<String> result = ImmutableList.builder();
+
+            for (int i = 1; i < segments.size(); i += 2) {
+                result.add(segments.get(i));
+            }
+
+            return result.build();
+        }
+
+        String render(Map<String, String> fields) throws MessagingException {
+            if (isConstant()) {
+                return segments.get(0);
+            }
+
+            StringBuilder result = new StringBuilder();
+
+            for (int i = 0; i < segments.size(); i++) {
+                String segment = segments.get(i);
+
+                if (i % 2 == 1) {
+                    segment = fields.get(segment);
+
+                    if (segment == null) {
+                        throw new MessagingException("Missing field '" + segments.get(i) + "'");
+                    }
+                }
+
+                result.append(segment);
+            }
+
+            return result.toString();
+        }
+
+    }
+
+}
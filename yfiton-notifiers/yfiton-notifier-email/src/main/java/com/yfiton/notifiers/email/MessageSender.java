@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * Hands messages over to the service in charge of delivering them.
+ *
+ * @author lpellegr
+ */
+@FunctionalInterface
+interface MessageSender {
+
+    /**
+     * Sends the specified message to the specified envelope recipients.
+     *
+     * @param message    the message to send.
+     * @param recipients the envelope recipients.
+     * @throws MessagingException if the message cannot be sent.
+     */
+    void send(MimeMessage message, Address[] recipients) throws MessagingException;
+
+    /**
+     * Returns the address of the first author of the specified message, or
+     * an empty string (null reverse-path) if the message has no author.
+     *
+     * @param message the message to analyze.
+     * @return the envelope sender to use for the specified message.
+     * @throws MessagingException if the authors cannot be read.
+     */
+    static String getEnvelopeSender(MimeMessage message) throws MessagingException {
+        Address[] from = message.getFrom();
+
+        if (from == null || from.length == 0) {
+            return "";
+        }
+
+        return ((InternetAddress) from[0]).getAddress();
+    }
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import javax.mail.MessagingException;
+
+/**
+ * Thrown by {@link SmtpTransportPool} when no connection to a host becomes
+ * available before the borrow timeout. The host itself has not been
+ * contacted, the limit is local to the pool.
+ *
+ * @author lpellegr
+ */
+public final class PoolExhaustedException extends MessagingException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PoolExhaustedException(String message) {
+        super(message);
+    }
+
+}
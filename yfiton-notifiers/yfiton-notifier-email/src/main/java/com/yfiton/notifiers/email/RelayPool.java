@@ -0,0 +1,267 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import com.google.common.base.Ticker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes messages among several SMTP relays.
+ * <p/>
+ * Each relay is scored by the latency observed for its last deliveries,
+ * multiplied by the number of messages it is currently sending and divided
+ * by its weight. The relay with the lowest score is used, relays that have
+ * not been used yet being tried first. A relay that fails is ejected for a
+ * cool-down period and the message is sent again with another relay.
+ * Ejected relays are only used when no other relay is available. A relay
+ * whose local connections are all busy is skipped without being ejected.
+ *
+ * @author lpellegr
+ */
+final class RelayPool {
+
+    private static final Logger log = LoggerFactory.getLogger(RelayPool.class);
+
+    // weight of the last latency sample in the moving average
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    private final Ticker ticker;
+
+    // host:port -> statistics
+    private final ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<>();
+
+    private static final class LazyHolder {
+
+        private static final RelayPool INSTANCE = new RelayPool(Ticker.systemTicker());
+
+    }
+
+    RelayPool(Ticker ticker) {
+        this.ticker = ticker;
+    }
+
+    static RelayPool getDefault() {
+        return LazyHolder.INSTANCE;
+    }
+
+    /**
+     * Sends the specified message with the best relay available, then with
+     * the next best relays until one succeeds. Relays whose local connections
+     * are all busy are skipped without waiting; if no other relay succeeds,
+     * the message is sent with the best of them once a connection is released.
+     *
+     * @param relays     the relays to use.
+     * @param cooldown   the time during which a failing relay is ejected.
+     * @param unit       the unit of {@code cooldown}.
+     * @param senders    the factory returning the sender to use for a relay.
+     * @param message    the message to send.
+     * @param recipients the envelope recipients.
+     * @throws MessagingException the failure of the last relay tried if no relay
+     *                            succeeds, or a {@link SendFailedException} if
+     *                            recipients are rejected.
+     */
+    void send(List<SmtpRelay> relays, long cooldown, TimeUnit unit, SenderFactory senders,
+              MimeMessage message, Address[] recipients) throws MessagingException {
+        Set<String> tried = new HashSet<>();
+        List<SmtpRelay> busy = new ArrayList<>();
+        MessagingException failure = null;
+
+        SmtpRelay relay;
+
+        while ((relay = select(relays, tried)) != null) {
+            tried.add(relay.getHostAndPort());
+
+            try {
+                send(relay, senders.create(relay, false), cooldown, unit, message, recipients);
+                return;
+            } catch (PoolExhaustedException e) {
+                // all local connections to the relay are busy, the relay itself has not failed
+                log.debug("Relay {} busy, trying another relay: {}", relay.getHostAndPort(), e.getMessage());
+
+                busy.add(relay);
+                failure = e;
+            } catch (SendFailedException e) {
+                throw e;
+            } catch (MessagingException e) {
+                failure = e;
+            }
+        }
+
+        if (!busy.isEmpty()) {
+            // relays are tried in order of preference
+            SmtpRelay best = busy.get(0);
+
+            send(best, senders.create(best, true), cooldown, unit, message, recipients);
+            return;
+        }
+
+        if (failure == null) {
+            throw new MessagingException("No relay available");
+        }
+
+        throw failure;
+    }
+
+    private void send(SmtpRelay relay, MessageSender sender, long cooldown, TimeUnit unit,
+                      MimeMessage message, Address[] recipients) throws MessagingException {
+        Stats relayStats = getStats(relay);
+        relayStats.pending.incrementAndGet();
+
+        long start = ticker.read();
+
+        try {
+            sender.send(message, recipients);
+
+            relayStats.succeeded(ticker.read() - start);
+        } catch (SendFailedException e) {
+            // the relay works but rejects recipients, another relay would do the same
+            relayStats.succeeded(ticker.read() - start);
+            throw e;
+        } catch (PoolExhaustedException e) {
+            throw e;
+        } catch (MessagingException e) {
+            relayStats.failed(ticker.read() + unit.toNanos(cooldown));
+
+            log.warn("Relay {} failed, ejecting it for {} {}: {}",
+                    relay.getHostAndPort(), cooldown, unit.toString().toLowerCase(), e.getMessage());
+
+            throw e;
+        } finally {
+            relayStats.pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the relay to use among those not excluded, or {@code null} if
+     * all relays are excluded.
+     */
+    SmtpRelay select(List<SmtpRelay> relays, Set<String> excluded) {
+        long now = ticker.read();
+
+        SmtpRelay best = null;
+        double bestScore = Double.MAX_VALUE;
+        double bestLoad = Double.MAX_VALUE;
+
+        // ejected relay whose cool-down ends first, used if no relay is healthy
+        SmtpRelay fallback = null;
+        long fallbackEnd = Long.MAX_VALUE;
+
+        for (SmtpRelay relay : relays) {
+            if (excluded.contains(relay.getHostAndPort())) {
+                continue;
+            }
+
+            Stats relayStats = getStats(relay);
+            long ejectedUntil = relayStats.ejectedUntil;
+
+            if (ejectedUntil - now > 0) {
+                if (fallback == null || ejectedUntil - fallbackEnd < 0) {
+                    fallback = relay;
+                    fallbackEnd = ejectedUntil;
+                }
+
+                continue;
+            }
+
+            double load = (relayStats.pending.get() + 1) / (double) relay.getWeight();
+            double score = relayStats.latency * load;
+
+            if (score < bestScore || (score == bestScore && load < bestLoad)) {
+                best = relay;
+                bestScore = score;
+                bestLoad = load;
+            }
+        }
+
+        return best == null ? fallback : best;
+    }
+
+    /**
+     * Returns the latency observed for the specified relay, as a moving
+     * average in nanoseconds, or {@code 0} if the relay has not been used.
+     */
+    double getLatency(SmtpRelay relay) {
+        return getStats(relay).latency;
+    }
+
+    /**
+     * Returns whether the specified relay is currently ejected.
+     */
+    boolean isEjected(SmtpRelay relay) {
+        return getStats(relay).ejectedUntil - ticker.read() > 0;
+    }
+
+    private Stats getStats(SmtpRelay relay) {
+        return stats.computeIfAbsent(relay.getHostAndPort(), key -> new Stats(ticker.read()));
+    }
+
+    /**
+     * Creates the sender of a relay.
+     */
+    @FunctionalInterface
+    interface SenderFactory {
+
+        /**
+         * Returns the sender to use for the specified relay.
+         *
+         * @param relay the relay to send messages with.
+         * @param wait  whether the sender may wait for a local connection to the
+         *              relay, otherwise it fails with a {@link PoolExhaustedException}
+         *              as soon as all connections are busy.
+         * @return the sender to use for the specified relay.
+         */
+        MessageSender create(SmtpRelay relay, boolean wait);
+
+    }
+
+    private static final class Stats {
+
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private volatile double latency;
+
+        private volatile long ejectedUntil;
+
+        private Stats(long now) {
+            this.ejectedUntil = now;
+        }
+
+        private synchronized void succeeded(long elapsed) {
+            latency = latency == 0 ? elapsed : latency + LATENCY_SMOOTHING * (elapsed - latency);
+        }
+
+        private void failed(long ejectedUntil) {
+            this.ejectedUntil = ejectedUntil;
+        }
+
+    }
+
+}
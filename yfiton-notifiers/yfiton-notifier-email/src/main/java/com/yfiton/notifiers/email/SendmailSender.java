@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import com.google.common.base.Splitter;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands messages over to a local mail transfer agent by piping them to a
+ * sendmail compatible command (e.g. Postfix, Exim or msmtp). Once the command
+ * has exited, queuing and delivery are the responsibility of the agent.
+ *
+ * @author lpellegr
+ */
+final class SendmailSender implements MessageSender {
+
+    private final List<String> command;
+
+    /**
+     * Creates a sender.
+     *
+     * @param command the sendmail command line, arguments being separated by whitespaces.
+     */
+    SendmailSender(String command) {
+        this.command = Splitter.onPattern("\\s+").omitEmptyStrings().splitToList(command);
+    }
+
+    @Override
+    public void send(MimeMessage message, Address[] recipients) throws MessagingException {
+        List<String> commandLine = new ArrayList<>(command.size() + recipients.length + 4);
+        commandLine.addAll(command);
+        // lines with a single dot do not end the message, envelope sender and recipients are explicit
+        commandLine.add("-i");
+        commandLine.add("-f");
+        commandLine.add(MessageSender.getEnvelopeSender(message));
+        commandLine.add("--");
+
+        for (Address recipient : recipients) {
+            commandLine.add(((InternetAddress) recipient).getAddress());
+        }
+
+        Path output;
+
+        try {
+            // a file rather than a pipe, the command must never block on its output while we write its input
+            output = Files.createTempFile("yfiton-sendmail", ".log");
+        } catch (IOException e) {
+            throw new MessagingException("Cannot create output file for " + command.get(0), e);
+        }
+
+        try {
+            run(commandLine, message, output);
+        } finally {
+            try {
+                Files.deleteIfExists(output);
+            } catch (IOException e) {
+                // ignore, the file is in the temporary directory
+            }
+        }
+    }
+
+    private void run(List<String> commandLine, MimeMessage message, Path output) throws MessagingException {
+        Process process;
+
+        try {
+            process = new ProcessBuilder(commandLine)
+                    .redirectErrorStream(true)
+                    .redirectOutput(output.toFile())
+                    .start();
+        } catch (IOException e) {
+            throw new MessagingException("Cannot run " + command.get(0), e);
+        }
+
+        IOException writeFailure = null;
+
+        try (OutputStream in = new BufferedOutputStream(process.getOutputStream())) {
+            message.writeTo(in, new String[]{"Bcc", "Content-Length"});
+        } catch (IOException e) {
+            // the command has exited early, its output explains why
+            writeFailure = e;
+        }
+
+        try {
+            int exitValue = process.waitFor();
+
+            if (exitValue != 0 || writeFailure != null) {
+                String text = new String(Files.readAllBytes(output), StandardCharsets.UTF_8).trim();
+
+                throw new MessagingException(
+                        command.get(0) + " has failed with exit value " + exitValue
+                                + (text.isEmpty() ? "" : ": " + text), writeFailure);
+            }
+        } catch (IOException e) {
+            throw new MessagingException("Cannot read output of " + command.get(0), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroy();
+            throw new MessagingException("Interrupted while waiting for " + command.get(0), e);
+        }
+    }
+
+}
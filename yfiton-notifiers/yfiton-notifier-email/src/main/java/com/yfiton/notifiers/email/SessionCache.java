@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSortedMap;
+
+import javax.mail.Session;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Bounded cache of JavaMail sessions keyed by their effective properties.
+ * Creating a session looks up and parses provider resources from the
+ * classpath, which is not required when sending again through the same
+ * server with the same settings.
+ * <p/>
+ * Properties are normalized before lookup: values are compared by their
+ * string representation, which is how JavaMail reads them. A change in the
+ * configuration produces a different key and thus a new session, while
+ * sessions that are no longer used are evicted once the cache is full.
+ *
+ * @author lpellegr
+ */
+public final class SessionCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 16;
+
+    private final Cache<Map<String, String>, Session> sessions;
+
+    private static final class LazyHolder {
+
+        private static final SessionCache INSTANCE = new SessionCache(DEFAULT_MAXIMUM_SIZE);
+
+    }
+
+    public SessionCache(int maximumSize) {
+        this.sessions = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    public static SessionCache getDefault() {
+        return LazyHolder.INSTANCE;
+    }
+
+    /**
+     * Returns a session for the specified properties, creating it if no
+     * session with equivalent properties is cached.
+     *
+     * @param properties the session properties.
+     * @return a session for the specified properties.
+     */
+    public Session get(Properties properties) {
+        Map<String, String> key = normalize(properties);
+
+        try {
+            return sessions.get(key, () -> {
+                Properties sessionProperties = new Properties();
+                sessionProperties.putAll(key);
+                return Session.getInstance(sessionProperties);
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public void invalidateAll() {
+        sessions.invalidateAll();
+    }
+
+    public long size() {
+        return sessions.size();
+    }
+
+    static Map<String, String> normalize(Properties properties) {
+        ImmutableSortedMap.Builder<String, String> result = ImmutableSortedMap.naturalOrder();
+
+        for (String name : properties.stringPropertyNames()) {
+            result.put(name, properties.getProperty(name));
+        }
+
+        // stringPropertyNames skips entries whose key or value is not a string
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            if (!(entry.getKey() instanceof String) || !(entry.getValue() instanceof String)) {
+                result.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+            }
+        }
+
+        return result.build();
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import com.google.common.base.Splitter;
+import com.yfiton.api.exceptions.ParameterException;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * SMTP relay defined by a host, a port and a weight. The textual form is
+ * {@code host[:port][/weight]}, for example {@code smtp1.company.com:587/3}.
+ *
+ * @author lpellegr
+ */
+final class SmtpRelay {
+
+    private final String host;
+
+    private final int port;
+
+    private final int weight;
+
+    SmtpRelay(String host, int port, int weight) {
+        this.host = host;
+        this.port = port;
+        this.weight = weight;
+    }
+
+    /**
+     * Parses a relay definition.
+     *
+     * @param value       the relay definition.
+     * @param defaultPort the port to use if the definition does not specify one.
+     * @return the relay defined.
+     * @throws ParameterException if the definition is invalid.
+     */
+    static SmtpRelay parse(String value, int defaultPort) throws ParameterException {
+        List<String> hostAndWeight = Splitter.on('/').trimResults().splitToList(value.trim());
+
+        if (hostAndWeight.size() > 2 || hostAndWeight.get(0).isEmpty()) {
+            throw new ParameterException("Invalid relay definition: " + value);
+        }
+
+        List<String> hostAndPort = Splitter.on(':').trimResults().splitToList(hostAndWeight.get(0));
+
+        if (hostAndPort.size() > 2 || hostAndPort.get(0).isEmpty()) {
+            throw new ParameterException("Invalid relay definition: " + value);
+        }
+
+        int port = hostAndPort.size() == 2 ? parseInt(hostAndPort.get(1), value) : defaultPort;
+        int weight = hostAndWeight.size() == 2 ? parseInt(hostAndWeight.get(1), value) : 1;
+
+        if (port < 1 || port > 65535 || weight < 1) {
+            throw new ParameterException("Invalid relay definition: " + value);
+        }
+
+        return new SmtpRelay(hostAndPort.get(0), port, weight);
+    }
+
+    private static int parseInt(String value, String definition) throws ParameterException {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ParameterException("Invalid relay definition: " + definition);
+        }
+    }
+
+    String getHost() {
+        return host;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    int getWeight() {
+        return weight;
+    }
+
+    String getHostAndPort() {
+        return host + ":" + port;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        SmtpRelay that = (SmtpRelay) o;
+        return port == that.port && weight == that.weight && host.equals(that.host);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(host, port, weight);
+    }
+
+    @Override
+    public String toString() {
+        return getHostAndPort() + "/" + weight;
+    }
+
+}
@@ -0,0 +1,503 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.mail.*;
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool of connected and authenticated SMTP transports. Connections are keyed
+ * by host, port, credentials and session properties so that a connection is
+ * only reused for messages that would have opened an identical one. Passwords
+ * are not kept, only a salted digest of them.
+ * <p/>
+ * Idle connections are checked with a NOOP command before being reused and
+ * closed once they have been idle for too long. The number of connections
+ * opened to a same host and port is capped: when the cap is reached, idle
+ * connections to that host opened for other users are closed first, then
+ * callers wait for a connection to be released.
+ *
+ * @author lpellegr
+ */
+public final class SmtpTransportPool implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SmtpTransportPool.class);
+
+    public static final int DEFAULT_MAX_PER_HOST = 4;
+
+    public static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    public static final long DEFAULT_BORROW_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private final int maxPerHost;
+
+    private final long idleTimeoutInNanos;
+
+    private final long borrowTimeoutInNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition released = lock.newCondition();
+
+    // most recently used connections first
+    private final Map<Key, Deque<Connection>> idleConnections = new HashMap<>();
+
+    // host:port -> number of open connections, idle or borrowed
+    private final Map<String, Integer> openConnections = new HashMap<>();
+
+    private final ScheduledExecutorService evictor;
+
+    private boolean closed;
+
+    private static final class LazyHolder {
+
+        private static final SmtpTransportPool INSTANCE = createDefault();
+
+        private static SmtpTransportPool createDefault() {
+            SmtpTransportPool pool = new SmtpTransportPool(
+                    DEFAULT_MAX_PER_HOST, DEFAULT_IDLE_TIMEOUT, DEFAULT_BORROW_TIMEOUT, TimeUnit.MILLISECONDS);
+
+            Runtime.getRuntime().addShutdownHook(new Thread(pool::close, "yfiton-smtp-pool-shutdown"));
+
+            return pool;
+        }
+
+    }
+
+    public SmtpTransportPool(int maxPerHost, long idleTimeout, long borrowTimeout, TimeUnit timeUnit) {
+        if (maxPerHost < 1) {
+            throw new IllegalArgumentException("Invalid maximum number of connections per host: " + maxPerHost);
+        }
+
+        this.maxPerHost = maxPerHost;
+        this.idleTimeoutInNanos = timeUnit.toNanos(idleTimeout);
+        this.borrowTimeoutInNanos = timeUnit.toNanos(borrowTimeout);
+
+        long evictionPeriod = Math.max(1, TimeUnit.NANOSECONDS.toMillis(idleTimeoutInNanos) / 2);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("yfiton-smtp-evictor-%d").build());
+        this.evictor.scheduleWithFixedDelay(this::evictIdleConnections, evictionPeriod, evictionPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    public static SmtpTransportPool getDefault() {
+        return LazyHolder.INSTANCE;
+    }
+
+    /**
+     * Sends the specified message to all its recipients with a pooled
+     * connection. A message that fails on a reused connection because the
+     * server has dropped it is sent again once with a new connection.
+     *
+     * @param session  the session defining how to connect to the server.
+     * @param username the user to authenticate as, or {@code null}.
+     * @param password the password of the user, or {@code null}.
+     * @param message  the message to send.
+     * @throws MessagingException if the message cannot be sent.
+     */
+    public void send(Session session, String username, String password, Message message) throws MessagingException {
+        send(session, username, password, message, message.getAllRecipients());
+    }
+
+    /**
+     * Sends the specified message to the specified envelope recipients with a
+     * pooled connection.
+     *
+     * @param session    the session defining how to connect to the server.
+     * @param username   the user to authenticate as, or {@code null}.
+     * @param password   the password of the user, or {@code null}.
+     * @param message    the message to send.
+     * @param recipients the envelope recipients.
+     * @throws PoolExhaustedException if no connection becomes available before the borrow timeout.
+     * @throws MessagingException     if the message cannot be sent.
+     * @see #send(Session, String, String, Message)
+     */
+    public void send(Session session, String username, String password, Message message, Address[] recipients) throws MessagingException {
+        send(session, username, password, message, recipients, borrowTimeoutInNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sends the specified message to the specified envelope recipients with a
+     * pooled connection, waiting at most the specified time for a connection
+     * to become available. A timeout of {@code 0} fails immediately when all
+     * connections to the host are in use.
+     *
+     * @param session       the session defining how to connect to the server.
+     * @param username      the user to authenticate as, or {@code null}.
+     * @param password      the password of the user, or {@code null}.
+     * @param message       the message to send.
+     * @param recipients    the envelope recipients.
+     * @param borrowTimeout the maximum time to wait for a connection.
+     * @param unit          the unit of {@code borrowTimeout}.
+     * @throws PoolExhaustedException if no connection becomes available before the borrow timeout.
+     * @throws MessagingException     if the message cannot be sent.
+     */
+    public void send(Session session, String username, String password, Message message, Address[] recipients,
+                     long borrowTimeout, TimeUnit unit) throws MessagingException {
+        while (true) {
+            Connection connection = borrow(session, username, password, unit.toNanos(borrowTimeout));
+
+            try {
+                connection.transport.sendMessage(message, recipients);
+                release(connection);
+                return;
+            } catch (SendFailedException e) {
+                // rejected recipients, the connection is still usable
+                release(connection);
+                throw e;
+            } catch (MessagingException | IllegalStateException e) {
+                invalidate(connection);
+
+                if (!connection.reused) {
+                    throw e;
+                }
+
+                log.debug("Pooled connection to {} failed, retrying with a new connection: {}", connection.key.hostAndPort, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns a connected transport for the specified session and user. The
+     * transport must be given back with {@link #release(Connection)} or
+     * {@link #invalidate(Connection)}.
+     */
+    Connection borrow(Session session, String username, String password) throws MessagingException {
+        return borrow(session, username, password, borrowTimeoutInNanos);
+    }
+
+    private Connection borrow(Session session, String username, String password, long timeoutInNanos) throws MessagingException {
+        Key key = new Key(session, username, password);
+        long deadline = System.nanoTime() + timeoutInNanos;
+
+        while (true) {
+            Connection candidate = null;
+            List<Connection> evicted = new ArrayList<>(1);
+
+            lock.lock();
+            try {
+                while (candidate == null) {
+                    if (closed) {
+                        throw new IllegalStateException("SMTP transport pool closed");
+                    }
+
+                    Deque<Connection> idle = idleConnections.get(key);
+
+                    if (idle != null && !idle.isEmpty()) {
+                        candidate = idle.pollFirst();
+                    } else if (getOpenConnections(key.hostAndPort) < maxPerHost) {
+                        openConnections.merge(key.hostAndPort, 1, Integer::sum);
+                        break;
+                    } else {
+                        Connection other = pollIdleConnection(key.hostAndPort);
+
+                        if (other != null) {
+                            // frees a slot used by another user on the same host
+                            decrementOpenConnections(other.key.hostAndPort);
+                            evicted.add(other);
+                            continue;
+                        }
+
+                        long remaining = deadline - System.nanoTime();
+
+                        if (remaining <= 0) {
+                            throw new PoolExhaustedException(
+                                    "No SMTP connection to " + key.hostAndPort + " available after "
+                                            + TimeUnit.NANOSECONDS.toMillis(timeoutInNanos) + " ms");
+                        }
+
+                        try {
+                            released.awaitNanos(remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new MessagingException("Interrupted while waiting for an SMTP connection", e);
+                        }
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            evicted.forEach(Connection::close);
+
+            if (candidate == null) {
+                return connect(key, session, username, password);
+            }
+
+            // health check: isConnected sends a NOOP command to SMTP servers
+            if (candidate.transport.isConnected()) {
+                candidate.reused = true;
+                return candidate;
+            }
+
+            log.debug("Discarding stale connection to {}", key.hostAndPort);
+            invalidate(candidate);
+        }
+    }
+
+    private Connection connect(Key key, Session session, String username, String password) throws MessagingException {
+        Transport transport = null;
+
+        try {
+            transport = session.getTransport("smtp");
+
+            log.debug("Connecting to " + key.hostAndPort + " using SMTP protocol");
+            transport.connect(username, password);
+
+            return new Connection(key, transport);
+        } catch (MessagingException | RuntimeException e) {
+            lock.lock();
+            try {
+                decrementOpenConnections(key.hostAndPort);
+            } finally {
+                lock.unlock();
+            }
+
+            if (transport != null) {
+                new Connection(key, transport).close();
+            }
+
+            throw e;
+        }
+    }
+
+    void release(Connection connection) {
+        connection.lastUsed = System.nanoTime();
+
+        lock.lock();
+        try {
+            if (!closed) {
+                idleConnections.computeIfAbsent(connection.key, k -> new ArrayDeque<>()).addFirst(connection);
+                released.signalAll();
+                return;
+            }
+
+            decrementOpenConnections(connection.key.hostAndPort);
+        } finally {
+            lock.unlock();
+        }
+
+        connection.close();
+    }
+
+    void invalidate(Connection connection) {
+        lock.lock();
+        try {
+            decrementOpenConnections(connection.key.hostAndPort);
+        } finally {
+            lock.unlock();
+        }
+
+        connection.close();
+    }
+
+    private void evictIdleConnections() {
+        List<Connection> evicted = new ArrayList<>();
+        long now = System.nanoTime();
+
+        lock.lock();
+        try {
+            for (Iterator<Deque<Connection>> it = idleConnections.values().iterator(); it.hasNext(); ) {
+                Deque<Connection> idle = it.next();
+
+                // least recently used connections are at the end
+                while (!idle.isEmpty() && now - idle.peekLast().lastUsed >= idleTimeoutInNanos) {
+                    Connection connection = idle.pollLast();
+                    decrementOpenConnections(connection.key.hostAndPort);
+                    evicted.add(connection);
+                }
+
+                if (idle.isEmpty()) {
+                    it.remove();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (!evicted.isEmpty()) {
+            log.debug("Closing {} idle SMTP connection(s)", evicted.size());
+            evicted.forEach(Connection::close);
+        }
+    }
+
+    private Connection pollIdleConnection(String hostAndPort) {
+        for (Deque<Connection> idle : idleConnections.values()) {
+            if (!idle.isEmpty() && idle.peekLast().key.hostAndPort.equals(hostAndPort)) {
+                return idle.pollLast();
+            }
+        }
+
+        return null;
+    }
+
+    private int getOpenConnections(String hostAndPort) {
+        return openConnections.getOrDefault(hostAndPort, 0);
+    }
+
+    private void decrementOpenConnections(String hostAndPort) {
+        openConnections.computeIfPresent(hostAndPort, (k, count) -> count > 1 ? count - 1 : null);
+        released.signalAll();
+    }
+
+    /**
+     * Returns the number of connections currently opened to the specified
+     * host and port, either idle or in use.
+     *
+     * @param host the SMTP server host.
+     * @param port the SMTP server port.
+     * @return the number of open connections.
+     */
+    public int getOpenConnections(String host, int port) {
+        lock.lock();
+        try {
+            return getOpenConnections(host + ":" + port);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        List<Connection> connections = new ArrayList<>();
+
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+
+            for (Deque<Connection> idle : idleConnections.values()) {
+                for (Connection connection : idle) {
+                    decrementOpenConnections(connection.key.hostAndPort);
+                    connections.add(connection);
+                }
+            }
+
+            idleConnections.clear();
+        } finally {
+            lock.unlock();
+        }
+
+        evictor.shutdownNow();
+        connections.forEach(Connection::close);
+    }
+
+    static final class Connection {
+
+        private final Key key;
+
+        final Transport transport;
+
+        private volatile long lastUsed;
+
+        // whether the connection has already been used to send a message
+        private volatile boolean reused;
+
+        private Connection(Key key, Transport transport) {
+            this.key = key;
+            this.transport = transport;
+            this.lastUsed = System.nanoTime();
+        }
+
+        private void close() {
+            try {
+                transport.close();
+            } catch (MessagingException | RuntimeException e) {
+                log.debug("Cannot close connection to {}: {}", key.hostAndPort, e.getMessage());
+            }
+        }
+
+    }
+
+    private static final class Key {
+
+        // keyed with a random secret so that digests cannot be precomputed
+        private static final HashFunction PASSWORD_DIGEST = Hashing.hmacSha256(createSecret());
+
+        private final String hostAndPort;
+
+        private final String username;
+
+        // a connection authenticated with another password must not be reused
+        private final HashCode passwordDigest;
+
+        private final Map<Object, Object> properties;
+
+        private Key(Session session, String username, String password) {
+            Properties properties = session.getProperties();
+
+            this.hostAndPort = properties.getProperty("mail.smtp.host", "localhost") + ":" + getPort(properties);
+            this.username = username;
+            this.passwordDigest = password == null ? null : PASSWORD_DIGEST.hashString(password, StandardCharsets.UTF_8);
+            this.properties = new HashMap<>(properties);
+        }
+
+        private static byte[] createSecret() {
+            byte[] result = new byte[32];
+            new SecureRandom().nextBytes(result);
+            return result;
+        }
+
+        private static String getPort(Properties properties) {
+            Object port = properties.get("mail.smtp.port");
+            return port == null ? "25" : port.toString();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            Key key = (Key) o;
+
+            return hostAndPort.equals(key.hostAndPort)
+                    && Objects.equals(username, key.username)
+                    && Objects.equals(passwordDigest, key.passwordDigest)
+                    && properties.equals(key.properties);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hostAndPort, username, passwordDigest, properties);
+        }
+
+    }
+
+}
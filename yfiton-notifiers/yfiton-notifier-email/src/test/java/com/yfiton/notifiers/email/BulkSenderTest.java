@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import org.junit.Test;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Unit tests associated to {@link BulkSender}.
+ *
+ * @author lpellegr
+ */
+public class BulkSenderTest {
+
+    private final Session session = Session.getInstance(new Properties());
+
+    @Test
+    public void testRecipientsSplitIntoEnvelopes() throws MessagingException, InterruptedException {
+        RecordingSender sender = new RecordingSender(0);
+
+        BulkSender.Result result = new BulkSender(session, sender, 100, 4).send(createMessage(), recipients(250));
+
+        assertThat(result.getEnvelopes()).isEqualTo(3);
+        assertThat(result.getSentRecipients()).isEqualTo(250);
+        assertThat(result.getFailedRecipients()).isEqualTo(0);
+
+        List<Integer> sizes = sender.envelopes.stream().map(envelope -> envelope.length).sorted().collect(Collectors.toList());
+        assertThat(sizes).containsExactly(50, 100, 100).inOrder();
+
+        Set<String> addresses = sender.envelopes.stream()
+                .flatMap(envelope -> IntStream.range(0, envelope.length).mapToObj(i -> ((InternetAddress) envelope[i]).getAddress()))
+                .collect(Collectors.toSet());
+        assertThat(addresses).hasSize(250);
+    }
+
+    @Test
+    public void testEnvelopesSentInParallelOnDistinctMessages() throws MessagingException, InterruptedException {
+        RecordingSender sender = new RecordingSender(50);
+
+        BulkSender.Result result = new BulkSender(session, sender, 10, 4).send(createMessage(), recipients(200));
+
+        assertThat(result.getEnvelopes()).isEqualTo(20);
+        assertThat(sender.maxConcurrentSends.get()).isGreaterThan(1);
+        assertThat(sender.maxConcurrentSends.get()).isAtMost(4);
+
+        // envelopes sent concurrently never share a message instance
+        Set<MimeMessage> messages = Collections.newSetFromMap(new IdentityHashMap<>());
+        messages.addAll(sender.messages);
+        assertThat(messages).hasSize(20);
+    }
+
+    @Test
+    public void testBlindCopiesNotRevealed() throws MessagingException, InterruptedException {
+        RecordingSender sender = new RecordingSender(0);
+
+        MimeMessage message = createMessage();
+        message.setRecipients(MimeMessage.RecipientType.BCC, "secret@company.com");
+
+        new BulkSender(session, sender, 100, 1).send(message, recipients(1));
+
+        MimeMessage sent = sender.messages.get(0);
+        assertThat(sent.getHeader("Bcc")).isNull();
+        assertThat(sent.getSubject()).isEqualTo("Build failed");
+    }
+
+    @Test
+    public void testFailuresCounted() throws MessagingException, InterruptedException {
+        MessageSender sender = (message, recipients) -> {
+            if (((InternetAddress) recipients[0]).getAddress().equals("user0@company.com")) {
+                // the first address of the envelope is rejected, others are sent as with mail.smtp.sendpartial
+                throw new SendFailedException("Invalid addresses", null,
+                        new Address[]{recipients[1], recipients[2]}, new Address[0], new Address[]{recipients[0]});
+            }
+
+            throw new MessagingException("Connection refused");
+        };
+
+        List<String> recipients = new ArrayList<>();
+        recipients.add("invalid address");
+        recipients(6).forEachRemaining(recipients::add);
+
+        BulkSender.Result result = new BulkSender(session, sender, 3, 1).send(createMessage(), recipients.iterator());
+
+        assertThat(result.getSentRecipients()).isEqualTo(2);
+        assertThat(result.getFailedRecipients()).isEqualTo(5);
+        assertThat(result.getErrors()).hasSize(3);
+    }
+
+    @Test
+    public void testRefusedRecipientAbortsEnvelope() throws MessagingException, InterruptedException {
+        MessageSender sender = (message, recipients) -> {
+            if (((InternetAddress) recipients[0]).getAddress().equals("user0@company.com")) {
+                // one refused recipient, the envelope is not sent to the valid ones
+                throw new SendFailedException("Invalid addresses", null, new Address[0],
+                        new Address[]{recipients[1], recipients[2]}, new Address[]{recipients[0]});
+            }
+        };
+
+        BulkSender.Result result = new BulkSender(session, sender, 3, 1).send(createMessage(), recipients(6));
+
+        assertThat(result.getSentRecipients()).isEqualTo(3);
+        assertThat(result.getFailedRecipients()).isEqualTo(3);
+        assertThat(result.getErrors()).containsExactly("Invalid addresses");
+    }
+
+    @Test(timeout = 30000)
+    public void testInterruptionStopsPendingEnvelopes() throws Exception {
+        RecordingSender sender = new RecordingSender(TimeUnit.MINUTES.toMillis(1));
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread caller = new Thread(() -> {
+            try {
+                new BulkSender(session, sender, 100, 1).send(createMessage(), recipients(1000));
+            } catch (MessagingException | InterruptedException e) {
+                failure.set(e);
+            }
+        });
+        caller.start();
+
+        while (sender.concurrentSends.get() == 0) {
+            Thread.sleep(10);
+        }
+
+        caller.interrupt();
+        caller.join();
+
+        assertThat(failure.get()).isInstanceOf(InterruptedException.class);
+        // no envelope is still reading the spooled message once send has returned
+        assertThat(sender.concurrentSends.get()).isEqualTo(0);
+    }
+
+    private MimeMessage createMessage() throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress("alerts@company.com"));
+        message.setRecipients(MimeMessage.RecipientType.TO, "team@company.com");
+        message.setSubject("Build failed");
+        message.setText("Build #42 has failed!");
+        return message;
+    }
+
+    private static Iterator<String> recipients(int count) {
+        return IntStream.range(0, count).mapToObj(i -> "user" + i + "@company.com").iterator();
+    }
+
+    private static final class RecordingSender implements MessageSender {
+
+        private final long latencyInMillis;
+
+        private final List<Address[]> envelopes = new CopyOnWriteArrayList<>();
+
+        private final List<MimeMessage> messages = new CopyOnWriteArrayList<>();
+
+        private final AtomicInteger concurrentSends = new AtomicInteger();
+
+        private final AtomicInteger maxConcurrentSends = new AtomicInteger();
+
+        private RecordingSender(long latencyInMillis) {
+            this.latencyInMillis = latencyInMillis;
+        }
+
+        @Override
+        public void send(MimeMessage message, Address[] recipients) throws MessagingException {
+            int concurrent = concurrentSends.incrementAndGet();
+            maxConcurrentSends.accumulateAndGet(concurrent, Math::max);
+
+            try {
+                Thread.sleep(latencyInMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrentSends.decrementAndGet();
+            }
+
+            envelopes.add(recipients);
+            messages.add(message);
+        }
+
+    }
+
+}
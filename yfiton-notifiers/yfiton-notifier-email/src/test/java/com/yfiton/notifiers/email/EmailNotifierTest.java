@@ -16,126 +16,198 @@
 
 package com.yfiton.notifiers.email;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.yfiton.api.exceptions.ParameterException;
+import com.yfiton.api.NotificationOutcome;
+import com.yfiton.api.exceptions.NotificationException;
+import com.yfiton.api.exceptions.YfitonException;
 import com.yfiton.core.Yfiton;
 import com.yfiton.core.YfitonBuilder;
+import com.yfiton.testing.smtp.ReceivedMessage;
+import com.yfiton.testing.smtp.SmtpSink;
 import org.apache.commons.configuration.ConfigurationException;
-import org.junit.Ignore;
+import org.junit.After;
+import org.junit.Rule;
 import org.junit.Test;
-
-import javax.mail.*;
+import org.junit.rules.TemporaryFolder;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Properties;
-import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.google.common.truth.Truth.assertThat;
 
 /**
- * System test that aims to check that email notifier is able to send notifications
- * using real services.
+ * Tests associated to {@link EmailNotifier}. Messages are sent to an
+ * embedded SMTP server.
  *
  * @author Laurent Pellegrino
  */
-@Ignore
 public class EmailNotifierTest {
 
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private SmtpSink sink;
+
+    @After
+    public void tearDown() throws IOException {
+        if (sink != null) {
+            sink.close();
+        }
+    }
+
     @Test
-    public void testFree() throws MessagingException, ConfigurationException, ParameterException {
-        testSendEmail(
-                "smtp.free.fr", "imap.free.fr",
-                System.getenv("FREE_EMAIL"),
-                System.getenv("FREE_USERNAME"),
-                System.getenv("FREE_PASSWORD"));
+    public void testSend() throws YfitonException, ConfigurationException, IOException, InterruptedException, TimeoutException, MessagingException {
+        sink = new SmtpSink.Builder().start();
+
+        createYfiton().send(message().put("cc", "bob@company.com").build());
+
+        ReceivedMessage received = sink.awaitMessages(1, 5, TimeUnit.SECONDS).get(0);
+
+        assertThat(received.getSender()).isEqualTo("alerts@company.com");
+        assertThat(received.getRecipients()).containsExactly("ann@company.com", "bob@company.com");
+        assertThat(received.isSecure()).isFalse();
+        assertThat(parse(received).getSubject()).isEqualTo("Build failed");
     }
 
     @Test
-    public void testGmail() throws MessagingException, ConfigurationException, ParameterException {
-        // https://www.google.com/settings/security/lesssecureapps
-        testSendEmail(
-                "gmail", "imap.gmail.com",
-                System.getenv("GMAIL_EMAIL"),
-                System.getenv("GMAIL_USERNAME"),
-                System.getenv("GMAIL_PASSWORD"));
+    public void testStartTlsAndAuthentication() throws YfitonException, ConfigurationException, IOException, InterruptedException, TimeoutException {
+        sink = new SmtpSink.Builder().setStartTls(true).setCredentials("ann", "secret").start();
+
+        createYfiton().send(authenticated("secret").build());
+
+        ReceivedMessage received = sink.awaitMessages(1, 5, TimeUnit.SECONDS).get(0);
+
+        assertThat(received.isSecure()).isTrue();
+        assertThat(received.getUsername()).isEqualTo(Optional.of("ann"));
+    }
+
+    @Test(expected = NotificationException.class)
+    public void testInvalidCredentials() throws YfitonException, ConfigurationException, IOException {
+        sink = new SmtpSink.Builder().setStartTls(true).setCredentials("ann", "secret").start();
+
+        createYfiton().send(authenticated("wrong").build());
     }
 
     @Test
-    public void testOutlook() throws MessagingException, ConfigurationException, ParameterException {
-        // http://pchelp.ricmedia.com/how-to-fix-550-5-3-4-requested-action-not-taken-error/
-        testSendEmail(
-                "outlook", "imap-mail.outlook.com",
-                System.getenv("OUTLOOK_EMAIL"),
-                System.getenv("OUTLOOK_USERNAME"),
-                System.getenv("OUTLOOK_PASSWORD"));
+    public void testConnectionReused() throws YfitonException, ConfigurationException, IOException, InterruptedException, TimeoutException {
+        sink = new SmtpSink.Builder().setCredentials("ann", "secret").start();
+
+        Yfiton yfiton = createYfiton();
+
+        for (int i = 0; i < 5; i++) {
+            yfiton.send(authenticated("secret").build());
+        }
+
+        sink.awaitMessages(5, 5, TimeUnit.SECONDS);
+
+        assertThat(sink.getConnectionCount()).isEqualTo(1);
     }
 
+    @Test
+    public void testBatch() throws YfitonException, ConfigurationException, IOException, InterruptedException, TimeoutException {
+        sink = new SmtpSink.Builder().start();
 
-    private void testSendEmail(String smtpFqdn, String imapFqdn, String email, String username, String password) throws ConfigurationException, ParameterException, MessagingException {
-        String subject = createSubject();
+        List<Map<String, String>> batch = new ArrayList<>();
 
-        sendEmail(smtpFqdn, email, username, password, subject);
+        for (int i = 0; i < 3; i++) {
+            batch.add(message().build());
+        }
+
+        List<NotificationOutcome> outcomes = createYfiton().notifyAll(batch);
+
+        assertThat(outcomes).hasSize(3);
+        assertThat(outcomes.stream().allMatch(NotificationOutcome::isSuccess)).isTrue();
+        assertThat(sink.awaitMessages(3, 5, TimeUnit.SECONDS)).hasSize(3);
+    }
+
+    @Test
+    public void testEnvelopesSplit() throws YfitonException, ConfigurationException, IOException, InterruptedException, TimeoutException {
+        sink = new SmtpSink.Builder().start();
+
+        String recipients = IntStream.range(0, 250)
+                .mapToObj(i -> "user" + i + "@company.com")
+                .collect(Collectors.joining(","));
+
+        createYfiton().send(parameters().put("to", recipients).put("auth", "false").put("envelopeSize", "100").put("connections", "2").build());
+
+        List<ReceivedMessage> received = sink.awaitMessages(3, 5, TimeUnit.SECONDS);
+
+        assertThat(received.stream().map(message -> message.getRecipients().size()).collect(Collectors.toList()))
+                .containsExactly(100, 100, 50);
+        assertThat(sink.getConnectionCount()).isAtMost(2);
+    }
+
+    @Test
+    public void testRecipientsFile() throws YfitonException, ConfigurationException, IOException, InterruptedException, TimeoutException, MessagingException {
+        sink = new SmtpSink.Builder().start();
+
+        List<String> lines = new ArrayList<>();
+        lines.add("# release announcements");
+        lines.add("");
+        IntStream.range(0, 150).mapToObj(i -> " user" + i + "@company.com ").forEach(lines::add);
+
+        Path recipientsFile = folder.newFile("recipients.txt").toPath();
+        Files.write(recipientsFile, lines, StandardCharsets.UTF_8);
 
-        assertThat(checkEmailReception(subject, imapFqdn, username, password)).isTrue();
+        createYfiton().send(parameters()
+                .put("recipientsFile", recipientsFile.toString()).put("auth", "false").put("envelopeSize", "100").build());
+
+        List<ReceivedMessage> received = sink.awaitMessages(2, 5, TimeUnit.SECONDS);
+
+        assertThat(received.stream().map(message -> message.getRecipients().size()).collect(Collectors.toList()))
+                .containsExactly(100, 50);
+        assertThat(received.stream().flatMap(message -> message.getRecipients().stream()).collect(Collectors.toSet()))
+                .hasSize(150);
+
+        // addresses read from the file do not appear in headers
+        assertThat(parse(received.get(0)).getHeader("To", ",")).doesNotContain("user");
     }
 
-    private String createSubject() {
-        String uuid = UUID.randomUUID().toString();
-        return "[Yfiton-system-test] " + uuid;
+    private Yfiton createYfiton() throws ConfigurationException, YfitonException {
+        return new YfitonBuilder(new EmailNotifier()).displayStackTraces().build();
     }
 
-    private void sendEmail(String smtpFqdn, String email, String username, String password, String subject) throws ConfigurationException, ParameterException {
-        ImmutableMap.Builder<String, String> builder = new ImmutableMap.Builder();
-        builder.put("host", smtpFqdn);
-        builder.put("username", username);
-        builder.put("password", password);
-        builder.put("from", "noreply@yfiton.com");
-        builder.put("to", email);
-        builder.put("subject", subject);
-        builder.put("body", "Yfiton auto generated email for testing purposes.");
-
-        sendEmail(builder.build());
+    private ImmutableMap.Builder<String, String> parameters() {
+        return ImmutableMap.<String, String>builder()
+                .put("host", sink.getHost())
+                .put("port", Integer.toString(sink.getPort()))
+                .put("from", "alerts@company.com")
+                .put("subject", "Build failed")
+                .put("body", "See attached logs.");
     }
 
-    private void sendEmail(Map<String, String> properties) throws ConfigurationException, ParameterException {
-        Yfiton yfiton = new YfitonBuilder(new EmailNotifier()).displayStackTraces().build();
-        yfiton.notify(properties);
+    private ImmutableMap.Builder<String, String> message() {
+        return parameters()
+                .put("to", "ann@company.com")
+                .put("auth", "false");
     }
 
-    private boolean checkEmailReception(String subject, String host, String username, String password) throws MessagingException {
-        Properties properties = new Properties();
-        properties.put("mail.store.protocol", "imaps");
-        Session session = Session.getInstance(properties);
-
-        Store store = null;
-
-        try {
-            store = session.getStore("imaps");
-            store.connect(host, username, password);
-
-            Folder inbox = store.getFolder("INBOX");
-            inbox.open(Folder.READ_WRITE);
-
-            Message[] messages = inbox.getMessages();
-
-            for (Message message : messages) {
-                if (message.getSubject().equals(subject)) {
-                    message.setFlag(Flags.Flag.DELETED, true);
-                    return true;
-                }
-            }
-
-            inbox.close(true);
-        } finally {
-            try {
-                if (store != null) {
-                    store.close();
-                }
-            } catch (MessagingException e) {
-                e.printStackTrace();
-            }
-        }
+    private ImmutableMap.Builder<String, String> authenticated(String password) {
+        return parameters()
+                .put("to", "ann@company.com")
+                .put("username", "ann")
+                .put("password", password)
+                .put("starttls.enable", "true");
+    }
 
-        return false;
+    private static MimeMessage parse(ReceivedMessage message) throws MessagingException {
+        return new MimeMessage(Session.getInstance(new Properties()), new ByteArrayInputStream(message.getData()));
     }
 
 }
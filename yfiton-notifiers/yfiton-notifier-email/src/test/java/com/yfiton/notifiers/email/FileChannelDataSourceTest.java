@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.mail.MessagingException;
+import javax.mail.Part;
+import javax.mail.Session;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+import javax.mail.util.SharedFileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Unit tests associated to {@link FileChannelDataSource}.
+ *
+ * @author lpellegr
+ */
+public class FileChannelDataSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDataSource() throws IOException {
+        Path file = createFile("build.log", 1024);
+
+        FileChannelDataSource dataSource = new FileChannelDataSource(file);
+
+        assertThat(dataSource.getName()).isEqualTo("build.log");
+        assertThat(dataSource.getContentType()).isNotEmpty();
+
+        // content can be read several times
+        for (int i = 0; i < 2; i++) {
+            try (InputStream in = dataSource.getInputStream()) {
+                assertThat(ByteStreams.toByteArray(in)).isEqualTo(Files.readAllBytes(file));
+            }
+        }
+    }
+
+    @Test
+    public void testAttachmentRoundTrip() throws IOException, MessagingException {
+        Path file = createFile("heap.bin", 3 * 1024 * 1024 + 17);
+
+        MimeBodyPart part = EmailNotifier.createAttachmentPart(file);
+
+        MimeMultipart multipart = new MimeMultipart();
+        multipart.addBodyPart(part);
+
+        Session session = Session.getInstance(new Properties());
+
+        MimeMessage message = new MimeMessage(session);
+        message.setContent(multipart);
+        message.saveChanges();
+
+        assertThat(part.getEncoding()).isEqualTo("base64");
+
+        Path encoded = folder.newFile("message.eml").toPath();
+
+        try (OutputStream out = Files.newOutputStream(encoded)) {
+            message.writeTo(out);
+        }
+
+        try (SharedFileInputStream in = new SharedFileInputStream(encoded.toFile())) {
+            MimeMultipart parsed = (MimeMultipart) new MimeMessage(session, in).getContent();
+            MimeBodyPart attachment = (MimeBodyPart) parsed.getBodyPart(0);
+
+            assertThat(attachment.getFileName()).isEqualTo("heap.bin");
+            assertThat(attachment.getDisposition()).isEqualTo(Part.ATTACHMENT);
+
+            try (InputStream content = attachment.getInputStream()) {
+                assertThat(Arrays.equals(ByteStreams.toByteArray(content), Files.readAllBytes(file))).isTrue();
+            }
+        }
+    }
+
+    private Path createFile(String name, int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+
+        return Files.write(folder.getRoot().toPath().resolve(name), content);
+    }
+
+}
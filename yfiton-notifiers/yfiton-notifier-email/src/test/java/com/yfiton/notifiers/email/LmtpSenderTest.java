@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Unit tests associated to {@link LmtpSender}.
+ *
+ * @author lpellegr
+ */
+public class LmtpSenderTest {
+
+    private ServerSocket serverSocket;
+
+    private Thread server;
+
+    // lines received by the server
+    private final List<String> received = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0);
+
+        server = new Thread(this::serve, "lmtp-server");
+        server.setDaemon(true);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException, InterruptedException {
+        serverSocket.close();
+        server.join(5000);
+    }
+
+    @Test
+    public void testSend() throws MessagingException, InterruptedException {
+        LmtpSender sender = new LmtpSender("localhost", serverSocket.getLocalPort());
+
+        MimeMessage message = createMessage();
+        sender.send(message, InternetAddress.parse("ann@company.com, bob@company.com"));
+
+        // waits for the server to handle QUIT
+        server.join(5000);
+
+        assertThat(received).containsAllOf(
+                "MAIL FROM:<alerts@company.com>", "RCPT TO:<ann@company.com>", "RCPT TO:<bob@company.com>",
+                "Subject: Build failed", "..leading dot escaped", "QUIT").inOrder();
+    }
+
+    @Test
+    public void testRejectedRecipients() throws MessagingException {
+        LmtpSender sender = new LmtpSender("localhost", serverSocket.getLocalPort());
+
+        try {
+            sender.send(createMessage(), InternetAddress.parse("ann@company.com, unknown@company.com, full@company.com"));
+        } catch (SendFailedException e) {
+            assertThat(e.getValidSentAddresses()).asList().containsExactly(new InternetAddress("ann@company.com"));
+            assertThat(e.getInvalidAddresses()).asList().containsExactly(
+                    new InternetAddress("unknown@company.com"), new InternetAddress("full@company.com"));
+            return;
+        }
+
+        throw new AssertionError("Rejected recipients not reported");
+    }
+
+    private static MimeMessage createMessage() throws MessagingException {
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+        message.setFrom(new InternetAddress("alerts@company.com"));
+        message.setSubject("Build failed");
+        message.setText("Logs:\n.leading dot escaped\n");
+        return message;
+    }
+
+    /**
+     * Minimal LMTP server that rejects unknown@ at RCPT time and full@ once
+     * the message is received.
+     */
+    private void serve() {
+        try (Socket socket = serverSocket.accept()) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream out = socket.getOutputStream();
+
+            reply(out, "220 localhost LMTP ready");
+
+            List<String> recipients = new ArrayList<>();
+            String line;
+
+            while ((line = in.readLine()) != null) {
+                received.add(line);
+
+                if (line.startsWith("LHLO")) {
+                    reply(out, "250-localhost\r\n250 PIPELINING");
+                } else if (line.startsWith("RCPT TO:<unknown@")) {
+                    reply(out, "550 5.1.1 User unknown");
+                } else if (line.startsWith("RCPT TO:")) {
+                    recipients.add(line);
+                    reply(out, "250 2.1.5 OK");
+                } else if (line.equals("DATA")) {
+                    reply(out, "354 Go ahead");
+
+                    while (!(line = in.readLine()).equals(".")) {
+                        received.add(line);
+                    }
+
+                    for (String recipient : recipients) {
+                        reply(out, recipient.contains("full@") ? "452 4.2.2 Mailbox full" : "250 2.0.0 Delivered");
+                    }
+                } else if (line.equals("QUIT")) {
+                    reply(out, "221 Bye");
+                    return;
+                } else {
+                    reply(out, "250 OK");
+                }
+            }
+        } catch (IOException e) {
+            // server closed
+        }
+    }
+
+    private static void reply(OutputStream out, String reply) throws IOException {
+        out.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+}
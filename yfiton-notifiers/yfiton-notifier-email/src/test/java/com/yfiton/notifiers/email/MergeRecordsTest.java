@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests associated to {@link MergeRecords}.
+ *
+ * @author lpellegr
+ */
+public class MergeRecordsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCsv() throws IOException {
+        Path file = write("records.csv",
+                "email,name,comment\r\n"
+                        + "zoe@company.com,Zoé,\"quoted, with \"\"quotes\"\"\"\r\n"
+                        + "\r\n"
+                        + "bob@company.com,Bob,\"two\nlines\"\n");
+
+        assertThat(read(file)).containsExactly(
+                ImmutableMap.of("email", "zoe@company.com", "name", "Zoé", "comment", "quoted, with \"quotes\""),
+                ImmutableMap.of("email", "bob@company.com", "name", "Bob", "comment", "two\nlines")).inOrder();
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void testCsvWithMissingFields() throws IOException {
+        read(write("records.csv", "email,name\nzoe@company.com\n"));
+    }
+
+    @Test
+    public void testCsvErrorReportsRecordLine() throws IOException {
+        try {
+            read(write("records.csv", "email,name\nzoe@company.com,Zoé\n\nbob@company.com\n"));
+            fail("Missing fields not reported");
+        } catch (UncheckedIOException e) {
+            assertThat(e.getCause().getMessage()).isEqualTo("Line 4: 1 fields found but 2 expected");
+        }
+    }
+
+    @Test
+    public void testCsvWithDuplicateFields() throws IOException {
+        try {
+            read(write("records.csv", "email,name,email\nzoe@company.com,Zoé,zoe@home.com\n"));
+            fail("Duplicate fields accepted");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).isEqualTo("Line 1: duplicate field 'email'");
+        }
+    }
+
+    @Test
+    public void testCsvWithByteOrderMark() throws IOException {
+        Path file = write("records.csv", "\uFEFFemail,name\nzoe@company.com,Zoé\n");
+
+        assertThat(read(file)).containsExactly(ImmutableMap.of("email", "zoe@company.com", "name", "Zoé"));
+    }
+
+    @Test
+    public void testNdjson() throws IOException {
+        Path file = write("records.txt",
+                "{\"email\": \"zoe@company.com\", \"build\": 42, \"ignored\": null}\n"
+                        + "\n"
+                        + "{\"email\": \"bob@company.com\", \"tags\": [\"a\"]}\n");
+
+        assertThat(read(file)).containsExactly(
+                ImmutableMap.of("email", "zoe@company.com", "build", "42"),
+                ImmutableMap.of("email", "bob@company.com", "tags", "[\"a\"]")).inOrder();
+    }
+
+    private Path write(String fileName, String content) throws IOException {
+        return Files.write(folder.getRoot().toPath().resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ImmutableList<Map<String, String>> read(Path file) throws IOException {
+        try (MergeRecords records = MergeRecords.open(file)) {
+            return ImmutableList.copyOf(records);
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import org.junit.Test;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import static com.google.common.collect.ImmutableMap.of;
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Unit tests associated to {@link MergeTemplate}.
+ *
+ * @author lpellegr
+ */
+public class MergeTemplateTest {
+
+    private static final Session SESSION = Session.getInstance(new Properties());
+
+    @Test
+    public void testRender() throws MessagingException, IOException {
+        MergeTemplate template = MergeTemplate.compile(
+                new InternetAddress("alerts@company.com"), "Build {{build}} failed", "Hi {{ name }},\nsee {{url}}\n");
+
+        assertThat(template.getFields()).containsExactly("build", "name", "url");
+
+        MimeMessage message = parse(template.render(
+                of("build", "42", "name", "Zoé", "url", "https://ci.company.com/42"),
+                new InternetAddress("zoe@company.com")));
+
+        assertThat(message.getFrom()).asList().containsExactly(new InternetAddress("alerts@company.com"));
+        assertThat(message.getHeader("To", null)).isEqualTo("zoe@company.com");
+        assertThat(message.getSubject()).isEqualTo("Build 42 failed");
+        assertThat(message.getMessageID()).endsWith("@company.com>");
+        assertThat(message.getSentDate()).isNotNull();
+        assertThat(message.getContent()).isEqualTo("Hi Zoé,\r\nsee https://ci.company.com/42\r\n");
+    }
+
+    @Test
+    public void testRenderEncodesSubstitutedSubject() throws MessagingException, IOException {
+        MergeTemplate template = MergeTemplate.compile(
+                new InternetAddress("alerts@company.com"), "Alerte pour {{name}}", "constant body");
+
+        MimeMessage message = parse(template.render(of("name", "Hélène"), new InternetAddress("helene@company.com")));
+
+        assertThat(message.getHeader("Subject", null)).doesNotContain("é");
+        assertThat(message.getSubject()).isEqualTo("Alerte pour Hélène");
+        assertThat(message.getContent()).isEqualTo("constant body");
+    }
+
+    @Test
+    public void testRenderDoesNotInjectHeaders() throws MessagingException, IOException {
+        MergeTemplate template = MergeTemplate.compile(
+                new InternetAddress("alerts@company.com"), "Build {{build}} failed", "constant body");
+
+        MimeMessage message = parse(template.render(
+                of("build", "42\r\nBcc: victim@company.com\n\nInjected body"), new InternetAddress("zoe@company.com")));
+
+        assertThat(message.getHeader("Bcc")).isNull();
+        assertThat(message.getSubject()).isEqualTo("Build 42 Bcc: victim@company.com Injected body failed");
+        assertThat(message.getContent()).isEqualTo("constant body");
+    }
+
+    @Test(expected = MessagingException.class)
+    public void testRenderMissingField() throws MessagingException {
+        MergeTemplate template = MergeTemplate.compile(
+                new InternetAddress("alerts@company.com"), "Build {{build}} failed", "");
+
+        template.render(of("name", "Zoé"), new InternetAddress("zoe@company.com"));
+    }
+
+    private static MimeMessage parse(byte[] message) throws MessagingException {
+        return new MimeMessage(SESSION, new ByteArrayInputStream(message));
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.yfiton.api.exceptions.ParameterException;
+import org.junit.Test;
+
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests associated to {@link RelayPool} and {@link SmtpRelay}.
+ *
+ * @author lpellegr
+ */
+public class RelayPoolTest {
+
+    private static final SmtpRelay RELAY_1 = new SmtpRelay("smtp1.company.com", 587, 1);
+
+    private static final SmtpRelay RELAY_2 = new SmtpRelay("smtp2.company.com", 587, 1);
+
+    private static final List<SmtpRelay> RELAYS = ImmutableList.of(RELAY_1, RELAY_2);
+
+    private final ManualTicker ticker = new ManualTicker();
+
+    private final RelayPool pool = new RelayPool(ticker);
+
+    @Test
+    public void testParse() throws ParameterException {
+        assertThat(SmtpRelay.parse("smtp.company.com", 587)).isEqualTo(new SmtpRelay("smtp.company.com", 587, 1));
+        assertThat(SmtpRelay.parse(" smtp.company.com:25/3 ", 587)).isEqualTo(new SmtpRelay("smtp.company.com", 25, 3));
+        assertThat(SmtpRelay.parse("smtp.company.com/2", 587)).isEqualTo(new SmtpRelay("smtp.company.com", 587, 2));
+    }
+
+    @Test(expected = ParameterException.class)
+    public void testParseInvalidWeight() throws ParameterException {
+        SmtpRelay.parse("smtp.company.com:25/0", 587);
+    }
+
+    @Test
+    public void testFastestRelaySelected() throws MessagingException {
+        send(RELAY_1, 100);
+        send(RELAY_2, 10);
+
+        assertThat(pool.select(RELAYS, ImmutableSet.of())).isEqualTo(RELAY_2);
+    }
+
+    @Test
+    public void testWeightBalancesLatency() throws MessagingException {
+        SmtpRelay heavy = new SmtpRelay("smtp1.company.com", 587, 20);
+
+        send(heavy, 100);
+        send(RELAY_2, 10);
+
+        assertThat(pool.select(ImmutableList.of(heavy, RELAY_2), ImmutableSet.of())).isEqualTo(heavy);
+    }
+
+    @Test
+    public void testUnusedRelayTriedFirst() throws MessagingException {
+        send(RELAY_1, 10);
+
+        assertThat(pool.select(RELAYS, ImmutableSet.of())).isEqualTo(RELAY_2);
+    }
+
+    @Test
+    public void testFailoverAndCooldown() throws MessagingException {
+        send(RELAY_1, 10);
+        send(RELAY_2, 100);
+
+        List<SmtpRelay> used = new ArrayList<>();
+
+        pool.send(RELAYS, 30, TimeUnit.SECONDS, (relay, wait) -> (message, recipients) -> {
+            used.add(relay);
+
+            if (relay.equals(RELAY_1)) {
+                throw new MessagingException("Connection refused");
+            }
+        }, null, null);
+
+        assertThat(used).containsExactly(RELAY_1, RELAY_2).inOrder();
+        assertThat(pool.isEjected(RELAY_1)).isTrue();
+        assertThat(pool.select(RELAYS, ImmutableSet.of())).isEqualTo(RELAY_2);
+
+        ticker.advance(31, TimeUnit.SECONDS);
+
+        assertThat(pool.isEjected(RELAY_1)).isFalse();
+        assertThat(pool.select(RELAYS, ImmutableSet.of())).isEqualTo(RELAY_1);
+    }
+
+    @Test
+    public void testBusyRelaySkippedWithoutWaiting() throws MessagingException {
+        send(RELAY_1, 10);
+        send(RELAY_2, 100);
+
+        List<String> attempts = new ArrayList<>();
+
+        pool.send(RELAYS, 30, TimeUnit.SECONDS, (relay, wait) -> (message, recipients) -> {
+            attempts.add(relay.getHost() + (wait ? " waiting" : ""));
+
+            if (relay.equals(RELAY_1)) {
+                throw new PoolExhaustedException("No SMTP connection to " + relay.getHostAndPort() + " available");
+            }
+        }, null, null);
+
+        assertThat(attempts).containsExactly("smtp1.company.com", "smtp2.company.com").inOrder();
+        assertThat(pool.isEjected(RELAY_1)).isFalse();
+        assertThat(pool.select(RELAYS, ImmutableSet.of())).isEqualTo(RELAY_1);
+    }
+
+    @Test
+    public void testWaitsForBestRelayWhenAllBusy() throws MessagingException {
+        send(RELAY_1, 10);
+        send(RELAY_2, 100);
+
+        List<String> attempts = new ArrayList<>();
+
+        pool.send(RELAYS, 30, TimeUnit.SECONDS, (relay, wait) -> (message, recipients) -> {
+            attempts.add(relay.getHost() + (wait ? " waiting" : ""));
+
+            if (!wait) {
+                throw new PoolExhaustedException("No SMTP connection to " + relay.getHostAndPort() + " available");
+            }
+        }, null, null);
+
+        assertThat(attempts).containsExactly(
+                "smtp1.company.com", "smtp2.company.com", "smtp1.company.com waiting").inOrder();
+        assertThat(pool.isEjected(RELAY_1)).isFalse();
+        assertThat(pool.isEjected(RELAY_2)).isFalse();
+    }
+
+    @Test
+    public void testEjectedRelayUsedAsLastResort() {
+        try {
+            pool.send(RELAYS, 30, TimeUnit.SECONDS, (relay, wait) -> (message, recipients) -> {
+                throw new MessagingException("Connection refused by " + relay.getHost());
+            }, null, null);
+
+            fail("All relays failed but no exception thrown");
+        } catch (MessagingException e) {
+            assertThat(e.getMessage()).isEqualTo("Connection refused by smtp2.company.com");
+        }
+
+        assertThat(pool.select(RELAYS, ImmutableSet.of())).isEqualTo(RELAY_1);
+    }
+
+    @Test(expected = SendFailedException.class)
+    public void testRejectedRecipientsNotRetried() throws MessagingException {
+        pool.send(RELAYS, 30, TimeUnit.SECONDS, (relay, wait) -> (message, recipients) -> {
+            if (relay.equals(RELAY_2)) {
+                throw new IllegalStateException("Message sent again");
+            }
+
+            throw new SendFailedException("Invalid addresses");
+        }, null, null);
+    }
+
+    private void send(SmtpRelay relay, long latencyInMillis) throws MessagingException {
+        pool.send(ImmutableList.of(relay), 30, TimeUnit.SECONDS,
+                (r, wait) -> (message, recipients) -> ticker.advance(latencyInMillis, TimeUnit.MILLISECONDS), null, null);
+    }
+
+    private static final class ManualTicker extends Ticker {
+
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            nanos += unit.toNanos(duration);
+        }
+
+    }
+
+}
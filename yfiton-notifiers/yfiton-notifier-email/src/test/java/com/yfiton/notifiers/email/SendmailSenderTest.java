@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import com.google.common.base.Strings;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeFalse;
+
+/**
+ * Unit tests associated to {@link SendmailSender}. Commands are shell
+ * scripts standing in for sendmail.
+ *
+ * @author lpellegr
+ */
+public class SendmailSenderTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+    }
+
+    @Test(timeout = 30000)
+    public void testVerboseCommandDoesNotBlock() throws IOException, MessagingException {
+        Path received = folder.getRoot().toPath().resolve("received.eml");
+
+        // writes more than a pipe buffer before reading the message
+        SendmailSender sender = new SendmailSender(createScript(
+                "head -c 1048576 /dev/zero",
+                "cat > '" + received + "'"));
+
+        String body = Strings.repeat("Build #42 has failed!\n", 50000);
+        sender.send(createMessage(body), InternetAddress.parse("ann@company.com"));
+
+        assertThat(new String(Files.readAllBytes(received), StandardCharsets.UTF_8)).contains("Build #42 has failed!");
+        assertThat(Files.size(received)).isGreaterThan((long) body.length());
+    }
+
+    @Test
+    public void testFailureReportsOutput() throws IOException, MessagingException {
+        SendmailSender sender = new SendmailSender(createScript(
+                "cat > /dev/null",
+                "echo 'ann@company.com... User unknown' >&2",
+                "exit 67"));
+
+        try {
+            sender.send(createMessage("Hello"), InternetAddress.parse("ann@company.com"));
+            fail("Command failure not reported");
+        } catch (MessagingException e) {
+            assertThat(e.getMessage()).endsWith("has failed with exit value 67: ann@company.com... User unknown");
+        }
+    }
+
+    private String createScript(String... lines) throws IOException {
+        Path script = folder.newFile("sendmail.sh").toPath();
+
+        Files.write(script, Arrays.asList("#!/bin/sh", String.join("\n", lines)), StandardCharsets.UTF_8);
+        assertThat(script.toFile().setExecutable(true)).isTrue();
+
+        return script.toString();
+    }
+
+    private static MimeMessage createMessage(String body) throws MessagingException {
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+        message.setFrom(new InternetAddress("alerts@company.com"));
+        message.setRecipients(MimeMessage.RecipientType.TO, "ann@company.com");
+        message.setSubject("Build failed");
+        message.setText(body);
+        return message;
+    }
+
+}
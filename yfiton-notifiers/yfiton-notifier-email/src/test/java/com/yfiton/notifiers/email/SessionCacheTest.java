@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import org.junit.Test;
+
+import javax.mail.Session;
+import java.util.Properties;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Unit tests associated to {@link SessionCache}.
+ *
+ * @author lpellegr
+ */
+public class SessionCacheTest {
+
+    @Test
+    public void testSessionReusedForEquivalentProperties() {
+        SessionCache cache = new SessionCache(4);
+
+        Session session = cache.get(properties("smtp.company.com", 587));
+
+        assertThat(cache.get(properties("smtp.company.com", 587))).isSameAs(session);
+        // values are compared as JavaMail reads them
+        assertThat(cache.get(properties("smtp.company.com", "587"))).isSameAs(session);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testSessionCreatedWhenPropertiesChange() {
+        SessionCache cache = new SessionCache(4);
+
+        Session session = cache.get(properties("smtp.company.com", 587));
+        Session other = cache.get(properties("smtp.company.com", 25));
+
+        assertThat(other).isNotSameAs(session);
+        assertThat(other.getProperty("mail.smtp.port")).isEqualTo("25");
+    }
+
+    @Test
+    public void testBoundedSize() {
+        SessionCache cache = new SessionCache(2);
+
+        for (int port = 1; port <= 10; port++) {
+            cache.get(properties("smtp.company.com", port));
+        }
+
+        assertThat(cache.size()).isAtMost(2L);
+
+        cache.invalidateAll();
+
+        assertThat(cache.size()).isEqualTo(0L);
+    }
+
+    private static Properties properties(String host, Object port) {
+        Properties properties = new Properties();
+        properties.put("mail.smtp.host", host);
+        properties.put("mail.smtp.port", port);
+        properties.put("mail.smtp.auth", false);
+        return properties;
+    }
+
+}
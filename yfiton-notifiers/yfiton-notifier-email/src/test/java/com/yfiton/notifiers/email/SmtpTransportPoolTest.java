@@ -0,0 +1,209 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.email;
+
+import com.google.common.base.Stopwatch;
+import com.yfiton.testing.smtp.SmtpSink;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.mail.AuthenticationFailedException;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests associated to {@link SmtpTransportPool}.
+ *
+ * @author lpellegr
+ */
+public class SmtpTransportPoolTest {
+
+    private static final String USERNAME = "user";
+
+    private static final String PASSWORD = "secret";
+
+    private SmtpSink sink;
+
+    private Session session;
+
+    private SmtpTransportPool pool;
+
+    @Before
+    public void setUp() throws IOException {
+        sink = new SmtpSink.Builder().setCredentials(USERNAME, PASSWORD).start();
+
+        Properties properties = new Properties();
+        properties.put("mail.smtp.host", sink.getHost());
+        properties.put("mail.smtp.port", sink.getPort());
+        properties.put("mail.smtp.auth", "true");
+
+        session = Session.getInstance(properties);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (pool != null) {
+            pool.close();
+        }
+
+        sink.close();
+    }
+
+    @Test
+    public void testConnectionReused() throws MessagingException, InterruptedException, TimeoutException {
+        pool = createPool(4, 30, 1);
+
+        for (int i = 0; i < 3; i++) {
+            pool.send(session, USERNAME, PASSWORD, createMessage());
+        }
+
+        sink.awaitMessages(3, 5, TimeUnit.SECONDS);
+
+        assertThat(sink.getConnectionCount()).isEqualTo(1);
+        assertThat(pool.getOpenConnections(sink.getHost(), sink.getPort())).isEqualTo(1);
+    }
+
+    @Test
+    public void testConnectionNotReusedWithAnotherPassword() throws MessagingException {
+        pool = createPool(4, 30, 1);
+
+        pool.send(session, USERNAME, PASSWORD, createMessage());
+
+        try {
+            pool.send(session, USERNAME, "wrong", createMessage());
+            fail("Message sent with an invalid password");
+        } catch (AuthenticationFailedException e) {
+            // expected
+        }
+
+        assertThat(sink.getMessageCount()).isEqualTo(1);
+        assertThat(sink.getConnectionCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDroppedConnectionReplaced() throws MessagingException, InterruptedException, TimeoutException {
+        pool = createPool(4, 30, 1);
+
+        pool.send(session, USERNAME, PASSWORD, createMessage());
+
+        sink.closeConnections();
+        awaitOpenConnections(0);
+
+        // the NOOP sent before reuse fails and a new connection is opened
+        pool.send(session, USERNAME, PASSWORD, createMessage());
+
+        sink.awaitMessages(2, 5, TimeUnit.SECONDS);
+
+        assertThat(sink.getConnectionCount()).isEqualTo(2);
+        assertThat(pool.getOpenConnections(sink.getHost(), sink.getPort())).isEqualTo(1);
+    }
+
+    @Test
+    public void testIdleConnectionsEvicted() throws MessagingException, InterruptedException {
+        pool = new SmtpTransportPool(4, 100, 1000, TimeUnit.MILLISECONDS);
+
+        pool.send(session, USERNAME, PASSWORD, createMessage());
+
+        assertThat(pool.getOpenConnections(sink.getHost(), sink.getPort())).isEqualTo(1);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while (pool.getOpenConnections(sink.getHost(), sink.getPort()) > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertThat(pool.getOpenConnections(sink.getHost(), sink.getPort())).isEqualTo(0);
+        awaitOpenConnections(0);
+    }
+
+    @Test
+    public void testSendWithoutWaitingFailsPromptly() throws MessagingException {
+        pool = createPool(1, 30, 30);
+
+        SmtpTransportPool.Connection connection = pool.borrow(session, USERNAME, PASSWORD);
+        Stopwatch stopwatch = Stopwatch.createStarted();
+
+        try {
+            pool.send(session, USERNAME, PASSWORD, createMessage(), InternetAddress.parse("ann@company.com"), 0, TimeUnit.MILLISECONDS);
+            fail("Message sent without any connection available");
+        } catch (PoolExhaustedException e) {
+            assertThat(stopwatch.elapsed(TimeUnit.MILLISECONDS)).isLessThan(1000L);
+        }
+
+        pool.release(connection);
+    }
+
+    @Test
+    public void testMaxConnectionsPerHost() throws MessagingException {
+        pool = createPool(2, 30, 1);
+
+        SmtpTransportPool.Connection first = pool.borrow(session, USERNAME, PASSWORD);
+        SmtpTransportPool.Connection second = pool.borrow(session, USERNAME, PASSWORD);
+
+        try {
+            pool.borrow(session, USERNAME, PASSWORD);
+            fail("More connections than allowed opened to " + sink.getHost());
+        } catch (PoolExhaustedException e) {
+            assertThat(e.getMessage()).startsWith("No SMTP connection to");
+        }
+
+        pool.release(first);
+
+        SmtpTransportPool.Connection third = pool.borrow(session, USERNAME, PASSWORD);
+
+        assertThat(third).isSameAs(first);
+        assertThat(sink.getConnectionCount()).isEqualTo(2);
+
+        pool.release(second);
+        pool.release(third);
+    }
+
+    private static SmtpTransportPool createPool(int maxPerHost, long idleTimeoutInSeconds, long borrowTimeoutInSeconds) {
+        return new SmtpTransportPool(maxPerHost, TimeUnit.SECONDS.toMillis(idleTimeoutInSeconds),
+                TimeUnit.SECONDS.toMillis(borrowTimeoutInSeconds), TimeUnit.MILLISECONDS);
+    }
+
+    private MimeMessage createMessage() throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress("yfiton@company.com"));
+        message.setRecipients(MimeMessage.RecipientType.TO, "ann@company.com");
+        message.setSubject("Pooled");
+        message.setText("Hello");
+        return message;
+    }
+
+    private void awaitOpenConnections(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while (sink.getOpenConnectionCount() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertThat(sink.getOpenConnectionCount()).isEqualTo(expected);
+    }
+
+}
@@ -23,6 +23,7 @@ import com.restfb.FacebookClient;
 import com.restfb.Version;
 import com.restfb.exception.FacebookException;
 import com.restfb.types.FacebookType;
+import com.yfiton.api.annotation.NotifierInfo;
 import com.yfiton.api.annotation.Parameter;
 import com.yfiton.api.exceptions.NotificationException;
 import com.yfiton.api.parameter.Parameters;
@@ -44,6 +45,11 @@ import java.util.Optional;
 /**
  * @author lpellegr
  */
+@NotifierInfo(
+        key = "facebook",
+        name = "Facebook",
+        description = "Post photo, movie or status on your Facebook account.",
+        url = "https://facebook.com")
 public class FacebookNotifier extends OAuthNotifier {
 
     private static final String CLIENT_ID = "1664946583777891";
@@ -110,26 +116,6 @@ public class FacebookNotifier extends OAuthNotifier {
                 accessToken, getClientSecret(), Version.LATEST);
     }
 
-    @Override
-    public String getKey() {
-        return "facebook";
-    }
-
-    @Override
-    public String getName() {
-        return "Facebook";
-    }
-
-    @Override
-    public Optional<String> getDescription() {
-        return Optional.of("Post photo, movie or status on your Facebook account.");
-    }
-
-    @Override
-    public Optional<String> getUrl() {
-        return Optional.of("https://facebook.com");
-    }
-
     @Override
     protected String getAuthorizationUrl(String stateParameterValue) {
         return "https://graph.facebook.com/oauth/authorize?client_id=" +
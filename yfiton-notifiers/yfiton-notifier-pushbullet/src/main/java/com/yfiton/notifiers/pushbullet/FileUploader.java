@@ -0,0 +1,355 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.pushbullet;
+
+import com.google.common.base.Throwables;
+import com.google.common.io.ByteStreams;
+import com.yfiton.api.exceptions.NotificationException;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.entity.mime.content.FileBody;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Uploads files with bounded memory, whatever their size. Files are streamed
+ * from disk while requests are sent.
+ * <p/>
+ * By default a file is sent with a single multipart {@code POST} request
+ * that is sent again from the beginning if it fails. When a chunk size is
+ * set, the file is sent with successive {@code PUT} requests, each carrying
+ * a {@code Content-Range: bytes first-last/total} header. The server
+ * acknowledges the bytes received so far with a {@code 308} response and a
+ * {@code Range} header, and ends the upload with a {@code 2xx} response.
+ * After a transient failure, the bytes received are queried with an empty
+ * {@code PUT} request carrying {@code Content-Range: bytes *}{@code /total}
+ * and the upload resumes from the last acknowledged byte.
+ *
+ * @author lpellegr
+ */
+final class FileUploader {
+
+    private static final Logger log = LoggerFactory.getLogger(FileUploader.class);
+
+    private static final Pattern RANGE = Pattern.compile("bytes=0-(\\d+)");
+
+    // offset returned once the server has acknowledged the whole file
+    private static final long COMPLETE = Long.MAX_VALUE;
+
+    private final CloseableHttpClient httpClient;
+
+    private final long chunkSize;
+
+    private final int maxAttempts;
+
+    private final long retryDelayMillis;
+
+    private final ProgressListener progressListener;
+
+    private FileUploader(Builder builder) {
+        this.httpClient = builder.httpClient;
+        this.chunkSize = builder.chunkSize;
+        this.maxAttempts = builder.maxAttempts;
+        this.retryDelayMillis = builder.retryDelayMillis;
+        this.progressListener = builder.progressListener;
+    }
+
+    /**
+     * Uploads the specified file.
+     *
+     * @param url         the URL to upload the file to.
+     * @param file        the file to upload.
+     * @param contentType the media type of the file.
+     * @throws NotificationException if the server rejects the file or if the
+     *                               upload keeps failing.
+     */
+    void upload(String url, Path file, String contentType) throws NotificationException {
+        try {
+            if (chunkSize > 0) {
+                putChunks(url, file, contentType);
+            } else {
+                post(url, file, contentType);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NotificationException("Interrupted while uploading " + file, e);
+        } catch (IOException e) {
+            throw new NotificationException("Uploading " + file + " has failed: " + e.getMessage(), e);
+        }
+    }
+
+    private void post(String url, Path file, String contentType) throws IOException, InterruptedException, NotificationException {
+        long size = Files.size(file);
+        int failures = 0;
+
+        while (true) {
+            HttpPost request = new HttpPost(url);
+            request.setEntity(MultipartEntityBuilder.create()
+                    .addPart("file", new FileBody(file.toFile(), ContentType.parse(contentType), file.getFileName().toString()) {
+                        @Override
+                        public void writeTo(OutputStream out) throws IOException {
+                            super.writeTo(new CountingOutputStream(out, size));
+                        }
+                    })
+                    .build());
+
+            try {
+                execute(request);
+                progressListener.onProgress(size, size);
+                return;
+            } catch (TransientException e) {
+                failures = retry(failures, e);
+            }
+        }
+    }
+
+    private void putChunks(String url, Path file, String contentType) throws IOException, InterruptedException, NotificationException {
+        long size = Files.size(file);
+        long offset = 0;
+        int failures = 0;
+
+        while (true) {
+            long end = Math.min(offset + chunkSize, size);
+
+            try (InputStream in = Files.newInputStream(file)) {
+                ByteStreams.skipFully(in, offset);
+
+                HttpPut request = new HttpPut(url);
+                request.setEntity(new InputStreamEntity(ByteStreams.limit(in, end - offset), end - offset, ContentType.parse(contentType)));
+
+                // an empty file has no byte range, the server is only asked to complete the upload
+                request.setHeader("Content-Range", size > 0 ? "bytes " + offset + "-" + (end - 1) + "/" + size : "bytes */0");
+
+                long acknowledged = execute(request);
+
+                if (acknowledged > offset) {
+                    failures = 0;
+                } else {
+                    // the chunk has not been stored, e.g. a 308 without Range header, so that no progress is a failure
+                    failures = retry(failures, new TransientException(
+                            "Server has acknowledged " + acknowledged + " bytes after a chunk starting at byte " + offset));
+                }
+
+                offset = acknowledged;
+            } catch (TransientException e) {
+                failures = retry(failures, e);
+
+                try {
+                    offset = queryOffset(url, size);
+                } catch (TransientException queryFailure) {
+                    // the upload resumes from the same offset, a new failure will be counted if the server is still down
+                    log.debug("Querying upload offset has failed: {}", queryFailure.getMessage());
+                }
+            }
+
+            progressListener.onProgress(Math.min(offset, size), size);
+
+            if (offset >= size && (size > 0 || offset == COMPLETE)) {
+                return;
+            }
+        }
+    }
+
+    private long queryOffset(String url, long size) throws IOException, NotificationException {
+        HttpPut request = new HttpPut(url);
+        request.setHeader("Content-Range", "bytes */" + size);
+
+        return execute(request);
+    }
+
+    private int retry(int failures, TransientException e) throws NotificationException, InterruptedException {
+        failures++;
+
+        if (failures >= maxAttempts) {
+            throw new NotificationException("Upload has failed " + failures + " times in a row: " + e.getMessage(), e);
+        }
+
+        log.debug("Upload has failed, retrying: {}", e.getMessage());
+
+        Thread.sleep(retryDelayMillis * failures);
+
+        return failures;
+    }
+
+    /*
+     * Sends the specified request and returns the number of bytes the server
+     * has received, COMPLETE if the upload is complete.
+     */
+    private long execute(HttpUriRequest request) throws IOException, NotificationException {
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            EntityUtils.consume(response.getEntity());
+
+            int statusCode = response.getStatusLine().getStatusCode();
+
+            if (statusCode >= 200 && statusCode < 300) {
+                return COMPLETE;
+            } else if (statusCode == 308) {
+                return getAcknowledgedBytes(response);
+            } else if (statusCode == 408 || statusCode == 429 || statusCode >= 500) {
+                throw new TransientException("Server has answered with status " + statusCode);
+            }
+
+            throw new NotificationException("Upload has been rejected with status " + statusCode);
+        } catch (TransientException e) {
+            throw e;
+        } catch (IOException e) {
+            // the connection has been lost, some bytes may have been received
+            throw new TransientException(Throwables.getRootCause(e).getMessage(), e);
+        }
+    }
+
+    private static long getAcknowledgedBytes(HttpResponse response) throws IOException {
+        Header range = response.getFirstHeader("Range");
+
+        if (range == null) {
+            return 0;
+        }
+
+        Matcher matcher = RANGE.matcher(range.getValue());
+
+        if (!matcher.matches()) {
+            throw new IOException("Unexpected Range header: " + range.getValue());
+        }
+
+        return Long.parseLong(matcher.group(1)) + 1;
+    }
+
+    private final class CountingOutputStream extends FilterOutputStream {
+
+        private final long total;
+
+        private long count;
+
+        private CountingOutputStream(OutputStream out, long total) {
+            super(out);
+            this.total = total;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+
+            progressListener.onProgress(count, total);
+        }
+
+    }
+
+    private static final class TransientException extends IOException {
+
+        private TransientException(String message) {
+            super(message);
+        }
+
+        private TransientException(String message, Throwable cause) {
+            super(message, cause);
+        }
+
+    }
+
+    /**
+     * Receives the progress of uploads.
+     */
+    @FunctionalInterface
+    interface ProgressListener {
+
+        /**
+         * @param transferred the number of bytes sent or acknowledged.
+         * @param total       the size of the file.
+         */
+        void onProgress(long transferred, long total);
+
+    }
+
+    static final class Builder {
+
+        private final CloseableHttpClient httpClient;
+
+        private long chunkSize = 0;
+
+        private int maxAttempts = 5;
+
+        private long retryDelayMillis = 1000;
+
+        private ProgressListener progressListener = (transferred, total) -> {
+        };
+
+        Builder(CloseableHttpClient httpClient) {
+            this.httpClient = httpClient;
+        }
+
+        /**
+         * Sets the size of the chunks sent with {@code PUT} requests. A file
+         * is sent with a single {@code POST} request when the size is 0.
+         */
+        Builder setChunkSize(long chunkSize) {
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of consecutive failures after which the upload is abandoned.
+         */
+        Builder setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the time to wait after the first failure, it grows linearly with the following ones.
+         */
+        Builder setRetryDelay(long retryDelayMillis) {
+            this.retryDelayMillis = retryDelayMillis;
+            return this;
+        }
+
+        Builder setProgressListener(ProgressListener progressListener) {
+            this.progressListener = progressListener;
+            return this;
+        }
+
+        FileUploader build() {
+            return new FileUploader(this);
+        }
+
+    }
+
+}
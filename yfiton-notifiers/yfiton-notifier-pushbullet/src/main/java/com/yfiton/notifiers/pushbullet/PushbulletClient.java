@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.pushbullet;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.yfiton.api.exceptions.NotificationException;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushbullet client bound to an access token. Clients are cached per access
+ * token and share a pooled HTTP client, so that consecutive pushes sent from
+ * a same process reuse keep-alive connections.
+ *
+ * @author lpellegr
+ */
+final class PushbulletClient {
+
+    private static final String API_URL = "https://api.pushbullet.com/v2/";
+
+    private static final String ACCESS_TOKEN_HEADER = "Access-Token";
+
+    // access token -> client
+    private static final ConcurrentMap<String, PushbulletClient> clients = new ConcurrentHashMap<>();
+
+    private final String apiUrl;
+
+    private final String accessToken;
+
+    private final CloseableHttpClient httpClient;
+
+    PushbulletClient(String apiUrl, String accessToken, CloseableHttpClient httpClient) {
+        this.apiUrl = apiUrl;
+        this.accessToken = accessToken;
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * Returns the client for the specified access token.
+     *
+     * @param accessToken the access token to authenticate with.
+     * @return the client for the specified access token.
+     * @throws NotificationException if no access token is specified.
+     */
+    static PushbulletClient forAccessToken(String accessToken) throws NotificationException {
+        if (accessToken == null) {
+            throw new NotificationException("Missing Pushbullet access token, set parameter accessToken or run yfiton -n pushbullet to authorize access");
+        }
+
+        return clients.computeIfAbsent(accessToken, token -> new PushbulletClient(API_URL, token, HttpClientHolder.INSTANCE));
+    }
+
+    /**
+     * Creates a pooled HTTP client suitable for Pushbullet requests.
+     *
+     * @param maxConnections the maximum number of connections kept open.
+     * @return a new HTTP client.
+     */
+    static CloseableHttpClient createHttpClient(int maxConnections) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(60, TimeUnit.SECONDS);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setMaxTotal(maxConnections);
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(10000)
+                        .setSocketTimeout(30000)
+                        .build())
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Sends the specified push.
+     *
+     * @param push the push object, as described by the Pushbullet API.
+     * @return the push object created by Pushbullet.
+     * @throws NotificationException if the request fails or if Pushbullet rejects the push.
+     */
+    JsonObject push(JsonObject push) throws NotificationException {
+        return post("pushes", push);
+    }
+
+    /**
+     * Asks for the URL to upload a file to.
+     *
+     * @param fileName the name of the file.
+     * @param fileType the media type of the file.
+     * @return the upload request returned by Pushbullet, holding the
+     * {@code upload_url} to upload the file to and the {@code file_url}
+     * to push once uploaded.
+     * @throws NotificationException if the request fails or if Pushbullet rejects it.
+     */
+    JsonObject requestUpload(String fileName, String fileType) throws NotificationException {
+        JsonObject payload = new JsonObject();
+        payload.addProperty("file_name", fileName);
+        payload.addProperty("file_type", fileType);
+
+        return post("upload-request", payload);
+    }
+
+    CloseableHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    private JsonObject post(String resource, JsonObject payload) throws NotificationException {
+        HttpPost request = new HttpPost(apiUrl + resource);
+        request.setHeader(ACCESS_TOKEN_HEADER, accessToken);
+        request.setEntity(new StringEntity(payload.toString(), ContentType.APPLICATION_JSON));
+
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            // the entity must be fully consumed for the connection to return to the pool
+            HttpEntity entity = response.getEntity();
+            String body = entity == null ? "" : EntityUtils.toString(entity, StandardCharsets.UTF_8);
+
+            int statusCode = response.getStatusLine().getStatusCode();
+
+            if (statusCode == 401) {
+                // the token will not be accepted again, e.g. it has been revoked
+                clients.remove(accessToken, this);
+
+                throw new AccessTokenRejectedException(
+                        "Pushbullet has rejected the access token: " + getErrorMessage(body));
+            }
+
+            if (statusCode != 200) {
+                throw new NotificationException(
+                        "Pushbullet has answered with status " + statusCode + ": " + getErrorMessage(body));
+            }
+
+            return new JsonParser().parse(body).getAsJsonObject();
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            throw new NotificationException("Calling Pushbullet API has failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static String getErrorMessage(String body) {
+        try {
+            JsonElement error = new JsonParser().parse(body).getAsJsonObject().get("error");
+
+            if (error != null && error.isJsonObject() && error.getAsJsonObject().has("message")) {
+                return error.getAsJsonObject().get("message").getAsString();
+            }
+        } catch (JsonParseException | IllegalStateException e) {
+            // not a Pushbullet error object
+        }
+
+        return body;
+    }
+
+    private static final class HttpClientHolder {
+
+        private static final CloseableHttpClient INSTANCE = createHttpClient(8);
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    INSTANCE.close();
+                } catch (IOException e) {
+                    // ignore, the process is exiting
+                }
+            }, "yfiton-pushbullet-http"));
+        }
+
+    }
+
+}
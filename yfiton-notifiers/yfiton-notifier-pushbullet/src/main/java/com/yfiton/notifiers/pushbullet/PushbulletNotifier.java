@@ -16,34 +16,45 @@
 
 package com.yfiton.notifiers.pushbullet;
 
-import com.github.sheigutn.pushbullet.Pushbullet;
-import com.github.sheigutn.pushbullet.items.file.UploadFile;
-import com.github.sheigutn.pushbullet.items.push.sendable.defaults.SendableFilePush;
-import com.github.sheigutn.pushbullet.items.push.sendable.defaults.SendableLinkPush;
-import com.github.sheigutn.pushbullet.items.push.sendable.defaults.SendableNotePush;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableMap;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.yfiton.api.BatchNotifier;
+import com.yfiton.api.NotificationOutcome;
+import com.yfiton.api.NotificationResult;
+import com.yfiton.api.annotation.NotifierInfo;
 import com.yfiton.api.annotation.Parameter;
 import com.yfiton.api.exceptions.NotificationException;
+import com.yfiton.api.exceptions.YfitonException;
 import com.yfiton.api.parameter.Parameters;
 import com.yfiton.oauth.AccessTokenData;
 import com.yfiton.oauth.AuthorizationData;
 import com.yfiton.oauth.OAuthNotifier;
 import com.yfiton.oauth.receiver.graphical.YfitonWebEngineListener;
 import com.yfiton.oauth.receiver.PromptReceiver;
+import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.HierarchicalINIConfiguration;
 import org.apache.http.client.fluent.Form;
 import org.apache.http.client.fluent.Request;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Optional;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author lpellegr
  */
-public class PushbulletNotifier extends OAuthNotifier {
+@NotifierInfo(
+        key = "pushbullet",
+        name = "Pushbullet",
+        description = "Send notification on your devices using Pushbullet.",
+        url = "https://www.pushbullet.com")
+public class PushbulletNotifier extends OAuthNotifier implements BatchNotifier {
 
     private static final String CLIENT_ID = "hjT07gVHUYnzN1iVlWIFU7K1Sxype0bf";
 
@@ -59,43 +70,102 @@ public class PushbulletNotifier extends OAuthNotifier {
     @Parameter(description = "The url to open when link type is used")
     private String url;
 
-    @Parameter
+    @Parameter(description = "File to push. It is streamed from disk while it is uploaded")
     private String file;
 
+    @Parameter(description = "Size in bytes of the chunks used to upload a file. A chunked upload resumes from the last byte received after a failure, it requires an upload endpoint that supports Content-Range requests. A file is uploaded at once with 0")
+    private int uploadChunkSize = 0;
+
+    // shared by copies, avoids reading the configuration file for each push
+    private final AtomicReference<StoredAccessToken> storedAccessToken = new AtomicReference<>();
+
     public PushbulletNotifier() {
         super(CLIENT_ID, null);
     }
 
     @Override
     protected Check checkParameters(Parameters parameters) {
+        if (uploadChunkSize < 0) {
+            return Check.failed("Parameter uploadChunkSize must be positive or 0");
+        }
+
         return Check.succeeded();
     }
 
     @Override
     protected void notify(Parameters parameters) throws NotificationException {
-        Pushbullet pushbullet = new Pushbullet(getAccessToken());
+        push(PushbulletClient.forAccessToken(getAccessToken()));
+    }
+
+    /**
+     * Sends the specified pushes by using the cached Pushbullet client of
+     * each access token.
+     */
+    @Override
+    public List<NotificationOutcome> handleBatch(List<Parameters> batch) {
+        List<NotificationOutcome> outcomes = new ArrayList<>(batch.size());
+
+        for (Parameters parameters : batch) {
+            Stopwatch stopwatch = Stopwatch.createStarted();
 
+            try {
+                PushbulletNotifier invocation = prepare(parameters);
+
+                invocation.push(PushbulletClient.forAccessToken(invocation.getAccessToken()));
+
+                outcomes.add(NotificationOutcome.succeeded(new NotificationResult(getKey(), stopwatch.stop())));
+            } catch (YfitonException | RuntimeException e) {
+                outcomes.add(NotificationOutcome.failed(getKey(), e, stopwatch.stop()));
+            }
+        }
+
+        return outcomes;
+    }
+
+    void push(PushbulletClient client) throws NotificationException {
         try {
             if (file != null) {
-                pushFile(pushbullet);
+                pushFile(client);
             } else if (url != null) {
-                pushLink(pushbullet);
+                pushLink(client);
             } else {
-                pushNote(pushbullet);
+                pushNote(client);
             }
+        } catch (AccessTokenRejectedException e) {
+            // the configuration is read again by next pushes, it may hold a new token
+            storedAccessToken.set(null);
+            throw e;
+        } catch (NotificationException e) {
+            throw e;
         } catch (Exception e) {
             throw new NotificationException("Calling Pushbullet API has failed: " + e.getMessage(), e);
         }
     }
 
-    private String getAccessToken() throws NotificationException {
-        HierarchicalINIConfiguration configuration = getConfiguration();
-
+    String getAccessToken() throws NotificationException {
         if (accessToken != null) {
             return accessToken;
         }
 
-        return configuration.getString(KEY_ACCESS_TOKEN);
+        try {
+            File configurationFile = getConfigurationFilePath().toFile();
+            long lastModified = configurationFile.lastModified();
+
+            StoredAccessToken stored = storedAccessToken.get();
+
+            // the configuration file may have been rewritten by another process
+            if (stored == null || stored.lastModified != lastModified) {
+                HierarchicalINIConfiguration configuration =
+                        configurationFile.exists() ? new HierarchicalINIConfiguration(configurationFile) : getConfiguration();
+
+                stored = new StoredAccessToken(configuration.getString(KEY_ACCESS_TOKEN), lastModified);
+                storedAccessToken.set(stored);
+            }
+
+            return stored.value;
+        } catch (ConfigurationException | IOException e) {
+            throw new NotificationException("Cannot read Pushbullet access token: " + e.getMessage(), e);
+        }
     }
 
     private void checkNotNull(Object obj, String name) throws NotificationException {
@@ -104,50 +174,71 @@ public class PushbulletNotifier extends OAuthNotifier {
         }
     }
 
-    private void pushFile(Pushbullet pushbullet) throws NotificationException {
-        UploadFile uploadFile = pushbullet.uploadFile(new File(file));
-        pushbullet.push(new SendableFilePush(body, uploadFile));
+    private void pushFile(PushbulletClient client) throws NotificationException, IOException {
+        Path path = Paths.get(file);
+        String fileType = Optional.ofNullable(Files.probeContentType(path)).orElse("application/octet-stream");
+
+        JsonObject uploadRequest = client.requestUpload(path.getFileName().toString(), fileType);
+
+        new FileUploader.Builder(client.getHttpClient())
+                .setChunkSize(uploadChunkSize)
+                .setProgressListener(new ProgressLogger(path))
+                .build()
+                .upload(uploadRequest.get("upload_url").getAsString(), path, fileType);
+
+        JsonObject push = createPush("file");
+        push.addProperty("body", body);
+        push.addProperty("file_name", uploadRequest.get("file_name").getAsString());
+        push.addProperty("file_type", uploadRequest.get("file_type").getAsString());
+        push.addProperty("file_url", uploadRequest.get("file_url").getAsString());
+
+        client.push(push);
     }
 
-    private void pushLink(Pushbullet pushbullet) throws NotificationException {
+    private void pushLink(PushbulletClient client) throws NotificationException {
         checkNotNull(title, "title");
-        pushbullet.push(new SendableLinkPush(title, body, url));
+
+        JsonObject push = createPush("link");
+        push.addProperty("title", title);
+        push.addProperty("body", body);
+        push.addProperty("url", url);
+
+        client.push(push);
     }
 
-    private void pushNote(Pushbullet pushbullet) throws NotificationException {
+    private void pushNote(PushbulletClient client) throws NotificationException {
         checkNotNull(title, "title");
-        pushbullet.push(new SendableNotePush(title, body));
-    }
 
-    @Override
-    protected Optional<String> getAccessTokenUrl(String authorizationCode) {
-        return Optional.of("https://api.pushbullet.com/oauth2/token");
-    }
+        JsonObject push = createPush("note");
+        push.addProperty("title", title);
+        push.addProperty("body", body);
 
-    @Override
-    protected String getAuthorizationUrl(String stateParameterValue) {
-        return "https://www.pushbullet.com/authorize?client_id=" + super.getClientId()
-                + "&redirect_uri=" + YFITON_OAUTH_CALLBACK_URL + "&response_type=code";
+        client.push(push);
     }
 
-    @Override
-    public String getKey() {
-        return "pushbullet";
+    private static JsonObject createPush(String type) {
+        JsonObject result = new JsonObject();
+        result.addProperty("type", type);
+
+        return result;
     }
 
     @Override
-    public String getName() {
-        return "Pushbullet";
+    protected void storeAccessTokenData(AccessTokenData accessTokenData, HierarchicalINIConfiguration configuration) throws NotificationException {
+        super.storeAccessTokenData(accessTokenData, configuration);
+
+        storedAccessToken.set(new StoredAccessToken(accessTokenData.getAccessToken(), configuration.getFile().lastModified()));
     }
 
     @Override
-    public Optional<String> getDescription() {
-        return Optional.of("Send notification on your devices using Pushbullet.");
+    protected Optional<String> getAccessTokenUrl(String authorizationCode) {
+        return Optional.of("https://api.pushbullet.com/oauth2/token");
     }
 
     @Override
-    public Optional<String> getUrl() {
-        return Optional.of("https://www.pushbullet.com");
+    protected String getAuthorizationUrl(String stateParameterValue) {
+        return "https://www.pushbullet.com/authorize?client_id=" + super.getClientId()
+                + "&redirect_uri=" + YFITON_OAUTH_CALLBACK_URL + "&response_type=code";
     }
 
     @Override
@@ -180,4 +271,43 @@ public class PushbulletNotifier extends OAuthNotifier {
         }
     }
 
+    private static final class StoredAccessToken {
+
+        private final String value;
+
+        // modification time of the configuration file the token has been read from
+        private final long lastModified;
+
+        private StoredAccessToken(String value, long lastModified) {
+            this.value = value;
+            this.lastModified = lastModified;
+        }
+
+    }
+
+    /**
+     * Logs the progress of an upload every 10 percent.
+     */
+    private static final class ProgressLogger implements FileUploader.ProgressListener {
+
+        private final Path file;
+
+        private int lastDecile;
+
+        private ProgressLogger(Path file) {
+            this.file = file;
+        }
+
+        @Override
+        public void onProgress(long transferred, long total) {
+            int decile = total == 0 ? 10 : (int) (transferred * 10 / total);
+
+            if (decile != lastDecile) {
+                lastDecile = decile;
+                log.info("Uploaded {}% of {} ({} of {} bytes)", decile * 10, file.getFileName(), transferred, total);
+            }
+        }
+
+    }
+
 }
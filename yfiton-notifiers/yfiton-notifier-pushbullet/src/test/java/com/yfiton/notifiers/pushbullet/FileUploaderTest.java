@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.pushbullet;
+
+import com.google.common.primitives.Bytes;
+import com.yfiton.api.exceptions.NotificationException;
+import com.yfiton.testing.http.UploadServer;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author lpellegr
+ */
+public class FileUploaderTest {
+
+    private static final int FILE_SIZE = 1024 * 1024;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Long> progress = new CopyOnWriteArrayList<>();
+
+    private UploadServer server;
+
+    private CloseableHttpClient httpClient;
+
+    private Path file;
+
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new UploadServer.Builder().start();
+        httpClient = PushbulletClient.createHttpClient(2);
+
+        content = new byte[FILE_SIZE];
+        new Random(42).nextBytes(content);
+
+        file = folder.newFile("artifact.bin").toPath();
+        Files.write(file, content);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        httpClient.close();
+        server.close();
+    }
+
+    @Test
+    public void testSingleRequestUpload() throws NotificationException {
+        createUploader(0, 3).upload(server.getUrl("/upload/1"), file, "application/octet-stream");
+
+        byte[] received = server.getReceivedBytes("/upload/1");
+
+        // the file is wrapped in a multipart body
+        assertThat(Bytes.indexOf(received, content)).isAtLeast(0);
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        assertThat(progress.get(progress.size() - 1)).isEqualTo((long) FILE_SIZE);
+    }
+
+    @Test
+    public void testChunkedUpload() throws NotificationException {
+        createUploader(CHUNK_SIZE, 3).upload(server.getUrl("/upload/1"), file, "application/octet-stream");
+
+        assertThat(server.getReceivedBytes("/upload/1")).isEqualTo(content);
+        assertThat(server.getRequestCount()).isEqualTo(FILE_SIZE / CHUNK_SIZE);
+        assertThat(progress).hasSize(FILE_SIZE / CHUNK_SIZE);
+        assertThat(progress).isOrdered();
+    }
+
+    @Test
+    public void testChunkedUploadResumesAfterInterruption() throws NotificationException {
+        // the connection is dropped in the middle of the first chunk
+        server.failNextRequestAfter(CHUNK_SIZE / 2);
+
+        createUploader(CHUNK_SIZE, 3).upload(server.getUrl("/upload/1"), file, "application/octet-stream");
+
+        assertThat(server.getReceivedBytes("/upload/1")).isEqualTo(content);
+        // failed chunk, offset query, then the remaining half of the first chunk and the other chunks
+        assertThat(server.getRequestCount()).isEqualTo(2 + FILE_SIZE / CHUNK_SIZE);
+        assertThat(progress.get(0)).isEqualTo((long) CHUNK_SIZE / 2);
+    }
+
+    @Test
+    public void testChunkedUploadRetriesUnavailableServer() throws NotificationException {
+        server.rejectNextRequests(2);
+
+        createUploader(CHUNK_SIZE, 3).upload(server.getUrl("/upload/1"), file, "application/octet-stream");
+
+        assertThat(server.getReceivedBytes("/upload/1")).isEqualTo(content);
+    }
+
+    @Test
+    public void testUploadGivesUp() {
+        server.rejectNextRequests(100);
+
+        try {
+            createUploader(CHUNK_SIZE, 3).upload(server.getUrl("/upload/1"), file, "application/octet-stream");
+            fail();
+        } catch (NotificationException e) {
+            assertThat(e.getMessage()).contains("503");
+        }
+    }
+
+    @Test
+    public void testChunkedUploadRetriesChunkNotStored() throws NotificationException {
+        server.ignoreNextRequests(2);
+
+        createUploader(CHUNK_SIZE, 3).upload(server.getUrl("/upload/1"), file, "application/octet-stream");
+
+        assertThat(server.getReceivedBytes("/upload/1")).isEqualTo(content);
+    }
+
+    @Test(timeout = 30000)
+    public void testChunkedUploadGivesUpWithoutProgress() {
+        server.ignoreNextRequests(100);
+
+        try {
+            createUploader(CHUNK_SIZE, 3).upload(server.getUrl("/upload/1"), file, "application/octet-stream");
+            fail();
+        } catch (NotificationException e) {
+            assertThat(e.getMessage()).contains("Server has acknowledged 0 bytes");
+        }
+
+        assertThat(server.getRequestCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testChunkedUploadOfEmptyFile() throws IOException, NotificationException {
+        Path empty = folder.newFile("empty.bin").toPath();
+
+        createUploader(CHUNK_SIZE, 3).upload(server.getUrl("/upload/1"), empty, "application/octet-stream");
+
+        assertThat(server.getReceivedBytes("/upload/1")).isEmpty();
+    }
+
+    private FileUploader createUploader(int chunkSize, int maxAttempts) {
+        return new FileUploader.Builder(httpClient)
+                .setChunkSize(chunkSize)
+                .setMaxAttempts(maxAttempts)
+                .setRetryDelay(1)
+                .setProgressListener((transferred, total) -> progress.add(transferred))
+                .build();
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.pushbullet;
+
+import com.google.common.io.ByteStreams;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+import com.yfiton.api.exceptions.NotificationException;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author lpellegr
+ */
+public class PushbulletClientTest {
+
+    private final List<String> bodies = new CopyOnWriteArrayList<>();
+
+    private final List<String> accessTokens = new CopyOnWriteArrayList<>();
+
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    private HttpServer server;
+
+    private CloseableHttpClient httpClient;
+
+    private PushbulletClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v2/pushes", exchange -> {
+            String body = new String(ByteStreams.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8);
+
+            bodies.add(body);
+            accessTokens.add(exchange.getRequestHeaders().getFirst("Access-Token"));
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+
+            if ("o.revoked".equals(exchange.getRequestHeaders().getFirst("Access-Token"))) {
+                byte[] response = "{\"error\":{\"type\":\"invalid_request\",\"message\":\"Access token is missing or invalid.\"}}"
+                        .getBytes(StandardCharsets.UTF_8);
+
+                exchange.sendResponseHeaders(401, response.length);
+                exchange.getResponseBody().write(response);
+                exchange.close();
+                return;
+            }
+
+            boolean valid = body.contains("\"type\"");
+
+            byte[] response = (valid
+                    ? "{\"active\":true,\"iden\":\"ujpah72o0\",\"type\":\"note\"}"
+                    : "{\"error\":{\"type\":\"invalid_request\",\"message\":\"Missing push type.\"}}")
+                    .getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(valid ? 200 : 400, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.createContext("/v2/upload-request", exchange -> {
+            bodies.add(new String(ByteStreams.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8));
+
+            byte[] response = ("{\"file_name\":\"build.log\",\"file_type\":\"text/plain\","
+                    + "\"file_url\":\"https://dl.pushbulletusercontent.com/abc/build.log\","
+                    + "\"upload_url\":\"https://upload.pushbullet.com/upload/abc\"}").getBytes(StandardCharsets.UTF_8);
+
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+
+        httpClient = PushbulletClient.createHttpClient(2);
+        client = new PushbulletClient("http://localhost:" + server.getAddress().getPort() + "/v2/", "o.token", httpClient);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testPushesReuseConnection() throws NotificationException {
+        for (int i = 0; i < 5; i++) {
+            JsonObject push = new JsonObject();
+            push.addProperty("type", "note");
+            push.addProperty("body", "build #" + i);
+
+            assertThat(client.push(push).get("iden").getAsString()).isEqualTo("ujpah72o0");
+        }
+
+        assertThat(bodies).hasSize(5);
+        assertThat(bodies.get(0)).isEqualTo("{\"type\":\"note\",\"body\":\"build #0\"}");
+        assertThat(accessTokens).containsExactly("o.token", "o.token", "o.token", "o.token", "o.token");
+        assertThat(clientPorts).hasSize(1);
+    }
+
+    @Test
+    public void testPushRejected() {
+        try {
+            client.push(new JsonObject());
+            fail();
+        } catch (NotificationException e) {
+            assertThat(e.getMessage()).contains("400");
+            assertThat(e.getMessage()).contains("Missing push type.");
+        }
+    }
+
+    @Test
+    public void testRevokedAccessTokenRejected() {
+        PushbulletClient revoked = new PushbulletClient(
+                "http://localhost:" + server.getAddress().getPort() + "/v2/", "o.revoked", httpClient);
+
+        try {
+            revoked.push(new JsonObject());
+            fail();
+        } catch (AccessTokenRejectedException e) {
+            assertThat(e.getMessage()).isEqualTo("Pushbullet has rejected the access token: Access token is missing or invalid.");
+        } catch (NotificationException e) {
+            fail("Rejected access token not reported: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testRequestUpload() throws NotificationException {
+        JsonObject uploadRequest = client.requestUpload("build.log", "text/plain");
+
+        assertThat(bodies).containsExactly("{\"file_name\":\"build.log\",\"file_type\":\"text/plain\"}");
+        assertThat(uploadRequest.get("upload_url").getAsString()).isEqualTo("https://upload.pushbullet.com/upload/abc");
+    }
+
+    @Test
+    public void testClientsAreCachedPerAccessToken() throws NotificationException {
+        assertThat(PushbulletClient.forAccessToken("a")).isSameAs(PushbulletClient.forAccessToken("a"));
+        assertThat(PushbulletClient.forAccessToken("a")).isNotSameAs(PushbulletClient.forAccessToken("b"));
+    }
+
+    @Test
+    public void testMissingAccessToken() {
+        try {
+            PushbulletClient.forAccessToken(null);
+            fail();
+        } catch (NotificationException e) {
+            assertThat(e.getMessage()).startsWith("Missing Pushbullet access token");
+        }
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.pushbullet;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+import com.yfiton.api.annotation.ParameterBinder;
+import com.yfiton.api.exceptions.NotificationException;
+import com.yfiton.api.exceptions.ParameterException;
+import com.yfiton.api.parameter.ParameterValue;
+import com.yfiton.api.parameter.Parameters;
+import com.yfiton.testing.http.UploadServer;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests associated to {@link PushbulletNotifier}.
+ *
+ * @author lpellegr
+ */
+public class PushbulletNotifierTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> accessTokens = new CopyOnWriteArrayList<>();
+
+    private final List<String> pushes = new CopyOnWriteArrayList<>();
+
+    private final List<String> uploadRequests = new CopyOnWriteArrayList<>();
+
+    private HttpServer server;
+
+    private UploadServer uploadServer;
+
+    private CloseableHttpClient httpClient;
+
+    private Path configurationFile;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v2/pushes", exchange -> {
+            pushes.add(new String(ByteStreams.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8));
+
+            String accessToken = exchange.getRequestHeaders().getFirst("Access-Token");
+            accessTokens.add(accessToken);
+
+            boolean revoked = accessToken.equals("o.revoked");
+            byte[] response = (revoked
+                    ? "{\"error\":{\"message\":\"Access token is missing or invalid.\"}}"
+                    : "{\"iden\":\"ujpah72o0\"}").getBytes(StandardCharsets.UTF_8);
+
+            exchange.sendResponseHeaders(revoked ? 401 : 200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.createContext("/v2/upload-request", exchange -> {
+            uploadRequests.add(new String(ByteStreams.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8));
+
+            JsonObject uploadRequest = new JsonObject();
+            uploadRequest.addProperty("file_name", "artifact.bin");
+            uploadRequest.addProperty("file_type", "application/octet-stream");
+            uploadRequest.addProperty("file_url", "https://dl.pushbulletusercontent.com/abc/artifact.bin");
+            uploadRequest.addProperty("upload_url", uploadServer.getUrl("/upload/abc"));
+
+            byte[] response = uploadRequest.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+
+        uploadServer = new UploadServer.Builder().start();
+
+        httpClient = PushbulletClient.createHttpClient(2);
+
+        configurationFile = folder.getRoot().toPath().resolve("pushbullet.ini");
+        ConfiguredNotifier.configurationFile = configurationFile;
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        httpClient.close();
+        uploadServer.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testAccessTokenReadAgainWhenConfigurationChanges() throws IOException, NotificationException {
+        writeAccessToken("o.first");
+
+        PushbulletNotifier notifier = new ConfiguredNotifier();
+
+        assertThat(notifier.getAccessToken()).isEqualTo("o.first");
+
+        // as done by another process authorizing access again
+        writeAccessToken("o.second");
+        Files.setLastModifiedTime(configurationFile,
+                FileTime.fromMillis(Files.getLastModifiedTime(configurationFile).toMillis() + 2000));
+
+        assertThat(notifier.getAccessToken()).isEqualTo("o.second");
+    }
+
+    @Test
+    public void testRejectedAccessTokenDropped() throws IOException, NotificationException, ParameterException {
+        writeAccessToken("o.revoked");
+
+        PushbulletNotifier notifier = new ConfiguredNotifier();
+        PushbulletNotifier invocation = bind(notifier, ImmutableMap.of("body", "Build failed"));
+
+        try {
+            invocation.push(createClient(invocation.getAccessToken()));
+            fail("Rejected access token not reported");
+        } catch (AccessTokenRejectedException e) {
+            assertThat(e.getMessage()).contains("Access token is missing or invalid.");
+        }
+
+        // rewritten with the same modification time, only read since the cached token has been dropped
+        FileTime lastModified = Files.getLastModifiedTime(configurationFile);
+        writeAccessToken("o.renewed");
+        Files.setLastModifiedTime(configurationFile, lastModified);
+
+        invocation.push(createClient(invocation.getAccessToken()));
+
+        assertThat(accessTokens).containsExactly("o.revoked", "o.renewed").inOrder();
+    }
+
+    @Test
+    public void testMissingAccessTokenReported() throws NotificationException {
+        PushbulletNotifier notifier = new ConfiguredNotifier();
+
+        assertThat(notifier.getAccessToken()).isNull();
+
+        try {
+            PushbulletClient.forAccessToken(notifier.getAccessToken());
+            fail("Missing access token not reported");
+        } catch (NotificationException e) {
+            assertThat(e.getMessage()).startsWith("Missing Pushbullet access token");
+        }
+    }
+
+    @Test
+    public void testPushFile() throws IOException, NotificationException, ParameterException {
+        writeAccessToken("o.valid");
+
+        byte[] content = new byte[10 * 1024];
+        new Random(42).nextBytes(content);
+
+        Path file = folder.newFile("artifact.bin").toPath();
+        Files.write(file, content);
+
+        // the first chunk is interrupted, the upload resumes from the bytes received
+        uploadServer.failNextRequestAfter(1024);
+
+        PushbulletNotifier invocation = bind(new ConfiguredNotifier(), ImmutableMap.of(
+                "body", "Build #42", "file", file.toString(), "uploadChunkSize", 4096));
+        invocation.push(createClient(invocation.getAccessToken()));
+
+        assertThat(uploadRequests).hasSize(1);
+        assertThat(uploadRequests.get(0)).contains("\"file_name\":\"artifact.bin\"");
+        assertThat(uploadServer.getReceivedBytes("/upload/abc")).isEqualTo(content);
+
+        // the file is pushed once uploaded
+        assertThat(pushes).hasSize(1);
+        assertThat(pushes.get(0)).contains("\"type\":\"file\"");
+        assertThat(pushes.get(0)).contains("\"file_url\":\"https://dl.pushbulletusercontent.com/abc/artifact.bin\"");
+        assertThat(accessTokens).containsExactly("o.valid");
+    }
+
+    private void writeAccessToken(String accessToken) throws IOException {
+        Files.write(configurationFile, ImmutableList.of("accessToken = " + accessToken), StandardCharsets.UTF_8);
+    }
+
+    private PushbulletClient createClient(String accessToken) {
+        return new PushbulletClient("http://localhost:" + server.getAddress().getPort() + "/v2/", accessToken, httpClient);
+    }
+
+    private static PushbulletNotifier bind(PushbulletNotifier notifier, Map<String, ?> values) throws ParameterException {
+        ImmutableMap.Builder<String, ParameterValue> parameters = ImmutableMap.builder();
+        values.forEach((name, value) -> parameters.put(name, new ParameterValue(value, false)));
+
+        PushbulletNotifier result = (PushbulletNotifier) notifier.copy();
+        ParameterBinder.of(PushbulletNotifier.class).bind(result, new Parameters(parameters.build()));
+
+        return result;
+    }
+
+    /**
+     * Reads its configuration from the temporary folder of the test.
+     */
+    private static final class ConfiguredNotifier extends PushbulletNotifier {
+
+        private static volatile Path configurationFile;
+
+        @Override
+        protected Path getConfigurationFilePath() {
+            return configurationFile;
+        }
+
+    }
+
+}
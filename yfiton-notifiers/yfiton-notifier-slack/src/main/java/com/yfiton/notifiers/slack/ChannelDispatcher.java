@@ -0,0 +1,172 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.slack;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yfiton.api.exceptions.NotificationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delays messages according to a {@link ChannelRateLimiter} before sending
+ * them. Messages wait for their turn on a scheduler and are then sent from a
+ * separate executor, so that a channel that is throttled, paused by Slack or
+ * slow to answer does not hold back the others.
+ * A message rejected because of rate limiting pauses its channel for the
+ * time requested by Slack and is sent again afterwards.
+ *
+ * @author lpellegr
+ */
+final class ChannelDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ChannelDispatcher.class);
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final ChannelRateLimiter limiter;
+
+    // only used to wait, messages are never sent from its threads
+    private final ScheduledExecutorService scheduler;
+
+    private final Executor senders;
+
+    private final int maxAttempts;
+
+    private static final class LazyHolder {
+
+        // Slack allows about one message per second per channel
+        private static final ChannelDispatcher INSTANCE = new ChannelDispatcher(
+                new ChannelRateLimiter(Ticker.systemTicker(), 1, 2),
+                Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder().setNameFormat("yfiton-slack-scheduler-%d").setDaemon(true).build()),
+                Executors.newCachedThreadPool(
+                        new ThreadFactoryBuilder().setNameFormat("yfiton-slack-%d").setDaemon(true).build()),
+                MAX_ATTEMPTS);
+
+    }
+
+    ChannelDispatcher(ChannelRateLimiter limiter, ScheduledExecutorService scheduler, Executor senders, int maxAttempts) {
+        this.limiter = limiter;
+        this.scheduler = scheduler;
+        this.senders = senders;
+        this.maxAttempts = maxAttempts;
+    }
+
+    static ChannelDispatcher getDefault() {
+        return LazyHolder.INSTANCE;
+    }
+
+    /**
+     * Sends a message on the specified channel once the rate limit allows it.
+     *
+     * @param channel  the key identifying the channel the message is sent on.
+     * @param delivery the action sending the message.
+     * @return a future completed once the message is sent.
+     */
+    CompletableFuture<Void> submit(String channel, Delivery delivery) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+
+        schedule(channel, delivery, 1, limiter.reserve(channel), result);
+
+        return result;
+    }
+
+    /**
+     * Waits for a message submitted with {@link #submit(String, Delivery)}
+     * to be sent.
+     *
+     * @param future the future returned when the message was submitted.
+     * @throws NotificationException if the message could not be sent.
+     */
+    static void await(CompletableFuture<Void> future) throws NotificationException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NotificationException("Interrupted while sending Slack message", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof NotificationException) {
+                throw (NotificationException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            throw new NotificationException(cause);
+        }
+    }
+
+    private void schedule(String channel, Delivery delivery, int attempt, long delay, CompletableFuture<Void> result) {
+        scheduler.schedule(() -> {
+            try {
+                senders.execute(() -> run(channel, delivery, attempt, result));
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(e);
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void run(String channel, Delivery delivery, int attempt, CompletableFuture<Void> result) {
+        long remainingPause = limiter.getRemainingPause(channel);
+
+        if (remainingPause > 0) {
+            // the channel has been paused after the message was scheduled
+            schedule(channel, delivery, attempt, remainingPause, result);
+            return;
+        }
+
+        try {
+            delivery.send();
+            result.complete(null);
+        } catch (RateLimitedException e) {
+            long retryAfter = e.getRetryAfter(TimeUnit.MILLISECONDS);
+            limiter.pause(channel, retryAfter, TimeUnit.MILLISECONDS);
+
+            if (attempt >= maxAttempts) {
+                result.completeExceptionally(e);
+                return;
+            }
+
+            log.debug("Channel {} is rate limited, retrying in {} ms", channel, retryAfter);
+
+            schedule(channel, delivery, attempt + 1, limiter.reserve(channel), result);
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Action sending a message.
+     */
+    @FunctionalInterface
+    interface Delivery {
+
+        void send() throws NotificationException;
+
+    }
+
+}
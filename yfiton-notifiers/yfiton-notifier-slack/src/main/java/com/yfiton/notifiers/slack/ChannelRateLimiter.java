@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.slack;
+
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket per channel. Each channel accepts a burst of messages, then
+ * a steady number of messages per second. Callers reserve a slot and get
+ * the time to wait before sending, so that messages for a same channel are
+ * spread out in the order of reservation while other channels are not
+ * delayed.
+ * <p/>
+ * The bucket is implemented as a theoretical arrival time: the slot
+ * returned to a caller is the arrival time minus the burst tolerance and
+ * each reservation pushes the arrival time by the emission interval.
+ *
+ * @author lpellegr
+ */
+final class ChannelRateLimiter {
+
+    private final Ticker ticker;
+
+    private final long interval;
+
+    // how far ahead of the theoretical arrival time a message may be sent
+    private final long tolerance;
+
+    // channel -> theoretical arrival time, in ticker nanoseconds
+    private final ConcurrentMap<String, Long> arrivals = new ConcurrentHashMap<>();
+
+    // channel -> end of the pause requested by Slack, in ticker nanoseconds
+    private final ConcurrentMap<String, Long> pauses = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a limiter.
+     *
+     * @param ticker            the source of time.
+     * @param messagesPerSecond the number of messages per second allowed per channel.
+     * @param burst             the number of messages that may be sent at once on an idle channel.
+     */
+    ChannelRateLimiter(Ticker ticker, double messagesPerSecond, int burst) {
+        if (messagesPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException(
+                    "Invalid rate: " + messagesPerSecond + " messages per second with a burst of " + burst);
+        }
+
+        this.ticker = ticker;
+        this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / messagesPerSecond);
+        this.tolerance = interval * (burst - 1);
+    }
+
+    /**
+     * Reserves a slot for sending a message on the specified channel.
+     *
+     * @param channel the channel to send a message on.
+     * @return the time to wait in nanoseconds before sending the message.
+     */
+    long reserve(String channel) {
+        long now = ticker.read();
+        long[] slot = new long[1];
+
+        arrivals.compute(channel, (key, arrival) -> {
+            long start = arrival == null ? now : Math.max(now, arrival - tolerance);
+            slot[0] = start;
+
+            return Math.max(arrival == null ? now : arrival, start) + interval;
+        });
+
+        return slot[0] - now;
+    }
+
+    /**
+     * Prevents messages from being sent on the specified channel for the
+     * specified time. Slots reserved afterwards start at the end of the
+     * pause, one per emission interval. Slots already reserved must be
+     * checked with {@link #getRemainingPause(String)} before sending.
+     *
+     * @param channel  the channel to pause.
+     * @param duration the time during which the channel is paused.
+     * @param unit     the unit of {@code duration}.
+     */
+    void pause(String channel, long duration, TimeUnit unit) {
+        long resumption = ticker.read() + unit.toNanos(duration);
+
+        pauses.merge(channel, resumption, Math::max);
+        arrivals.merge(channel, resumption + tolerance, Math::max);
+    }
+
+    /**
+     * Returns the time remaining before the specified channel is resumed.
+     *
+     * @param channel the channel to check.
+     * @return the time to wait in nanoseconds, {@code 0} if the channel is not paused.
+     */
+    long getRemainingPause(String channel) {
+        Long resumption = pauses.get(channel);
+
+        if (resumption == null) {
+            return 0;
+        }
+
+        long remaining = resumption - ticker.read();
+
+        if (remaining <= 0) {
+            pauses.remove(channel, resumption);
+            return 0;
+        }
+
+        return remaining;
+    }
+
+}
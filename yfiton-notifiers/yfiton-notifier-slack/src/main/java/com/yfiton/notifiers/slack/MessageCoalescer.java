@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.slack;
+
+import com.google.common.base.Joiner;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Merges messages sent to a same channel within a short time window into a
+ * single post. The first message of a channel opens a window, the window is
+ * closed and its messages are posted together once it has lasted for the
+ * specified time, once it holds the maximum number of messages, or before
+ * the merged text exceeds the maximum length of a post.
+ *
+ * @author lpellegr
+ */
+final class MessageCoalescer {
+
+    private static final String SEPARATOR = "\n";
+
+    private final ScheduledExecutorService scheduler;
+
+    private final int maxLength;
+
+    // channel -> open window, guarded by this
+    private final Map<String, Window> windows = new HashMap<>();
+
+    private static final class LazyHolder {
+
+        // Slack advises to keep messages below 4000 characters
+        private static final MessageCoalescer INSTANCE = new MessageCoalescer(
+                Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder().setNameFormat("yfiton-slack-coalescer").setDaemon(true).build()),
+                4000);
+
+    }
+
+    MessageCoalescer(ScheduledExecutorService scheduler, int maxLength) {
+        this.scheduler = scheduler;
+        this.maxLength = maxLength;
+    }
+
+    static MessageCoalescer getDefault() {
+        return LazyHolder.INSTANCE;
+    }
+
+    /**
+     * Adds a message to the window of the specified channel.
+     *
+     * @param channel     the key identifying the channel the message is sent on.
+     * @param text        the text of the message.
+     * @param window      the time during which messages are collected once a window is opened.
+     * @param unit        the unit of {@code window}.
+     * @param maxMessages the maximum number of messages merged into a post.
+     * @param poster      the function posting merged text if this message opens a window.
+     * @return a future completed once the post including the message is sent.
+     */
+    CompletableFuture<Void> submit(String channel, String text, long window, TimeUnit unit, int maxMessages,
+                                   Function<String, CompletableFuture<Void>> poster) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        List<Window> closed = new ArrayList<>(2);
+
+        synchronized (this) {
+            Window current = windows.get(channel);
+
+            if (current != null && current.length + SEPARATOR.length() + text.length() > maxLength) {
+                closed.add(close(channel, current));
+                current = null;
+            }
+
+            if (current == null) {
+                Window opened = new Window(poster);
+                opened.timer = scheduler.schedule(() -> expire(channel, opened), window, unit);
+                windows.put(channel, opened);
+                current = opened;
+            }
+
+            current.add(text, result);
+
+            if (current.texts.size() >= maxMessages) {
+                closed.add(close(channel, current));
+            }
+        }
+
+        closed.forEach(Window::post);
+
+        return result;
+    }
+
+    private void expire(String channel, Window window) {
+        synchronized (this) {
+            if (!windows.remove(channel, window)) {
+                // already closed because it was full
+                return;
+            }
+        }
+
+        window.post();
+    }
+
+    private Window close(String channel, Window window) {
+        windows.remove(channel);
+        window.timer.cancel(false);
+
+        return window;
+    }
+
+    private static final class Window {
+
+        private final Function<String, CompletableFuture<Void>> poster;
+
+        private final List<String> texts = new ArrayList<>();
+
+        private final List<CompletableFuture<Void>> results = new ArrayList<>();
+
+        private int length = -SEPARATOR.length();
+
+        private ScheduledFuture<?> timer;
+
+        private Window(Function<String, CompletableFuture<Void>> poster) {
+            this.poster = poster;
+        }
+
+        private void add(String text, CompletableFuture<Void> result) {
+            texts.add(text);
+            results.add(result);
+            length += SEPARATOR.length() + text.length();
+        }
+
+        private void post() {
+            CompletableFuture<Void> post;
+
+            try {
+                post = poster.apply(Joiner.on(SEPARATOR).join(texts));
+            } catch (RuntimeException e) {
+                results.forEach(result -> result.completeExceptionally(e));
+                return;
+            }
+
+            post.whenComplete((value, failure) -> {
+                for (CompletableFuture<Void> result : results) {
+                    if (failure == null) {
+                        result.complete(null);
+                    } else {
+                        result.completeExceptionally(failure);
+                    }
+                }
+            });
+        }
+
+    }
+
+}
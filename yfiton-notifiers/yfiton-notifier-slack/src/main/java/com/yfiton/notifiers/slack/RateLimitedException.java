@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.slack;
+
+import com.yfiton.api.exceptions.NotificationException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thrown when Slack refuses a message because too many messages have been
+ * sent recently.
+ *
+ * @author lpellegr
+ */
+final class RateLimitedException extends NotificationException {
+
+    // used when Slack does not tell how long to wait
+    static final long DEFAULT_RETRY_AFTER_MILLIS = 1000;
+
+    private final long retryAfterMillis;
+
+    RateLimitedException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Returns the time to wait before sending another message, as requested by Slack.
+     *
+     * @param unit the unit of the value to return.
+     * @return the time to wait before sending another message.
+     */
+    long getRetryAfter(TimeUnit unit) {
+        return unit.convert(retryAfterMillis, TimeUnit.MILLISECONDS);
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.slack;
+
+import com.yfiton.api.exceptions.NotificationException;
+
+/**
+ * Thrown when a Slack Web API method answers with an error code.
+ *
+ * @author lpellegr
+ */
+final class SlackApiException extends NotificationException {
+
+    private final String error;
+
+    SlackApiException(String message, String error) {
+        super(message);
+        this.error = error;
+    }
+
+    /**
+     * Returns the error code sent by Slack, e.g. {@code channel_not_found}.
+     *
+     * @return the error code sent by Slack.
+     */
+    String getError() {
+        return error;
+    }
+
+}
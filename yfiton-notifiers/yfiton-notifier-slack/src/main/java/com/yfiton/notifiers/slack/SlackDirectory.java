@@ -0,0 +1,278 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.slack;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.yfiton.api.exceptions.NotificationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Directory of the channels of a team. It maps channel names (#name) and
+ * user names (@name) to the identifiers of the channel and of the direct
+ * message channel opened with the user, so that messages can be posted
+ * without Slack resolving names again.
+ * <p/>
+ * Entries are looked up lazily and expire after a time to live. The
+ * directory is saved to a file when a lookup changes it so that it is
+ * shared by subsequent invocations. When a name cannot be resolved, for
+ * instance because the access token was granted before the scopes required
+ * for listing channels were asked, the name is kept as is.
+ *
+ * @author lpellegr
+ */
+final class SlackDirectory {
+
+    private static final Logger log = LoggerFactory.getLogger(SlackDirectory.class);
+
+    private static final Type ENTRIES_TYPE = new TypeToken<Map<String, Entry>>() {
+    }.getType();
+
+    // file -> directory
+    private static final ConcurrentMap<Path, SlackDirectory> directories = new ConcurrentHashMap<>();
+
+    private final Path file;
+
+    private final Clock clock;
+
+    private final Gson gson = new Gson();
+
+    // name -> entry, guarded by this
+    private final Map<String, Entry> entries;
+
+    // name -> identifier being looked up
+    private final ConcurrentMap<String, CompletableFuture<String>> lookups = new ConcurrentHashMap<>();
+
+    SlackDirectory(Path file, Clock clock) {
+        this.file = file;
+        this.clock = clock;
+        this.entries = load(file);
+    }
+
+    /**
+     * Returns the directory of the specified team, loading it from the
+     * specified cache folder the first time.
+     *
+     * @param cacheDir the folder where the directory is saved.
+     * @param teamId   the team identifier.
+     * @return the directory of the specified team.
+     */
+    static SlackDirectory forTeam(Path cacheDir, String teamId) {
+        return directories.computeIfAbsent(
+                cacheDir.resolve("directory-" + teamId + ".json"), path -> new SlackDirectory(path, Clock.systemUTC()));
+    }
+
+    /**
+     * Returns the identifier of the specified channel. Lookups run without
+     * holding the directory lock, so that names already resolved are served
+     * while Slack is queried, and concurrent lookups of the same name share
+     * a single query.
+     *
+     * @param channel    a channel name (#name), a user name (@name) or a channel identifier.
+     * @param timeToLive the time after which a resolved name is looked up again.
+     * @param unit       the unit of {@code timeToLive}.
+     * @param lookup     the lookup to use for names that are unknown or expired.
+     * @return the identifier of the channel, or the specified channel if it cannot be resolved.
+     */
+    String resolve(String channel, long timeToLive, TimeUnit unit, Lookup lookup) {
+        if (!channel.startsWith("#") && !channel.startsWith("@")) {
+            return channel;
+        }
+
+        synchronized (this) {
+            Entry entry = entries.get(channel);
+
+            if (entry != null && entry.expiresAt > clock.millis()) {
+                return entry.id;
+            }
+        }
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> pending = lookups.putIfAbsent(channel, future);
+
+        if (pending != null) {
+            // another thread is looking up the same name
+            return pending.join();
+        }
+
+        String result = channel;
+
+        try {
+            result = lookUp(channel, timeToLive, unit, lookup);
+            return result;
+        } finally {
+            lookups.remove(channel, future);
+            future.complete(result);
+        }
+    }
+
+    private String lookUp(String channel, long timeToLive, TimeUnit unit, Lookup lookup) {
+        long expiresAt = clock.millis() + unit.toMillis(timeToLive);
+        Map<String, String> resolved = new HashMap<>();
+
+        try {
+            if (channel.startsWith("#")) {
+                // a single call resolves all channels of the team
+                for (Map.Entry<String, String> channelEntry : lookup.listChannels().entrySet()) {
+                    resolved.put("#" + channelEntry.getKey(), channelEntry.getValue());
+                }
+            } else {
+                String userId = lookup.listUsers().get(channel.substring(1));
+
+                if (userId != null) {
+                    resolved.put(channel, lookup.openDirectMessageChannel(userId));
+                }
+            }
+        } catch (NotificationException | RuntimeException e) {
+            log.debug("Resolving {} has failed, Slack will resolve it: {}", channel, e.getMessage());
+
+            // do not look up the name again at each message, but keep the failure out of the file
+            synchronized (this) {
+                entries.put(channel, new Entry(channel, expiresAt));
+            }
+
+            return channel;
+        }
+
+        // do not look up unknown names at each message
+        resolved.putIfAbsent(channel, channel);
+
+        update(resolved, expiresAt);
+
+        return resolved.get(channel);
+    }
+
+    /*
+     * Merges the specified names into the directory and saves it if an
+     * identifier is new or has changed, or if an expired entry is renewed.
+     * Entries that are still valid and unchanged keep their expiration time.
+     */
+    private synchronized void update(Map<String, String> resolved, long expiresAt) {
+        long now = clock.millis();
+        boolean changed = false;
+
+        for (Map.Entry<String, String> entry : resolved.entrySet()) {
+            Entry previous = entries.get(entry.getKey());
+
+            if (previous == null || previous.expiresAt <= now || !previous.id.equals(entry.getValue())) {
+                entries.put(entry.getKey(), new Entry(entry.getValue(), expiresAt));
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            save();
+        }
+    }
+
+    /**
+     * Removes the specified channel from the directory, for instance because
+     * the identifier it is mapped to is no longer valid.
+     *
+     * @param channel the channel name.
+     */
+    synchronized void invalidate(String channel) {
+        if (entries.remove(channel) != null) {
+            save();
+        }
+    }
+
+    private Map<String, Entry> load(Path file) {
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                Map<String, Entry> result = gson.fromJson(reader, ENTRIES_TYPE);
+
+                if (result != null) {
+                    return new HashMap<>(result);
+                }
+            } catch (IOException | JsonParseException e) {
+                log.warn("Ignoring Slack directory {}: {}", file, e.getMessage());
+            }
+        }
+
+        return new HashMap<>();
+    }
+
+    private void save() {
+        try {
+            Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                gson.toJson(entries, ENTRIES_TYPE, writer);
+            }
+
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Saving Slack directory {} has failed: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Queries Slack for the names that are not in the directory.
+     */
+    interface Lookup {
+
+        /**
+         * @return the identifiers of the channels of the team, by channel name without leading #.
+         */
+        Map<String, String> listChannels() throws NotificationException;
+
+        /**
+         * @return the identifiers of the users of the team, by user name without leading @.
+         */
+        Map<String, String> listUsers() throws NotificationException;
+
+        /**
+         * @param userId the identifier of a user.
+         * @return the identifier of the direct message channel with the specified user.
+         */
+        String openDirectMessageChannel(String userId) throws NotificationException;
+
+    }
+
+    private static final class Entry {
+
+        private final String id;
+
+        private final long expiresAt;
+
+        private Entry(String id, long expiresAt) {
+            this.id = id;
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
+}
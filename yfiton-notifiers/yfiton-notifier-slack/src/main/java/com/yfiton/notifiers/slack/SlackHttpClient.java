@@ -0,0 +1,363 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.slack;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.yfiton.api.exceptions.NotificationException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.mime.HttpMultipartMode;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.entity.mime.content.FileBody;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP client shared by all Slack notifications sent from the same process.
+ * Connections to Slack endpoints are pooled and kept alive so that only the
+ * first request pays for the TCP and TLS handshakes. Web API methods are
+ * authenticated per request with the access token of the team, so that the
+ * same pool serves messages, uploads and directory lookups of all teams.
+ *
+ * @author lpellegr
+ */
+final class SlackHttpClient {
+
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 8;
+
+    private static final int CONNECT_TIMEOUT = 10000;
+
+    private static final int SOCKET_TIMEOUT = 30000;
+
+    private static final ContentType TEXT_PLAIN_UTF_8 = ContentType.create("text/plain", StandardCharsets.UTF_8);
+
+    private static final String API_URL = "https://slack.com/api/";
+
+    private static final String ERROR_RATE_LIMITED = "ratelimited";
+
+    // number of channels or users asked per page, Slack recommends no more than 200
+    private static final int PAGE_SIZE = 200;
+
+    private final String apiUrl;
+
+    private final CloseableHttpClient client;
+
+    SlackHttpClient(String apiUrl, int maxConnectionsPerRoute) {
+        this.apiUrl = apiUrl;
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(60, TimeUnit.SECONDS);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setMaxTotal(maxConnectionsPerRoute * 4);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(CONNECT_TIMEOUT)
+                .setSocketTimeout(SOCKET_TIMEOUT)
+                .build();
+
+        this.client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .build();
+    }
+
+    static SlackHttpClient getDefault() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Posts the specified payload to an incoming webhook.
+     *
+     * @param webhookUrl the URL of the incoming webhook.
+     * @param payload    the message to post.
+     * @throws NotificationException if the request fails or if Slack rejects the message.
+     */
+    void postWebhook(String webhookUrl, JsonObject payload) throws NotificationException {
+        HttpPost request = new HttpPost(webhookUrl);
+        request.setEntity(new StringEntity(payload.toString(), ContentType.APPLICATION_JSON));
+
+        try (CloseableHttpResponse response = client.execute(request)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+
+            // the entity must be fully consumed for the connection to return to the pool
+            HttpEntity entity = response.getEntity();
+            String body = entity == null ? "" : EntityUtils.toString(entity);
+
+            if (statusCode == 429) {
+                throw new RateLimitedException("Slack webhook rate limit exceeded", getRetryAfterMillis(response));
+            } else if (statusCode != 200) {
+                throw new NotificationException(
+                        "Posting to Slack webhook has failed with status " + statusCode + ": " + body);
+            }
+        } catch (IOException e) {
+            throw new NotificationException("Posting to Slack webhook has failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Posts a message to the specified channel with the chat.postMessage
+     * method, as the user who granted the access token.
+     *
+     * @param accessToken the access token of the team to post to.
+     * @param channel     the identifier or name of the channel to post to.
+     * @param text        the text of the message.
+     * @throws RateLimitedException  if Slack asks to wait before posting again.
+     * @throws SlackApiException     if Slack rejects the message.
+     * @throws NotificationException if the request fails.
+     */
+    void postMessage(String accessToken, String channel, String text) throws NotificationException {
+        HttpPost request = new HttpPost(apiUrl + "chat.postMessage");
+        request.setHeader("Authorization", "Bearer " + accessToken);
+        request.setEntity(new UrlEncodedFormEntity(ImmutableList.of(
+                new BasicNameValuePair("channel", channel),
+                new BasicNameValuePair("text", text),
+                new BasicNameValuePair("as_user", "true")), StandardCharsets.UTF_8));
+
+        try (CloseableHttpResponse response = client.execute(request)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+
+            HttpEntity entity = response.getEntity();
+            String body = entity == null ? "" : EntityUtils.toString(entity, StandardCharsets.UTF_8);
+
+            if (statusCode == 429) {
+                throw new RateLimitedException(
+                        "Slack rate limit exceeded for channel " + channel, getRetryAfterMillis(response));
+            } else if (statusCode != 200) {
+                throw new NotificationException(
+                        "Posting to Slack has failed with status " + statusCode + ": " + body);
+            }
+
+            JsonObject json = new JsonParser().parse(body).getAsJsonObject();
+
+            if (!json.get("ok").getAsBoolean()) {
+                String error = json.get("error").getAsString();
+
+                if (ERROR_RATE_LIMITED.equals(error)) {
+                    throw new RateLimitedException(
+                            "Slack rate limit exceeded for channel " + channel, getRetryAfterMillis(response));
+                }
+
+                throw new SlackApiException("Posting to Slack channel " + channel + " has failed: " + error, error);
+            }
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            throw new NotificationException("Posting to Slack has failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Uploads the specified file and shares it on the specified channel.
+     * The file is streamed from disk while the request is sent, so that its
+     * size does not matter.
+     *
+     * @param accessToken the access token of the team to upload the file to.
+     * @param file        the file to upload.
+     * @param channel     the identifier or name of the channel to share the file on.
+     * @return the file object returned by Slack.
+     * @throws NotificationException if the request fails or if Slack rejects the file.
+     */
+    JsonObject uploadFile(String accessToken, Path file, String channel) throws NotificationException {
+        String fileName = file.getFileName().toString();
+
+        HttpPost request = new HttpPost(apiUrl + "files.upload");
+        request.setHeader("Authorization", "Bearer " + accessToken);
+        request.setEntity(MultipartEntityBuilder.create()
+                .setMode(HttpMultipartMode.RFC6532)
+                .addTextBody("channels", channel, TEXT_PLAIN_UTF_8)
+                .addTextBody("filename", fileName, TEXT_PLAIN_UTF_8)
+                .addPart("file", new FileBody(file.toFile(), ContentType.APPLICATION_OCTET_STREAM, fileName))
+                .build());
+
+        try (CloseableHttpResponse response = client.execute(request)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+
+            HttpEntity entity = response.getEntity();
+            String body = entity == null ? "" : EntityUtils.toString(entity, StandardCharsets.UTF_8);
+
+            if (statusCode == 429) {
+                throw new RateLimitedException("Slack file upload rate limit exceeded", getRetryAfterMillis(response));
+            } else if (statusCode != 200) {
+                throw new NotificationException(
+                        "Uploading " + fileName + " to Slack has failed with status " + statusCode + ": " + body);
+            }
+
+            JsonObject json = new JsonParser().parse(body).getAsJsonObject();
+
+            if (!json.get("ok").getAsBoolean()) {
+                throw new NotificationException(
+                        "Uploading " + fileName + " to Slack has failed: " + json.get("error").getAsString());
+            }
+
+            return json.getAsJsonObject("file");
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            throw new NotificationException("Uploading " + fileName + " to Slack has failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lists the channels of the team that granted the access token, with
+     * the channels.list method. Pages are requested until the cursor
+     * returned by Slack is empty.
+     *
+     * @param accessToken the access token of the team.
+     * @return the identifiers of the channels, by channel name.
+     * @throws NotificationException if a request fails or if Slack rejects it.
+     */
+    Map<String, String> listChannels(String accessToken) throws NotificationException {
+        return listNames(accessToken, "channels.list", "channels");
+    }
+
+    /**
+     * Lists the users of the team that granted the access token, with the
+     * users.list method. Pages are requested until the cursor returned by
+     * Slack is empty.
+     *
+     * @param accessToken the access token of the team.
+     * @return the identifiers of the users, by user name.
+     * @throws NotificationException if a request fails or if Slack rejects it.
+     */
+    Map<String, String> listUsers(String accessToken) throws NotificationException {
+        return listNames(accessToken, "users.list", "members");
+    }
+
+    /**
+     * Opens a direct message channel with the specified user, with the
+     * im.open method. The channel is returned as is if it is already open.
+     *
+     * @param accessToken the access token of the team.
+     * @param userId      the identifier of the user.
+     * @return the identifier of the direct message channel.
+     * @throws NotificationException if the request fails or if Slack rejects it.
+     */
+    String openDirectMessageChannel(String accessToken, String userId) throws NotificationException {
+        return call(accessToken, "im.open", ImmutableList.of(new BasicNameValuePair("user", userId)))
+                .getAsJsonObject("channel").get("id").getAsString();
+    }
+
+    private Map<String, String> listNames(String accessToken, String method, String member) throws NotificationException {
+        Map<String, String> result = new LinkedHashMap<>();
+        String cursor = "";
+
+        do {
+            JsonObject json = call(accessToken, method, ImmutableList.of(
+                    new BasicNameValuePair("limit", Integer.toString(PAGE_SIZE)),
+                    new BasicNameValuePair("cursor", cursor)));
+
+            for (JsonElement element : json.getAsJsonArray(member)) {
+                JsonObject object = element.getAsJsonObject();
+                result.putIfAbsent(object.get("name").getAsString(), object.get("id").getAsString());
+            }
+
+            JsonObject metadata = json.getAsJsonObject("response_metadata");
+            cursor = metadata != null && metadata.has("next_cursor") ? metadata.get("next_cursor").getAsString() : "";
+        } while (!cursor.isEmpty());
+
+        return result;
+    }
+
+    /*
+     * Calls the specified Web API method and returns the response once
+     * checked to be successful.
+     */
+    private JsonObject call(String accessToken, String method, List<NameValuePair> parameters) throws NotificationException {
+        HttpPost request = new HttpPost(apiUrl + method);
+        request.setHeader("Authorization", "Bearer " + accessToken);
+        request.setEntity(new UrlEncodedFormEntity(parameters, StandardCharsets.UTF_8));
+
+        try (CloseableHttpResponse response = client.execute(request)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+
+            HttpEntity entity = response.getEntity();
+            String body = entity == null ? "" : EntityUtils.toString(entity, StandardCharsets.UTF_8);
+
+            if (statusCode == 429) {
+                throw new RateLimitedException("Slack rate limit exceeded for method " + method, getRetryAfterMillis(response));
+            } else if (statusCode != 200) {
+                throw new NotificationException(
+                        "Calling Slack method " + method + " has failed with status " + statusCode + ": " + body);
+            }
+
+            JsonObject json = new JsonParser().parse(body).getAsJsonObject();
+
+            if (!json.get("ok").getAsBoolean()) {
+                String error = json.get("error").getAsString();
+                throw new SlackApiException("Calling Slack method " + method + " has failed: " + error, error);
+            }
+
+            return json;
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            throw new NotificationException("Calling Slack method " + method + " has failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static long getRetryAfterMillis(HttpResponse response) {
+        Header header = response.getFirstHeader("Retry-After");
+
+        if (header != null) {
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(header.getValue().trim()));
+            } catch (NumberFormatException e) {
+                // Slack sends a number of seconds, HTTP dates are not expected
+            }
+        }
+
+        return RateLimitedException.DEFAULT_RETRY_AFTER_MILLIS;
+    }
+
+    void close() throws IOException {
+        client.close();
+    }
+
+    private static final class Holder {
+
+        private static final SlackHttpClient INSTANCE = new SlackHttpClient(API_URL, MAX_CONNECTIONS_PER_ROUTE);
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    INSTANCE.close();
+                } catch (IOException e) {
+                    // ignore, the process is exiting
+                }
+            }, "yfiton-slack-http"));
+        }
+
+    }
+
+}
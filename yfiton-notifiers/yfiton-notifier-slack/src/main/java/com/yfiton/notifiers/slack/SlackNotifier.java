@@ -17,15 +17,22 @@
 package com.yfiton.notifiers.slack;
 
 import allbegray.slack.RestUtils;
-import allbegray.slack.SlackClientFactory;
-import allbegray.slack.webapi.SlackWebApiClient;
-import allbegray.slack.webapi.method.chats.ChatPostMessageMethod;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.yfiton.api.BatchNotifier;
+import com.yfiton.api.NotificationOutcome;
+import com.yfiton.api.NotificationResult;
+import com.yfiton.api.annotation.NotifierInfo;
 import com.yfiton.api.annotation.Parameter;
 import com.yfiton.api.exceptions.NotificationException;
+import com.yfiton.api.exceptions.YfitonException;
 import com.yfiton.api.parameter.Parameters;
+import com.yfiton.api.parameter.converters.PathConverter;
+import com.yfiton.api.parameter.validators.FileExistValidator;
 import com.yfiton.oauth.AccessTokenData;
 import com.yfiton.oauth.AuthorizationData;
 import com.yfiton.oauth.OAuthNotifier;
@@ -37,18 +44,44 @@ import org.apache.commons.configuration.SubnodeConfiguration;
 import org.apache.http.client.fluent.Request;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 /**
  * @author lpellegr
  */
-public class SlackNotifier extends OAuthNotifier {
+@NotifierInfo(
+        key = "slack",
+        name = "Slack",
+        description = "Send message on Slack channel.",
+        url = "https://slack.com")
+public class SlackNotifier extends OAuthNotifier implements BatchNotifier {
 
     private static final String KEY_DEFAULT_TEAM_ID = "defaultTeamId";
 
+    private static final String KEY_WEBHOOK_URL = "webhookUrl";
+
+    private static final String ALL_TEAMS = "*";
+
+    private static final String ERROR_CHANNEL_NOT_FOUND = "channel_not_found";
+
+    private static final ExecutorService uploads = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("yfiton-slack-upload-%d").setDaemon(true).build());
+
     @Parameter(description = "Trigger configuration for a new Slack team account if enabled")
     private boolean configureNewTeam = false;
 
@@ -58,8 +91,26 @@ public class SlackNotifier extends OAuthNotifier {
     @Parameter(description = "Text of the message to send", required = true)
     private String message;
 
-    @Parameter(description = "Use the specified pre-configured team ID for sending messages")
-    private String teamId;
+    @Parameter(description = "Use the specified pre-configured team IDs for sending messages. Several comma separated IDs, or * for all configured teams, send the message to each team concurrently")
+    private List<String> teamId;
+
+    @Parameter(description = "URL of an incoming webhook to post the message to. No authorization is required in that case. It defaults to the webhookUrl value of the notifier configuration file, if any")
+    private String webhookUrl;
+
+    @Parameter(description = "Time in milliseconds during which messages sent to a same channel are merged into a single post. Merging is disabled with 0")
+    private int coalesceWindow = 0;
+
+    @Parameter(description = "Maximum number of messages merged into a single post")
+    private int coalesceMaxMessages = 20;
+
+    @Parameter(description = "Time in seconds during which channel and user names resolved to identifiers are cached. The cache is disabled with 0")
+    private int directoryTtl = 86400;
+
+    // the team a copy of this notifier posts to when the message is sent to several teams
+    private String targetTeamId;
+
+    @Parameter(description = "File to upload to the channel. The file is streamed from disk while the message is posted", converter = PathConverter.class, validator = FileExistValidator.class)
+    private Path file;
 
     public SlackNotifier() {
         super("13619498982.13619874391", "8c1846b68f3ca8cd67926c2d85f0f879");
@@ -71,31 +122,266 @@ public class SlackNotifier extends OAuthNotifier {
 
     @Override
     protected Check checkParameters(Parameters parameters) {
+        if (coalesceWindow < 0) {
+            return Check.failed("Parameter coalesceWindow must be positive or 0");
+        }
+
+        if (directoryTtl < 0) {
+            return Check.failed("Parameter directoryTtl must be positive or 0");
+        }
+
+        if (file != null && isWebhookEnabled()) {
+            return Check.failed("Files cannot be uploaded with an incoming webhook");
+        }
+
+        if (coalesceMaxMessages < 1) {
+            return Check.failed("Parameter coalesceMaxMessages must be strictly positive");
+        }
+
         return Check.succeeded();
     }
 
     @Override
     protected void notify(Parameters parameters) throws NotificationException {
+        ChannelDispatcher.await(dispatch(parameters));
+    }
+
+    /**
+     * Posts the specified messages by using the cached Slack client of each
+     * team. Messages are sent concurrently, each channel being rate limited
+     * independently.
+     */
+    @Override
+    public List<NotificationOutcome> handleBatch(List<Parameters> batch) {
+        List<CompletableFuture<NotificationOutcome>> outcomes = new ArrayList<>(batch.size());
+
+        for (Parameters parameters : batch) {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+
+            try {
+                SlackNotifier invocation = prepare(parameters);
+
+                outcomes.add(invocation.dispatch(parameters).handle((result, failure) -> {
+                    stopwatch.stop();
+
+                    if (failure == null) {
+                        return NotificationOutcome.succeeded(new NotificationResult(getKey(), stopwatch));
+                    }
+
+                    return toFailedOutcome(failure, stopwatch);
+                }));
+            } catch (YfitonException | RuntimeException e) {
+                outcomes.add(CompletableFuture.completedFuture(toFailedOutcome(e, stopwatch.stop())));
+            }
+        }
+
+        return outcomes.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
+    private NotificationOutcome toFailedOutcome(Throwable failure, Stopwatch stopwatch) {
+        if (failure instanceof YfitonException) {
+            return NotificationOutcome.failed(getKey(), failure, stopwatch);
+        }
+
+        return NotificationOutcome.failed(
+                getKey(), new NotificationException("Calling Slack API has failed: " + failure.getMessage(), failure), stopwatch);
+    }
+
+    private CompletableFuture<Void> dispatch(Parameters parameters) {
+        List<String> teamIds = getTeamIds();
+
+        if (isWebhookEnabled() || teamIds.size() <= 1) {
+            return dispatchToTeam(parameters);
+        }
+
+        return broadcast(teamIds, teamId -> {
+            SlackNotifier invocation = (SlackNotifier) copy();
+            invocation.targetTeamId = teamId;
+
+            return invocation.dispatchToTeam(parameters);
+        });
+    }
+
+    /**
+     * Starts a post to each of the specified teams without waiting for the
+     * previous ones to complete.
+     *
+     * @param teamIds the teams to post to.
+     * @param post    the function starting the post to a team.
+     * @return a future completed once all posts are done, exceptionally with
+     * one message per failed team if any post has failed.
+     */
+    static CompletableFuture<Void> broadcast(List<String> teamIds, Function<String, CompletableFuture<Void>> post) {
+        // team ID -> post
+        Map<String, CompletableFuture<Void>> posts = new LinkedHashMap<>();
+
+        for (String teamId : teamIds) {
+            posts.put(teamId, post.apply(teamId));
+        }
+
+        List<CompletableFuture<Void>> pending = new ArrayList<>(posts.values());
+        CompletableFuture<Void> result = new CompletableFuture<>();
+
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).whenComplete((value, failure) -> {
+            List<String> messages = new ArrayList<>();
+            Throwable cause = null;
+
+            for (Map.Entry<String, CompletableFuture<Void>> entry : posts.entrySet()) {
+                try {
+                    entry.getValue().join();
+                } catch (CompletionException e) {
+                    cause = e.getCause();
+                    messages.add("Team " + entry.getKey() + ": " + cause.getMessage());
+                }
+            }
+
+            if (messages.isEmpty()) {
+                result.complete(null);
+            } else {
+                messages.add(0, "Posting to " + messages.size() + " of " + posts.size() + " Slack teams has failed");
+                result.completeExceptionally(new NotificationException(messages.toArray(new String[messages.size()]), cause));
+            }
+        });
+
+        return result;
+    }
+
+    private CompletableFuture<Void> dispatchToTeam(Parameters parameters) {
+        CompletableFuture<Void> post = dispatchMessage(parameters);
+
+        if (file == null) {
+            return post;
+        }
+
+        // the file is uploaded while the message waits for its turn and is posted
+        CompletableFuture<Void> upload = new CompletableFuture<>();
+
+        uploads.execute(() -> {
+            try {
+                uploadFile();
+                upload.complete(null);
+            } catch (Throwable e) {
+                upload.completeExceptionally(e);
+            }
+        });
+
+        CompletableFuture<Void> result = new CompletableFuture<>();
+
+        post.whenComplete((postValue, postFailure) -> upload.whenComplete((uploadValue, uploadFailure) -> {
+            if (postFailure != null) {
+                result.completeExceptionally(postFailure);
+            } else if (uploadFailure != null) {
+                result.completeExceptionally(uploadFailure);
+            } else {
+                result.complete(null);
+            }
+        }));
+
+        return result;
+    }
+
+    private CompletableFuture<Void> dispatchMessage(Parameters parameters) {
+        // webhooks are rate limited like channels, whatever channel they post to
+        String key = (isWebhookEnabled() ? getWebhookUrl() : getTeamId()) + " " + channel;
+
+        if (coalesceWindow == 0) {
+            return ChannelDispatcher.getDefault().submit(key, () -> send(parameters));
+        }
+
+        return MessageCoalescer.getDefault().submit(
+                key, message, coalesceWindow, TimeUnit.MILLISECONDS, coalesceMaxMessages, text -> {
+                    // the messages of a window share the same channel, any of them can post the merged text
+                    SlackNotifier post = (SlackNotifier) copy();
+                    post.message = text;
+
+                    return ChannelDispatcher.getDefault().submit(key, () -> post.send(parameters));
+                });
+    }
+
+    private void send(Parameters parameters) throws NotificationException {
+        if (isWebhookEnabled()) {
+            postWebhookMessage(getWebhookUrl(), parameters);
+            return;
+        }
+
         SubnodeConfiguration config = retrieveTeamInformation();
 
         if (config == null) {
             throw new NotificationException("Invalid configuration");
         }
 
-        SlackWebApiClient slackClient =
-                SlackClientFactory.createWebApiClient(config.getString("accessToken"));
+        postMessage(config);
+    }
+
+    private void postWebhookMessage(String webhookUrl, Parameters parameters) throws NotificationException {
+        JsonObject payload = new JsonObject();
+        payload.addProperty("text", message);
+
+        // webhooks post to the channel they were created for unless another one is explicitly requested
+        if (parameters.contains("channel")) {
+            payload.addProperty("channel", channel);
+        }
+
+        SlackHttpClient.getDefault().postWebhook(webhookUrl, payload);
+    }
+
+    private void uploadFile() throws NotificationException {
+        SubnodeConfiguration config = retrieveTeamInformation();
+        String channelId = resolveChannel(getDirectory(), config);
+
+        JsonObject uploaded = SlackHttpClient.getDefault().uploadFile(config.getString(KEY_ACCESS_TOKEN), file, channelId);
+
+        log.info(uploaded.has("permalink") ? uploaded.get("permalink").getAsString() : "File " + file + " uploaded");
+    }
+
+    private String resolveChannel(SlackDirectory directory, SubnodeConfiguration config) {
+        if (directory == null) {
+            return channel;
+        }
+
+        return directory.resolve(channel, directoryTtl, TimeUnit.SECONDS, new HttpLookup(config.getString(KEY_ACCESS_TOKEN)));
+    }
+
+    private void postMessage(SubnodeConfiguration config) throws NotificationException {
+        SlackDirectory directory = getDirectory();
+        String channelId = resolveChannel(directory, config);
 
-        ChatPostMessageMethod chatPostMessageMethod =
-                new ChatPostMessageMethod(channel, message);
-        chatPostMessageMethod.setAs_user(true);
+        try {
+            // the pooled client exposes the Retry-After header that the Slack client library hides
+            SlackHttpClient.getDefault().postMessage(config.getString(KEY_ACCESS_TOKEN), channelId, message);
+        } catch (SlackApiException e) {
+            if (directory != null && ERROR_CHANNEL_NOT_FOUND.equals(e.getError())) {
+                // the channel may have been renamed or archived since it was resolved
+                directory.invalidate(channel);
+            }
 
-        slackClient.postMessage(chatPostMessageMethod);
+            throw e;
+        }
 
         log.info("https://" + config.getString("teamName") + ".slack.com/messages/" + channel + "/");
     }
 
+    private SlackDirectory getDirectory() {
+        if (directoryTtl == 0) {
+            return null;
+        }
+
+        try {
+            return SlackDirectory.forTeam(getCacheDirPath(), getTeamId());
+        } catch (IOException e) {
+            log.warn("Slack directory is disabled: " + e.getMessage());
+            return null;
+        }
+    }
+
     private SubnodeConfiguration retrieveTeamInformation() throws NotificationException {
-        return getConfiguration().getSection(getTeamId());
+        SubnodeConfiguration result = getConfiguration().getSection(getTeamId());
+
+        if (!result.containsKey(KEY_ACCESS_TOKEN)) {
+            throw new NotificationException("Slack team " + getTeamId() + " is not configured");
+        }
+
+        return result;
     }
 
     @Override
@@ -130,12 +416,14 @@ public class SlackNotifier extends OAuthNotifier {
         StringBuilder result = new StringBuilder("https://slack.com/oauth/authorize");
         result.append("?client_id=");
         result.append(getClientId());
-        result.append("&scope=chat%3Awrite%3Auser&state=");
+        // files are uploaded on behalf of the user,
+        // channels, users and IMs are read for resolving names to identifiers
+        result.append("&scope=chat%3Awrite%3Auser%2Cfiles%3Awrite%3Auser%2Cchannels%3Aread%2Cusers%3Aread%2Cim%3Awrite&state=");
         result.append(stateParameterValue);
 
-        if (teamId != null) {
+        if (teamId != null && teamId.size() == 1 && !ALL_TEAMS.equals(teamId.get(0))) {
             result.append("&team=");
-            result.append(teamId);
+            result.append(teamId.get(0));
         }
 
         return result.toString();
@@ -154,17 +442,69 @@ public class SlackNotifier extends OAuthNotifier {
 
     @Override
     protected boolean isAuthenticationRequired() {
-        return getTeamId() == null || configureNewTeam;
+        if (isWebhookEnabled()) {
+            return false;
+        }
+
+        return getTeamIds().isEmpty() || configureNewTeam;
+    }
+
+    private boolean isWebhookEnabled() {
+        // configuring a new team always goes through the OAuth flow
+        return !configureNewTeam && getWebhookUrl() != null;
+    }
+
+    private String getWebhookUrl() {
+        if (webhookUrl != null) {
+            return webhookUrl;
+        }
+
+        return getConfiguration().getString(KEY_WEBHOOK_URL);
     }
 
     private String getTeamId() {
-        String defaultTeamId = getConfiguration().getString(KEY_DEFAULT_TEAM_ID);
+        if (targetTeamId != null) {
+            return targetTeamId;
+        }
+
+        List<String> teamIds = getTeamIds();
+
+        return teamIds.isEmpty() ? null : teamIds.get(0);
+    }
+
+    private List<String> getTeamIds() {
+        return getTeamIds(teamId, getConfiguration());
+    }
 
-        if (teamId != null) {
-            defaultTeamId = teamId;
+    /**
+     * Returns the teams to post to.
+     *
+     * @param requested     the team IDs given as parameter, possibly containing {@code *}.
+     * @param configuration the notifier configuration.
+     * @return the requested teams, all configured teams for {@code *}, or the
+     * default team if none is requested.
+     */
+    static List<String> getTeamIds(List<String> requested, HierarchicalINIConfiguration configuration) {
+        if (requested == null || requested.isEmpty()) {
+            String defaultTeamId = configuration.getString(KEY_DEFAULT_TEAM_ID);
+
+            return defaultTeamId == null ? ImmutableList.of() : ImmutableList.of(defaultTeamId);
         }
 
-        return defaultTeamId;
+        if (requested.contains(ALL_TEAMS)) {
+            // each configured team has its own section holding its access token
+            return configuration.getSections().stream()
+                    .filter(Objects::nonNull)
+                    .filter(section -> configuration.getSection(section).containsKey(KEY_ACCESS_TOKEN))
+                    .sorted()
+                    .collect(ImmutableList.toImmutableList());
+        }
+
+        return requested.stream()
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .distinct()
+                .collect(ImmutableList.toImmutableList());
     }
 
     @Override
@@ -186,24 +526,32 @@ public class SlackNotifier extends OAuthNotifier {
         }
     }
 
-    @Override
-    public String getKey() {
-        return "slack";
-    }
+    /**
+     * Looks up names with the shared HTTP client and the access token of a team.
+     */
+    private static final class HttpLookup implements SlackDirectory.Lookup {
 
-    @Override
-    public String getName() {
-        return "Slack";
-    }
+        private final String accessToken;
 
-    @Override
-    public Optional<String> getDescription() {
-        return Optional.of("Send message on Slack channel.");
-    }
+        private HttpLookup(String accessToken) {
+            this.accessToken = accessToken;
+        }
+
+        @Override
+        public Map<String, String> listChannels() throws NotificationException {
+            return SlackHttpClient.getDefault().listChannels(accessToken);
+        }
+
+        @Override
+        public Map<String, String> listUsers() throws NotificationException {
+            return SlackHttpClient.getDefault().listUsers(accessToken);
+        }
+
+        @Override
+        public String openDirectMessageChannel(String userId) throws NotificationException {
+            return SlackHttpClient.getDefault().openDirectMessageChannel(accessToken, userId);
+        }
 
-    @Override
-    public Optional<String> getUrl() {
-        return Optional.of("https://slack.com");
     }
 
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.slack;
+
+import com.google.common.base.Ticker;
+import com.yfiton.api.exceptions.NotificationException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author lpellegr
+ */
+public class ChannelDispatcherTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private final ExecutorService senders = Executors.newCachedThreadPool();
+
+    private final ChannelDispatcher dispatcher =
+            new ChannelDispatcher(new ChannelRateLimiter(Ticker.systemTicker(), 100, 1), scheduler, senders, 3);
+
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    @Test
+    public void testRateLimitedChannelDoesNotDelayOthers() throws NotificationException {
+        AtomicInteger attempts = new AtomicInteger();
+
+        CompletableFuture<Void> limited = dispatcher.submit("#ci", () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new RateLimitedException("rate limited", 300);
+            }
+
+            sent.add("#ci");
+        });
+
+        CompletableFuture<Void> other = dispatcher.submit("#random", () -> sent.add("#random"));
+
+        ChannelDispatcher.await(other);
+        ChannelDispatcher.await(limited);
+
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(sent).containsExactly("#random", "#ci").inOrder();
+    }
+
+    @Test
+    public void testSlowChannelsDoNotDelayOthers() throws NotificationException, InterruptedException {
+        CountDownLatch unblock = new CountDownLatch(1);
+        CompletableFuture<?>[] slow = new CompletableFuture<?>[8];
+
+        for (int i = 0; i < slow.length; i++) {
+            slow[i] = dispatcher.submit("#slow-" + i, () -> {
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        try {
+            ChannelDispatcher.await(dispatcher.submit("#random", () -> sent.add("#random")));
+
+            assertThat(sent).containsExactly("#random");
+        } finally {
+            unblock.countDown();
+        }
+
+        CompletableFuture.allOf(slow).join();
+    }
+
+    @Test
+    public void testMessagesKeepTheirOrderPerChannel() throws NotificationException {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[10];
+
+        for (int i = 0; i < futures.length; i++) {
+            String message = "message " + i;
+            futures[i] = dispatcher.submit("#ci", () -> sent.add(message));
+        }
+
+        CompletableFuture.allOf(futures).join();
+
+        assertThat(sent).hasSize(10);
+        assertThat(sent.get(0)).isEqualTo("message 0");
+        assertThat(sent.get(9)).isEqualTo("message 9");
+    }
+
+    @Test
+    public void testGivesUpAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        try {
+            ChannelDispatcher.await(dispatcher.submit("#ci", () -> {
+                attempts.incrementAndGet();
+                throw new RateLimitedException("rate limited", 10);
+            }));
+            fail();
+        } catch (NotificationException e) {
+            assertThat(e).isInstanceOf(RateLimitedException.class);
+            assertThat(attempts.get()).isEqualTo(3);
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.slack;
+
+import com.google.common.base.Ticker;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * @author lpellegr
+ */
+public class ChannelRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final ManualTicker ticker = new ManualTicker();
+
+    @Test
+    public void testReservationsAreSpacedOut() {
+        ChannelRateLimiter limiter = new ChannelRateLimiter(ticker, 1, 1);
+
+        assertThat(limiter.reserve("#ci")).isEqualTo(0L);
+        assertThat(limiter.reserve("#ci")).isEqualTo(SECOND);
+        assertThat(limiter.reserve("#ci")).isEqualTo(2 * SECOND);
+
+        ticker.advance(5, TimeUnit.SECONDS);
+
+        // the channel has been idle, the debt is cleared
+        assertThat(limiter.reserve("#ci")).isEqualTo(0L);
+    }
+
+    @Test
+    public void testBurst() {
+        ChannelRateLimiter limiter = new ChannelRateLimiter(ticker, 1, 3);
+
+        assertThat(limiter.reserve("#ci")).isEqualTo(0L);
+        assertThat(limiter.reserve("#ci")).isEqualTo(0L);
+        assertThat(limiter.reserve("#ci")).isEqualTo(0L);
+        assertThat(limiter.reserve("#ci")).isEqualTo(SECOND);
+    }
+
+    @Test
+    public void testChannelsAreIndependent() {
+        ChannelRateLimiter limiter = new ChannelRateLimiter(ticker, 1, 1);
+
+        limiter.reserve("#ci");
+        limiter.reserve("#ci");
+
+        assertThat(limiter.reserve("#random")).isEqualTo(0L);
+    }
+
+    @Test
+    public void testPause() {
+        ChannelRateLimiter limiter = new ChannelRateLimiter(ticker, 1, 2);
+
+        limiter.pause("#ci", 30, TimeUnit.SECONDS);
+
+        assertThat(limiter.getRemainingPause("#ci")).isEqualTo(30 * SECOND);
+        assertThat(limiter.getRemainingPause("#random")).isEqualTo(0L);
+        // no burst is allowed when the channel resumes
+        assertThat(limiter.reserve("#ci")).isEqualTo(30 * SECOND);
+        assertThat(limiter.reserve("#ci")).isEqualTo(31 * SECOND);
+        assertThat(limiter.reserve("#ci")).isEqualTo(32 * SECOND);
+        assertThat(limiter.reserve("#random")).isEqualTo(0L);
+
+        ticker.advance(30, TimeUnit.SECONDS);
+
+        assertThat(limiter.getRemainingPause("#ci")).isEqualTo(0L);
+    }
+
+    private static final class ManualTicker extends Ticker {
+
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            nanos += unit.toNanos(duration);
+        }
+
+    }
+
+}
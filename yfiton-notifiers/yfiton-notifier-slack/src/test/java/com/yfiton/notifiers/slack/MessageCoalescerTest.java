@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.slack;
+
+import com.yfiton.api.exceptions.NotificationException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author lpellegr
+ */
+public class MessageCoalescerTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private final MessageCoalescer coalescer = new MessageCoalescer(scheduler, 20);
+
+    private final List<String> posts = new CopyOnWriteArrayList<>();
+
+    private final Function<String, CompletableFuture<Void>> poster = text -> {
+        posts.add(text);
+        return CompletableFuture.completedFuture(null);
+    };
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testMessagesAreMergedWithinWindow() {
+        CompletableFuture<Void> first = coalescer.submit("#ci", "a", 100, TimeUnit.MILLISECONDS, 10, poster);
+        CompletableFuture<Void> second = coalescer.submit("#ci", "b", 100, TimeUnit.MILLISECONDS, 10, poster);
+        CompletableFuture<Void> other = coalescer.submit("#random", "c", 100, TimeUnit.MILLISECONDS, 10, poster);
+
+        CompletableFuture.allOf(first, second, other).join();
+
+        assertThat(posts).containsExactly("a\nb", "c");
+    }
+
+    @Test
+    public void testWindowIsClosedWhenFull() {
+        // the window would otherwise stay open for the whole test
+        CompletableFuture<Void> first = coalescer.submit("#ci", "a", 1, TimeUnit.HOURS, 2, poster);
+        CompletableFuture<Void> second = coalescer.submit("#ci", "b", 1, TimeUnit.HOURS, 2, poster);
+
+        assertThat(first.isDone()).isTrue();
+        assertThat(second.isDone()).isTrue();
+        assertThat(posts).containsExactly("a\nb");
+    }
+
+    @Test
+    public void testWindowIsClosedBeforeExceedingMaxLength() {
+        coalescer.submit("#ci", "0123456789", 1, TimeUnit.HOURS, 10, poster);
+        coalescer.submit("#ci", "0123456789", 1, TimeUnit.HOURS, 10, poster);
+
+        assertThat(posts).containsExactly("0123456789");
+    }
+
+    @Test
+    public void testFailureIsPropagatedToAllMessages() {
+        NotificationException failure = new NotificationException("channel_not_found");
+
+        Function<String, CompletableFuture<Void>> failingPoster = text -> {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            result.completeExceptionally(failure);
+            return result;
+        };
+
+        CompletableFuture<Void> first = coalescer.submit("#ci", "a", 1, TimeUnit.HOURS, 2, failingPoster);
+        CompletableFuture<Void> second = coalescer.submit("#ci", "b", 1, TimeUnit.HOURS, 2, failingPoster);
+
+        for (CompletableFuture<Void> future : new CompletableFuture[]{first, second}) {
+            try {
+                future.join();
+                fail();
+            } catch (CompletionException e) {
+                assertThat(e.getCause()).isSameAs(failure);
+            }
+        }
+    }
+
+}
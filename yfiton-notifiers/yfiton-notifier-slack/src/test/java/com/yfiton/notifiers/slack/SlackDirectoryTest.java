@@ -0,0 +1,248 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.slack;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * @author lpellegr
+ */
+public class SlackDirectoryTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final MutableClock clock = new MutableClock();
+
+    private final CountingLookup lookup = new CountingLookup();
+
+    @Test
+    public void testChannelsAreResolvedWithSingleLookup() throws IOException {
+        SlackDirectory directory = new SlackDirectory(getFile(), clock);
+
+        assertThat(directory.resolve("#general", 1, TimeUnit.HOURS, lookup)).isEqualTo("C1");
+        assertThat(directory.resolve("#random", 1, TimeUnit.HOURS, lookup)).isEqualTo("C2");
+        assertThat(lookup.channelLookups).isEqualTo(1);
+    }
+
+    @Test
+    public void testUsersAreResolvedToDirectMessageChannels() throws IOException {
+        SlackDirectory directory = new SlackDirectory(getFile(), clock);
+
+        assertThat(directory.resolve("@lpellegr", 1, TimeUnit.HOURS, lookup)).isEqualTo("D-U1");
+        assertThat(directory.resolve("@lpellegr", 1, TimeUnit.HOURS, lookup)).isEqualTo("D-U1");
+        assertThat(lookup.userLookups).isEqualTo(1);
+    }
+
+    @Test
+    public void testIdentifiersAreNotResolved() throws IOException {
+        SlackDirectory directory = new SlackDirectory(getFile(), clock);
+
+        assertThat(directory.resolve("C1", 1, TimeUnit.HOURS, lookup)).isEqualTo("C1");
+        assertThat(lookup.channelLookups).isEqualTo(0);
+    }
+
+    @Test
+    public void testEntriesExpire() throws IOException {
+        SlackDirectory directory = new SlackDirectory(getFile(), clock);
+
+        directory.resolve("#general", 1, TimeUnit.HOURS, lookup);
+        clock.advance(2, TimeUnit.HOURS);
+        directory.resolve("#general", 1, TimeUnit.HOURS, lookup);
+
+        assertThat(lookup.channelLookups).isEqualTo(2);
+    }
+
+    @Test
+    public void testUnknownNamesAreKeptAndCached() throws IOException {
+        SlackDirectory directory = new SlackDirectory(getFile(), clock);
+
+        assertThat(directory.resolve("#unknown", 1, TimeUnit.HOURS, lookup)).isEqualTo("#unknown");
+        assertThat(directory.resolve("#unknown", 1, TimeUnit.HOURS, lookup)).isEqualTo("#unknown");
+        assertThat(lookup.channelLookups).isEqualTo(1);
+    }
+
+    @Test
+    public void testFailedLookupKeepsName() throws IOException {
+        SlackDirectory directory = new SlackDirectory(getFile(), clock);
+        lookup.failure = new IllegalStateException("missing_scope");
+
+        assertThat(directory.resolve("#general", 1, TimeUnit.HOURS, lookup)).isEqualTo("#general");
+    }
+
+    @Test
+    public void testDirectoryIsPersisted() throws IOException {
+        Path file = getFile();
+
+        new SlackDirectory(file, clock).resolve("#general", 1, TimeUnit.HOURS, lookup);
+
+        SlackDirectory reloaded = new SlackDirectory(file, clock);
+
+        assertThat(reloaded.resolve("#general", 1, TimeUnit.HOURS, lookup)).isEqualTo("C1");
+        assertThat(lookup.channelLookups).isEqualTo(1);
+
+        reloaded.invalidate("#general");
+
+        assertThat(new SlackDirectory(file, clock).resolve("#general", 1, TimeUnit.HOURS, lookup)).isEqualTo("C1");
+        assertThat(lookup.channelLookups).isEqualTo(2);
+    }
+
+    @Test
+    public void testFailedLookupIsNotSaved() throws IOException {
+        Path file = getFile();
+        lookup.failure = new IllegalStateException("missing_scope");
+
+        new SlackDirectory(file, clock).resolve("#general", 1, TimeUnit.HOURS, lookup);
+
+        assertThat(Files.exists(file)).isFalse();
+    }
+
+    @Test(timeout = 10000)
+    public void testLookupDoesNotBlockResolvedNames() throws Exception {
+        SlackDirectory directory = new SlackDirectory(getFile(), clock);
+        directory.resolve("#general", 1, TimeUnit.HOURS, lookup);
+
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger userLookups = new AtomicInteger();
+
+        SlackDirectory.Lookup slowLookup = new SlackDirectory.Lookup() {
+            @Override
+            public Map<String, String> listChannels() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Map<String, String> listUsers() {
+                userLookups.incrementAndGet();
+                entered.countDown();
+                Uninterruptibles.awaitUninterruptibly(release);
+
+                return ImmutableMap.of("lpellegr", "U1");
+            }
+
+            @Override
+            public String openDirectMessageChannel(String userId) {
+                return "D-" + userId;
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<String> first = executor.submit(() -> directory.resolve("@lpellegr", 1, TimeUnit.HOURS, slowLookup));
+            entered.await();
+            Future<String> second = executor.submit(() -> directory.resolve("@lpellegr", 1, TimeUnit.HOURS, slowLookup));
+
+            // the pending lookup holds no lock
+            assertThat(directory.resolve("#general", 1, TimeUnit.HOURS, lookup)).isEqualTo("C1");
+
+            release.countDown();
+
+            assertThat(first.get()).isEqualTo("D-U1");
+            assertThat(second.get()).isEqualTo("D-U1");
+            assertThat(userLookups.get()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private Path getFile() throws IOException {
+        return folder.getRoot().toPath().resolve("directory-T1.json");
+    }
+
+    private static final class CountingLookup implements SlackDirectory.Lookup {
+
+        private int channelLookups;
+
+        private int userLookups;
+
+        private RuntimeException failure;
+
+        @Override
+        public Map<String, String> listChannels() {
+            channelLookups++;
+
+            if (failure != null) {
+                throw failure;
+            }
+
+            return ImmutableMap.of("general", "C1", "random", "C2");
+        }
+
+        @Override
+        public Map<String, String> listUsers() {
+            userLookups++;
+
+            return ImmutableMap.of("lpellegr", "U1");
+        }
+
+        @Override
+        public String openDirectMessageChannel(String userId) {
+            return "D-" + userId;
+        }
+
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private long millis = 1_000_000;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            millis += unit.toMillis(duration);
+        }
+
+    }
+
+}
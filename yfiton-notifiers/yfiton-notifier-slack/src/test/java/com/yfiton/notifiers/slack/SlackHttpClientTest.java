@@ -0,0 +1,299 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.slack;
+
+import com.google.common.io.ByteStreams;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+import com.yfiton.api.exceptions.NotificationException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author lpellegr
+ */
+public class SlackHttpClientTest {
+
+    private final List<String> bodies = new CopyOnWriteArrayList<>();
+
+    private final List<String> authorizations = new CopyOnWriteArrayList<>();
+
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+
+    private SlackHttpClient client;
+
+    private volatile int statusCode = 200;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/services/T/B/X", exchange -> {
+            bodies.add(new String(ByteStreams.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8));
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+
+            if (statusCode == 429) {
+                exchange.getResponseHeaders().add("Retry-After", "7");
+            }
+
+            byte[] response = (statusCode == 200 ? "ok" : "invalid_payload").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(statusCode, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.createContext("/api/files.upload", exchange -> {
+            bodies.add(new String(ByteStreams.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8));
+            authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+
+            String channel = bodies.get(bodies.size() - 1).contains("C404") ? "C404" : "C1";
+            byte[] response = ("C404".equals(channel)
+                    ? "{\"ok\":false,\"error\":\"channel_not_found\"}"
+                    : "{\"ok\":true,\"file\":{\"id\":\"F1\",\"permalink\":\"https://example.slack.com/files/F1\"}}")
+                    .getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.createContext("/api/chat.postMessage", exchange -> {
+            String body = new String(ByteStreams.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8);
+            bodies.add(body);
+            authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+
+            String response;
+
+            if (statusCode == 429) {
+                exchange.getResponseHeaders().add("Retry-After", "12");
+                response = "{\"ok\":false,\"error\":\"ratelimited\"}";
+            } else if (body.contains("C404")) {
+                response = "{\"ok\":false,\"error\":\"channel_not_found\"}";
+            } else {
+                response = "{\"ok\":true,\"channel\":\"C1\",\"ts\":\"1503435956.000247\"}";
+            }
+
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(statusCode, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.createContext("/api/channels.list", exchange -> {
+            String body = new String(ByteStreams.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8);
+            bodies.add(body);
+            authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+
+            // two pages, the second one ends with an empty cursor
+            String response = body.contains("cursor=page2")
+                    ? "{\"ok\":true,\"channels\":[{\"id\":\"C2\",\"name\":\"random\"}],"
+                    + "\"response_metadata\":{\"next_cursor\":\"\"}}"
+                    : "{\"ok\":true,\"channels\":[{\"id\":\"C1\",\"name\":\"general\"}],"
+                    + "\"response_metadata\":{\"next_cursor\":\"page2\"}}";
+
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.createContext("/api/users.list", exchange -> {
+            bodies.add(new String(ByteStreams.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8));
+
+            byte[] bytes = (statusCode == 200
+                    ? "{\"ok\":true,\"members\":[{\"id\":\"U1\",\"name\":\"alice\"}]}"
+                    : "{\"ok\":false,\"error\":\"missing_scope\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.createContext("/api/im.open", exchange -> {
+            bodies.add(new String(ByteStreams.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8));
+
+            byte[] bytes = "{\"ok\":true,\"channel\":{\"id\":\"D1\"}}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.start();
+
+        client = new SlackHttpClient("http://localhost:" + server.getAddress().getPort() + "/api/", 2);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testPostWebhookReusesConnection() throws NotificationException {
+        for (int i = 0; i < 5; i++) {
+            JsonObject payload = new JsonObject();
+            payload.addProperty("text", "build #" + i + " failed");
+
+            client.postWebhook(getWebhookUrl(), payload);
+        }
+
+        assertThat(bodies).hasSize(5);
+        assertThat(bodies.get(0)).isEqualTo("{\"text\":\"build #0 failed\"}");
+        assertThat(clientPorts).hasSize(1);
+    }
+
+    @Test
+    public void testPostWebhookRejected() {
+        statusCode = 400;
+
+        try {
+            client.postWebhook(getWebhookUrl(), new JsonObject());
+            fail();
+        } catch (NotificationException e) {
+            assertThat(e.getMessage()).contains("400");
+            assertThat(e.getMessage()).contains("invalid_payload");
+        }
+    }
+
+    @Test
+    public void testPostWebhookRateLimited() throws NotificationException {
+        statusCode = 429;
+
+        try {
+            client.postWebhook(getWebhookUrl(), new JsonObject());
+            fail();
+        } catch (RateLimitedException e) {
+            assertThat(e.getRetryAfter(TimeUnit.SECONDS)).isEqualTo(7L);
+        }
+    }
+
+    @Test
+    public void testPostMessage() throws NotificationException {
+        client.postMessage("xoxp-token", "C1", "Build #42 has failed!");
+        client.postMessage("xoxp-token", "C1", "Build #43 has failed!");
+
+        assertThat(authorizations).containsExactly("Bearer xoxp-token", "Bearer xoxp-token");
+        assertThat(bodies.get(0)).isEqualTo("channel=C1&text=Build+%2342+has+failed%21&as_user=true");
+    }
+
+    @Test
+    public void testPostMessageRateLimited() throws NotificationException {
+        statusCode = 429;
+
+        try {
+            client.postMessage("xoxp-token", "C1", "Build #42 has failed!");
+            fail();
+        } catch (RateLimitedException e) {
+            assertThat(e.getRetryAfter(TimeUnit.SECONDS)).isEqualTo(12L);
+        }
+    }
+
+    @Test
+    public void testPostMessageRejected() throws NotificationException {
+        try {
+            client.postMessage("xoxp-token", "C404", "Build #42 has failed!");
+            fail();
+        } catch (SlackApiException e) {
+            assertThat(e.getError()).isEqualTo("channel_not_found");
+        }
+    }
+
+    @Test
+    public void testUploadFile() throws IOException, NotificationException {
+        Path file = folder.newFile("build.log").toPath();
+        Files.write(file, "BUILD FAILED".getBytes(StandardCharsets.UTF_8));
+
+        JsonObject uploaded = client.uploadFile("xoxp-token", file, "C1");
+
+        assertThat(uploaded.get("id").getAsString()).isEqualTo("F1");
+        assertThat(authorizations).containsExactly("Bearer xoxp-token");
+        assertThat(bodies.get(0)).contains("filename=\"build.log\"");
+        assertThat(bodies.get(0)).contains("BUILD FAILED");
+        assertThat(bodies.get(0)).contains("C1");
+    }
+
+    @Test
+    public void testUploadFileRejected() throws IOException {
+        Path file = folder.newFile("build.log").toPath();
+
+        try {
+            client.uploadFile("xoxp-token", file, "C404");
+            fail();
+        } catch (NotificationException e) {
+            assertThat(e.getMessage()).contains("channel_not_found");
+        }
+    }
+
+    @Test
+    public void testListChannelsFollowsCursor() throws NotificationException {
+        Map<String, String> channels = client.listChannels("xoxp-token");
+
+        assertThat(channels).containsExactly("general", "C1", "random", "C2").inOrder();
+        assertThat(authorizations).containsExactly("Bearer xoxp-token", "Bearer xoxp-token");
+        assertThat(bodies).containsExactly("limit=200&cursor=", "limit=200&cursor=page2").inOrder();
+    }
+
+    @Test
+    public void testListUsers() throws NotificationException {
+        assertThat(client.listUsers("xoxp-token")).containsExactly("alice", "U1");
+    }
+
+    @Test
+    public void testListUsersRejected() throws NotificationException {
+        statusCode = 403;
+
+        try {
+            client.listUsers("xoxp-token");
+            fail();
+        } catch (SlackApiException e) {
+            assertThat(e.getError()).isEqualTo("missing_scope");
+        }
+    }
+
+    @Test
+    public void testOpenDirectMessageChannel() throws NotificationException {
+        assertThat(client.openDirectMessageChannel("xoxp-token", "U1")).isEqualTo("D1");
+        assertThat(bodies).containsExactly("user=U1");
+    }
+
+    private String getWebhookUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/services/T/B/X";
+    }
+
+}
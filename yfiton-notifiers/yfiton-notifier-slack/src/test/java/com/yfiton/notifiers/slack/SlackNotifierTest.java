@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.notifiers.slack;
+
+import com.google.common.collect.ImmutableList;
+import com.yfiton.api.exceptions.NotificationException;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.HierarchicalINIConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for the selection of the Slack teams a message is sent to and
+ * for the broadcast of a message to several teams.
+ *
+ * @author lpellegr
+ */
+public class SlackNotifierTest {
+
+    private final HierarchicalINIConfiguration configuration = new HierarchicalINIConfiguration();
+
+    private final FakeTeams teams = new FakeTeams();
+
+    @Before
+    public void setUp() throws ConfigurationException {
+        configuration.load(new StringReader(
+                "defaultTeamId = T2\n"
+                        + "[T2]\naccessToken = xoxp-2\nteamName = second\n"
+                        + "[T1]\naccessToken = xoxp-1\nteamName = first\n"
+                        + "[T3]\nteamName = not configured\n"));
+    }
+
+    @Test
+    public void testDefaultTeam() {
+        assertThat(SlackNotifier.getTeamIds(null, configuration)).containsExactly("T2");
+        assertThat(SlackNotifier.getTeamIds(ImmutableList.of(), configuration)).containsExactly("T2");
+    }
+
+    @Test
+    public void testListedTeams() {
+        assertThat(SlackNotifier.getTeamIds(ImmutableList.of("T3", " T1", "", "T3"), configuration))
+                .containsExactly("T3", "T1").inOrder();
+    }
+
+    @Test
+    public void testAllConfiguredTeams() {
+        assertThat(SlackNotifier.getTeamIds(ImmutableList.of("*"), configuration))
+                .containsExactly("T1", "T2").inOrder();
+    }
+
+    @Test
+    public void testBroadcastStartsAllPostsConcurrently() throws NotificationException {
+        CompletableFuture<Void> result = SlackNotifier.broadcast(ImmutableList.of("T1", "T2", "T3"), teams);
+
+        // no post has completed yet, all have been started
+        assertThat(teams.started).containsExactly("T1", "T2", "T3").inOrder();
+        assertThat(result.isDone()).isFalse();
+
+        teams.complete("T3", null);
+        teams.complete("T1", null);
+
+        assertThat(result.isDone()).isFalse();
+
+        teams.complete("T2", null);
+
+        ChannelDispatcher.await(result);
+    }
+
+    @Test
+    public void testBroadcastReportsEachFailedTeam() {
+        CompletableFuture<Void> result = SlackNotifier.broadcast(ImmutableList.of("T1", "T2", "T3"), teams);
+
+        teams.complete("T1", new NotificationException("invalid_auth"));
+        teams.complete("T2", null);
+        teams.complete("T3", new NotificationException("channel_not_found"));
+
+        try {
+            ChannelDispatcher.await(result);
+            fail("Failed posts not reported");
+        } catch (NotificationException e) {
+            assertThat(e.getMessages()).asList().containsExactly(
+                    "Posting to 2 of 3 Slack teams has failed",
+                    "Team T1: invalid_auth",
+                    "Team T3: channel_not_found").inOrder();
+        }
+    }
+
+    /**
+     * Posts that stay pending until explicitly completed.
+     */
+    private static final class FakeTeams implements Function<String, CompletableFuture<Void>> {
+
+        private final List<String> started = new CopyOnWriteArrayList<>();
+
+        private final Map<String, CompletableFuture<Void>> posts = new ConcurrentHashMap<>();
+
+        @Override
+        public CompletableFuture<Void> apply(String teamId) {
+            CompletableFuture<Void> post = new CompletableFuture<>();
+
+            started.add(teamId);
+            posts.put(teamId, post);
+
+            return post;
+        }
+
+        void complete(String teamId, Throwable failure) {
+            if (failure == null) {
+                posts.get(teamId).complete(null);
+            } else {
+                posts.get(teamId).completeExceptionally(failure);
+            }
+        }
+
+    }
+
+}
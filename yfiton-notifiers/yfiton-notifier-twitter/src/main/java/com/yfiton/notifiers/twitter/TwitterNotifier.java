@@ -17,6 +17,7 @@
 package com.yfiton.notifiers.twitter;
 
 import com.google.common.collect.ImmutableMap;
+import com.yfiton.api.annotation.NotifierInfo;
 import com.yfiton.api.annotation.Parameter;
 import com.yfiton.api.exceptions.NotificationException;
 import com.yfiton.api.parameter.Parameters;
@@ -34,6 +35,11 @@ import java.util.Optional;
 /**
  * @author lpellegr
  */
+@NotifierInfo(
+        key = "twitter",
+        name = "Twitter",
+        description = "Send short 140-character messages called \"tweets\".",
+        url = "https://twitter.com")
 public class TwitterNotifier extends OAuthNotifier {
 
     private static final String KEY_ACCESS_TOKEN = "accessToken";
@@ -172,24 +178,4 @@ public class TwitterNotifier extends OAuthNotifier {
         return Optional.empty();
     }
 
-    @Override
-    public String getKey() {
-        return "twitter";
-    }
-
-    @Override
-    public String getName() {
-        return "Twitter";
-    }
-
-    @Override
-    public Optional<String> getDescription() {
-        return Optional.of("Send short 140-character messages called \"tweets\".");
-    }
-
-    @Override
-    public Optional<String> getUrl() {
-        return Optional.of("https://twitter.com");
-    }
-
 }
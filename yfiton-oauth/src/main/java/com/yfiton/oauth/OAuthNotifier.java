@@ -19,6 +19,7 @@ package com.yfiton.oauth;
 import com.yfiton.api.NotificationResult;
 import com.yfiton.api.Notifier;
 import com.yfiton.api.exceptions.NotificationException;
+import com.yfiton.api.exceptions.ParameterException;
 import com.yfiton.api.parameter.Parameters;
 import com.yfiton.oauth.receiver.GraphicalReceiver;
 import com.yfiton.oauth.receiver.PromptReceiver;
@@ -66,6 +67,9 @@ public abstract class OAuthNotifier extends Notifier {
 
     protected final String webEngineListenerClazz;
 
+    // shared by copies, prevents concurrent notifications from running the login flow twice
+    private final Object authenticationLock = new Object();
+
     /**
      * Creates a new notifier instance supporting OAuth authentication.
      *
@@ -143,20 +147,43 @@ public abstract class OAuthNotifier extends Notifier {
 
     @Override
     public NotificationResult handle(Parameters parameters) throws NotificationException {
-        if (isAuthenticationRequired()) {
-            String[] requestParameterNames = new String[0];
+        authenticateIfRequired();
 
-            Optional<String> stateRequestParameterName = getStateRequestParameterName();
-            if (stateRequestParameterName.isPresent()) {
-                requestParameterNames = new String[]{
-                        stateRequestParameterName.get()
-                };
-            }
+        return super.handle(parameters);
+    }
 
-            executeOAuthLogin(getCodeRequestParameterName(), requestParameterNames);
-        }
+    @Override
+    protected <T extends Notifier> T prepare(Parameters parameters) throws ParameterException, NotificationException {
+        T invocation = super.prepare(parameters);
 
-        return super.handle(parameters);
+        ((OAuthNotifier) invocation).authenticateIfRequired();
+
+        return invocation;
+    }
+
+    /**
+     * Runs the login flow if the access token required by the notifier is
+     * missing. Concurrent invocations wait for the login flow to complete.
+     *
+     * @throws NotificationException if the login flow fails.
+     */
+    protected void authenticateIfRequired() throws NotificationException {
+        if (isAuthenticationRequired()) {
+            synchronized (authenticationLock) {
+                if (isAuthenticationRequired()) {
+                    String[] requestParameterNames = new String[0];
+
+                    Optional<String> stateRequestParameterName = getStateRequestParameterName();
+                    if (stateRequestParameterName.isPresent()) {
+                        requestParameterNames = new String[]{
+                                stateRequestParameterName.get()
+                        };
+                    }
+
+                    executeOAuthLogin(getCodeRequestParameterName(), requestParameterNames);
+                }
+            }
+        }
     }
 
     protected String executeOAuthLogin(String authorizationCodeParameterName, String... requestParameterNames) throws NotificationException {
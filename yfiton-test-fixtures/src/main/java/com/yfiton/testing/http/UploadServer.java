@@ -0,0 +1,328 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.testing.http;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process HTTP server that stands in for file upload endpoints. It allows
+ * to exercise uploads offline, including failures in the middle of a
+ * transfer.
+ * <p/>
+ * Files can be sent to any path, either at once with a {@code POST} request
+ * or in chunks with {@code PUT} requests carrying a
+ * {@code Content-Range: bytes first-last/total} header. Chunks must follow
+ * the bytes already received, which are acknowledged with a {@code 308}
+ * response holding a {@code Range: bytes=0-last} header until the file is
+ * complete and a {@code 200} response is returned. A {@code PUT} request
+ * with {@code Content-Range: bytes *}{@code /total} and no body returns the
+ * bytes received so far, so that an interrupted upload can be resumed.
+ * <p/>
+ * Received bytes are kept in memory, the server is meant for small files.
+ *
+ * <pre>
+ * try (UploadServer server = new UploadServer.Builder().start()) {
+ *     server.failNextRequestAfter(1024);
+ *     // upload to server.getUrl("/upload/1")
+ *     byte[] received = server.getReceivedBytes("/upload/1");
+ * }
+ * </pre>
+ *
+ * @author lpellegr
+ */
+public final class UploadServer implements Closeable {
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (?:(\\d+)-(\\d+)|\\*)/(\\d+)");
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    // path -> received bytes, guarded by this
+    private final Map<String, ByteArrayOutputStream> uploads = new HashMap<>();
+
+    // guarded by this
+    private long failAfterBytes = -1;
+
+    // guarded by this
+    private int unavailableRequests;
+
+    private int ignoredRequests;
+
+    private UploadServer(Builder builder) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port), 0);
+        this.executor = Executors.newCachedThreadPool();
+
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the URL of the specified path on this server.
+     *
+     * @param path the path, starting with a slash.
+     * @return the URL of the specified path.
+     */
+    public String getUrl(String path) {
+        return "http://localhost:" + getPort() + path;
+    }
+
+    /**
+     * Returns the number of requests received, including failed ones.
+     */
+    public int getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Returns the bytes received for the specified path.
+     *
+     * @param path the path the file has been uploaded to.
+     * @return the bytes received, or {@code null} if nothing was uploaded to the path.
+     */
+    public synchronized byte[] getReceivedBytes(String path) {
+        ByteArrayOutputStream upload = uploads.get(path);
+
+        return upload == null ? null : upload.toByteArray();
+    }
+
+    /**
+     * Drops the connection of the next upload request once the specified
+     * number of bytes of its body has been received. Bytes received before
+     * the connection is dropped are kept, as a real server would do.
+     *
+     * @param bytes the number of bytes to receive before failing.
+     */
+    public synchronized void failNextRequestAfter(long bytes) {
+        this.failAfterBytes = bytes;
+    }
+
+    /**
+     * Answers the next requests with a {@code 503} status, their body is
+     * discarded.
+     *
+     * @param count the number of requests to reject.
+     */
+    public synchronized void rejectNextRequests(int count) {
+        this.unavailableRequests = count;
+    }
+
+    /**
+     * Answers the next requests with a {@code 308} status without
+     * {@code Range} header, their body is discarded.
+     *
+     * @param count the number of requests to ignore.
+     */
+    public synchronized void ignoreNextRequests(int count) {
+        this.ignoredRequests = count;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+
+        String path = exchange.getRequestURI().getPath();
+        long failAfter;
+
+        synchronized (this) {
+            if (unavailableRequests > 0) {
+                unavailableRequests--;
+                ByteStreams.exhaust(exchange.getRequestBody());
+                respond(exchange, 503, null);
+                exchange.close();
+                return;
+            }
+
+            if (ignoredRequests > 0) {
+                ignoredRequests--;
+                ByteStreams.exhaust(exchange.getRequestBody());
+                respond(exchange, 308, null);
+                exchange.close();
+                return;
+            }
+
+            failAfter = failAfterBytes;
+            failAfterBytes = -1;
+        }
+
+        // an exception thrown while receiving drops the connection without response
+        switch (exchange.getRequestMethod()) {
+            case "POST":
+                synchronized (this) {
+                    uploads.put(path, new ByteArrayOutputStream());
+                }
+
+                receive(exchange.getRequestBody(), path, 0, failAfter);
+                respond(exchange, 204, null);
+                break;
+            case "PUT":
+                handleChunk(exchange, path, failAfter);
+                break;
+            default:
+                respond(exchange, 405, null);
+        }
+
+        // the connection is only kept alive once the request body has been read
+        ByteStreams.exhaust(exchange.getRequestBody());
+        exchange.close();
+    }
+
+    private void handleChunk(HttpExchange exchange, String path, long failAfter) throws IOException {
+        String contentRange = exchange.getRequestHeaders().getFirst("Content-Range");
+        Matcher matcher = contentRange == null ? null : CONTENT_RANGE.matcher(contentRange);
+
+        if (matcher == null || !matcher.matches()) {
+            ByteStreams.exhaust(exchange.getRequestBody());
+            respond(exchange, 400, null);
+            return;
+        }
+
+        long total = Long.parseLong(matcher.group(3));
+        long received;
+
+        synchronized (this) {
+            received = uploads.computeIfAbsent(path, key -> new ByteArrayOutputStream()).size();
+        }
+
+        if (matcher.group(1) != null) {
+            long first = Long.parseLong(matcher.group(1));
+
+            if (first > received) {
+                // the client must resume from the bytes acknowledged so far
+                ByteStreams.exhaust(exchange.getRequestBody());
+                respondWithRange(exchange, received);
+                return;
+            }
+
+            // skips bytes already received
+            InputStream body = exchange.getRequestBody();
+            long skipped = 0;
+
+            while (skipped < received - first && body.read() != -1) {
+                skipped++;
+            }
+
+            received = receive(body, path, skipped, failAfter);
+        }
+
+        if (received >= total) {
+            respond(exchange, 200, "{}");
+        } else {
+            respondWithRange(exchange, received);
+        }
+    }
+
+    /*
+     * Appends the specified body to the upload of the specified path and
+     * returns the number of bytes received for the path.
+     */
+    private long receive(InputStream body, String path, long alreadyRead, long failAfter) throws IOException {
+        byte[] buffer = new byte[8192];
+        long read = alreadyRead;
+        int count;
+
+        while ((count = body.read(buffer)) != -1) {
+            if (failAfter >= 0 && read + count > failAfter) {
+                count = (int) Math.max(0, failAfter - read);
+            }
+
+            synchronized (this) {
+                uploads.get(path).write(buffer, 0, count);
+            }
+
+            read += count;
+
+            if (failAfter >= 0 && read >= failAfter) {
+                // closes the connection without any response
+                throw new IOException("Upload interrupted after " + read + " bytes");
+            }
+        }
+
+        synchronized (this) {
+            return uploads.get(path).size();
+        }
+    }
+
+    private static void respondWithRange(HttpExchange exchange, long received) throws IOException {
+        if (received > 0) {
+            exchange.getResponseHeaders().add("Range", "bytes=0-" + (received - 1));
+        }
+
+        respond(exchange, 308, null);
+    }
+
+    private static void respond(HttpExchange exchange, int statusCode, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(statusCode, -1);
+        } else {
+            byte[] bytes = body.getBytes("UTF-8");
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(statusCode, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public static class Builder {
+
+        private int port = 0;
+
+        public Builder() {
+        }
+
+        /**
+         * Sets the port to listen on. By default a free port is picked.
+         */
+        public Builder setPort(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public UploadServer start() throws IOException {
+            return new UploadServer(this);
+        }
+
+    }
+
+}
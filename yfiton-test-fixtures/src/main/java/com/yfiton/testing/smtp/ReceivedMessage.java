@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.testing.smtp;
+
+import com.google.common.collect.ImmutableList;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Message received by a {@link SmtpSink}.
+ *
+ * @author lpellegr
+ */
+public final class ReceivedMessage {
+
+    private final String sender;
+
+    private final List<String> recipients;
+
+    private final byte[] data;
+
+    private final String username;
+
+    private final boolean secure;
+
+    ReceivedMessage(String sender, List<String> recipients, byte[] data, String username, boolean secure) {
+        this.sender = sender;
+        this.recipients = ImmutableList.copyOf(recipients);
+        this.data = data;
+        this.username = username;
+        this.secure = secure;
+    }
+
+    /**
+     * Returns the envelope sender given with MAIL FROM.
+     *
+     * @return the envelope sender.
+     */
+    public String getSender() {
+        return sender;
+    }
+
+    /**
+     * Returns the envelope recipients given with RCPT TO.
+     *
+     * @return the envelope recipients.
+     */
+    public List<String> getRecipients() {
+        return recipients;
+    }
+
+    /**
+     * Returns the message as transferred after DATA, with CRLF line
+     * terminators and dot-stuffing removed.
+     *
+     * @return the message content.
+     */
+    public byte[] getData() {
+        return data.clone();
+    }
+
+    public String getDataAsString() {
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the user authenticated on the connection the message was
+     * received from.
+     *
+     * @return the user authenticated, if any.
+     */
+    public Optional<String> getUsername() {
+        return Optional.ofNullable(username);
+    }
+
+    /**
+     * Returns whether the message was received over TLS.
+     *
+     * @return whether the message was received over TLS.
+     */
+    public boolean isSecure() {
+        return secure;
+    }
+
+    @Override
+    public String toString() {
+        return "ReceivedMessage{sender='" + sender + "', recipients=" + recipients + ", size=" + data.length + "}";
+    }
+
+}
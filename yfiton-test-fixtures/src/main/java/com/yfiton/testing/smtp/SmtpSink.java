@@ -0,0 +1,639 @@
+/*
+ * Copyright 2015 Laurent Pellegrino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yfiton.testing.smtp;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process SMTP server that accepts and records every message it receives.
+ * It allows to exercise the email notifier without any real account.
+ * <p/>
+ * The server optionally supports STARTTLS, with a self-signed certificate for
+ * {@code localhost}, and PLAIN or LOGIN authentication. A latency may be set
+ * to delay each reply, in order to mimic a remote relay.
+ *
+ * <pre>
+ * try (SmtpSink sink = new SmtpSink.Builder().setStartTls(true).setCredentials("user", "secret").start()) {
+ *     // send messages to localhost:sink.getPort()
+ *     sink.awaitMessages(1, 5, TimeUnit.SECONDS);
+ * }
+ * </pre>
+ *
+ * @author lpellegr
+ */
+public final class SmtpSink implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SmtpSink.class);
+
+    private static final String KEY_STORE = "smtp-sink.jks";
+
+    private static final char[] KEY_STORE_PASSWORD = "yfiton".toCharArray();
+
+    private final ServerSocket serverSocket;
+
+    private final long latencyInNanos;
+
+    private final SSLContext sslContext;
+
+    private final String username;
+
+    private final String password;
+
+    private final ExecutorService executor;
+
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private final boolean recording;
+
+    // guarded by messages
+    private final List<ReceivedMessage> messages = new ArrayList<>();
+
+    // guarded by messages
+    private int messageCount;
+
+    private SmtpSink(Builder builder) throws IOException {
+        this.latencyInNanos = builder.latencyInNanos;
+        this.recording = builder.recording;
+        this.sslContext = builder.startTls ? createSslContext() : null;
+        this.username = builder.username;
+        this.password = builder.password;
+
+        this.serverSocket = new ServerSocket(builder.port, 50, InetAddress.getLoopbackAddress());
+
+        this.executor = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("smtp-sink-" + getPort() + "-%d").build());
+        this.executor.execute(this::accept);
+    }
+
+    private static SSLContext createSslContext() throws IOException {
+        try (InputStream in = SmtpSink.class.getResourceAsStream(KEY_STORE)) {
+            KeyStore keyStore = KeyStore.getInstance("JKS");
+            keyStore.load(in, KEY_STORE_PASSWORD);
+
+            KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagerFactory.init(keyStore, KEY_STORE_PASSWORD);
+
+            SSLContext result = SSLContext.getInstance("TLS");
+            result.init(keyManagerFactory.getKeyManagers(), null, null);
+
+            return result;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Cannot load " + KEY_STORE, e);
+        }
+    }
+
+    public String getHost() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the number of connections accepted so far.
+     *
+     * @return the number of connections accepted so far.
+     */
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * Returns the number of connections currently open.
+     *
+     * @return the number of connections currently open.
+     */
+    public int getOpenConnectionCount() {
+        return sockets.size();
+    }
+
+    /**
+     * Returns the messages received so far, in order of reception. Messages
+     * are not kept if recording has been disabled.
+     *
+     * @return the messages received so far.
+     */
+    public List<ReceivedMessage> getMessages() {
+        synchronized (messages) {
+            return ImmutableList.copyOf(messages);
+        }
+    }
+
+    public int getMessageCount() {
+        synchronized (messages) {
+            return messageCount;
+        }
+    }
+
+    /**
+     * Waits until at least {@code count} messages have been received.
+     *
+     * @param count   the number of messages to wait for.
+     * @param timeout the maximum time to wait.
+     * @param unit    the unit of {@code timeout}.
+     * @return the messages received.
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     * @throws TimeoutException     if the messages are not received in time.
+     */
+    public List<ReceivedMessage> awaitMessages(int count, long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        synchronized (messages) {
+            while (messageCount < count) {
+                long remaining = deadline - System.nanoTime();
+
+                if (remaining <= 0) {
+                    throw new TimeoutException(messageCount + " message(s) received but " + count + " expected");
+                }
+
+                TimeUnit.NANOSECONDS.timedWait(messages, remaining);
+            }
+
+            return ImmutableList.copyOf(messages);
+        }
+    }
+
+    /**
+     * Forgets the messages received so far.
+     */
+    public void clear() {
+        synchronized (messages) {
+            messages.clear();
+            messageCount = 0;
+        }
+    }
+
+    /**
+     * Abruptly closes the connections currently open, as a server dropping
+     * idle clients would, while still accepting new ones.
+     */
+    public void closeConnections() {
+        for (Socket socket : sockets) {
+            closeQuietly(socket);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+
+        for (Socket socket : sockets) {
+            closeQuietly(socket);
+        }
+
+        executor.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                sockets.add(socket);
+                connections.incrementAndGet();
+
+                executor.execute(() -> {
+                    try {
+                        new Conversation(socket).run();
+                    } catch (IOException e) {
+                        log.debug("SMTP session on port {} ended: {}", getPort(), e.getMessage());
+                    } finally {
+                        sockets.remove(socket);
+                        closeQuietly(socket);
+                    }
+                });
+            } catch (SocketException e) {
+                // server socket closed
+            } catch (IOException e) {
+                log.warn("Cannot accept SMTP connection: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Conversation with a client over a single connection.
+     */
+    private final class Conversation {
+
+        private Socket socket;
+
+        private InputStream in;
+
+        private OutputStream out;
+
+        private boolean secure;
+
+        private String authenticatedUser;
+
+        private String sender;
+
+        private final List<String> recipients = new ArrayList<>();
+
+        private Conversation(Socket socket) throws IOException {
+            setSocket(socket);
+        }
+
+        private void setSocket(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        private void run() throws IOException {
+            reply("220 localhost ESMTP Yfiton SMTP sink");
+
+            String line;
+
+            while ((line = readLine()) != null) {
+                String verb = line.length() < 4 ? line.toUpperCase() : line.substring(0, 4).toUpperCase();
+
+                switch (verb) {
+                    case "EHLO":
+                        hello();
+                        break;
+                    case "HELO":
+                        reply("250 localhost");
+                        break;
+                    case "STAR":
+                        startTls();
+                        break;
+                    case "AUTH":
+                        authenticate(line);
+                        break;
+                    case "MAIL":
+                        mail(line);
+                        break;
+                    case "RCPT":
+                        recipient(line);
+                        break;
+                    case "DATA":
+                        data();
+                        break;
+                    case "RSET":
+                        reset();
+                        reply("250 2.0.0 OK");
+                        break;
+                    case "NOOP":
+                        reply("250 2.0.0 OK");
+                        break;
+                    case "QUIT":
+                        reply("221 2.0.0 Bye");
+                        return;
+                    default:
+                        reply("502 5.5.2 Command not implemented");
+                }
+            }
+        }
+
+        private void hello() throws IOException {
+            StringBuilder result = new StringBuilder("250-localhost\r\n250-8BITMIME\r\n");
+
+            if (sslContext != null && !secure) {
+                result.append("250-STARTTLS\r\n");
+            }
+
+            // like most relays, credentials are only accepted over TLS when it is available
+            if (username != null && (sslContext == null || secure)) {
+                result.append("250-AUTH PLAIN LOGIN\r\n");
+            }
+
+            result.append("250 PIPELINING");
+
+            reply(result.toString());
+        }
+
+        private void startTls() throws IOException {
+            if (sslContext == null || secure) {
+                reply("502 5.5.1 STARTTLS not available");
+                return;
+            }
+
+            reply("220 2.0.0 Ready to start TLS");
+
+            SSLSocket sslSocket = (SSLSocket) sslContext.getSocketFactory().createSocket(
+                    socket, socket.getInetAddress().getHostAddress(), socket.getPort(), true);
+            sslSocket.setUseClientMode(false);
+            sslSocket.startHandshake();
+
+            setSocket(sslSocket);
+            secure = true;
+            authenticatedUser = null;
+            reset();
+        }
+
+        private void authenticate(String line) throws IOException {
+            if (username == null) {
+                reply("502 5.5.1 AUTH not available");
+                return;
+            }
+
+            String[] tokens = line.split(" ");
+            String mechanism = tokens.length > 1 ? tokens[1].toUpperCase() : "";
+
+            String user;
+            String pass;
+
+            if (mechanism.equals("PLAIN")) {
+                String response = tokens.length > 2 ? tokens[2] : challenge("");
+
+                if (response == null) {
+                    return;
+                }
+
+                String[] credentials = decode(response).split("\0", -1);
+
+                if (credentials.length != 3) {
+                    reply("501 5.5.2 Invalid PLAIN response");
+                    return;
+                }
+
+                user = credentials[1];
+                pass = credentials[2];
+            } else if (mechanism.equals("LOGIN")) {
+                String userResponse = tokens.length > 2 ? tokens[2] : challenge(encode("Username:"));
+                String passResponse = userResponse == null ? null : challenge(encode("Password:"));
+
+                if (passResponse == null) {
+                    return;
+                }
+
+                user = decode(userResponse);
+                pass = decode(passResponse);
+            } else {
+                reply("504 5.5.4 Unrecognized authentication type");
+                return;
+            }
+
+            if (username.equals(user) && password.equals(pass)) {
+                authenticatedUser = user;
+                reply("235 2.7.0 Authentication successful");
+            } else {
+                reply("535 5.7.8 Authentication credentials invalid");
+            }
+        }
+
+        private String challenge(String challenge) throws IOException {
+            reply("334 " + challenge);
+            return readLine();
+        }
+
+        private void mail(String line) throws IOException {
+            if (username != null && authenticatedUser == null) {
+                reply("530 5.7.0 Authentication required");
+                return;
+            }
+
+            reset();
+            sender = extractAddress(line);
+            reply("250 2.1.0 OK");
+        }
+
+        private void recipient(String line) throws IOException {
+            if (sender == null) {
+                reply("503 5.5.1 Need MAIL command");
+                return;
+            }
+
+            recipients.add(extractAddress(line));
+            reply("250 2.1.5 OK");
+        }
+
+        private void data() throws IOException {
+            if (recipients.isEmpty()) {
+                reply("503 5.5.1 Need RCPT command");
+                return;
+            }
+
+            reply("354 End data with <CR><LF>.<CR><LF>");
+
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            byte[] line;
+
+            while ((line = readBytes()) != null) {
+                if (line.length == 1 && line[0] == '.') {
+                    break;
+                }
+
+                // remove dot-stuffing
+                int offset = line.length > 0 && line[0] == '.' ? 1 : 0;
+
+                data.write(line, offset, line.length - offset);
+                data.write('\r');
+                data.write('\n');
+            }
+
+            if (line == null) {
+                throw new IOException("Connection closed while receiving data");
+            }
+
+            synchronized (messages) {
+                if (recording) {
+                    messages.add(new ReceivedMessage(sender, recipients, data.toByteArray(), authenticatedUser, secure));
+                }
+
+                messageCount++;
+                messages.notifyAll();
+            }
+
+            reset();
+            reply("250 2.0.0 OK queued");
+        }
+
+        private void reset() {
+            sender = null;
+            recipients.clear();
+        }
+
+        private String extractAddress(String line) {
+            int start = line.indexOf('<');
+            int end = line.indexOf('>', start + 1);
+
+            if (start == -1 || end == -1) {
+                return line.substring(line.indexOf(':') + 1).trim();
+            }
+
+            return line.substring(start + 1, end);
+        }
+
+        private void reply(String reply) throws IOException {
+            if (latencyInNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(latencyInNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted", e);
+                }
+            }
+
+            out.write(reply.getBytes(StandardCharsets.US_ASCII));
+            out.write('\r');
+            out.write('\n');
+            out.flush();
+        }
+
+        private String readLine() throws IOException {
+            byte[] line = readBytes();
+
+            if (line == null) {
+                return null;
+            }
+
+            return new String(line, StandardCharsets.ISO_8859_1);
+        }
+
+        /**
+         * Reads a line without its terminator, or returns {@code null} at end of stream.
+         */
+        private byte[] readBytes() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+            int b;
+
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    byte[] result = line.toByteArray();
+                    int length = result.length;
+
+                    if (length > 0 && result[length - 1] == '\r') {
+                        byte[] trimmed = new byte[length - 1];
+                        System.arraycopy(result, 0, trimmed, 0, length - 1);
+                        return trimmed;
+                    }
+
+                    return result;
+                }
+
+                line.write(b);
+            }
+
+            return line.size() == 0 ? null : line.toByteArray();
+        }
+
+    }
+
+    private static String encode(String value) {
+        return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String value) {
+        return new String(Base64.getDecoder().decode(value.trim()), StandardCharsets.UTF_8);
+    }
+
+    public static class Builder {
+
+        private int port = 0;
+
+        private long latencyInNanos;
+
+        private boolean startTls;
+
+        private String username;
+
+        private String password;
+
+        private boolean recording = true;
+
+        public Builder() {
+        }
+
+        /**
+         * Sets the port to listen on. By default a free port is picked.
+         */
+        public Builder setPort(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Sets the time to wait before sending each reply.
+         */
+        public Builder setLatency(long latency, TimeUnit unit) {
+            this.latencyInNanos = unit.toNanos(latency);
+            return this;
+        }
+
+        public Builder setStartTls(boolean startTls) {
+            this.startTls = startTls;
+            return this;
+        }
+
+        /**
+         * Requires clients to authenticate with the specified credentials
+         * before sending messages.
+         */
+        public Builder setCredentials(String username, String password) {
+            this.username = username;
+            this.password = password;
+            return this;
+        }
+
+        /**
+         * Defines whether received messages are kept. Only their number is
+         * kept when disabled, which allows long running benchmarks.
+         */
+        public Builder setRecording(boolean recording) {
+            this.recording = recording;
+            return this;
+        }
+
+        public SmtpSink start() throws IOException {
+            return new SmtpSink(this);
+        }
+
+    }
+
+}